@@ -0,0 +1,104 @@
+package com.eventbooking;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Application configuration.
+ *
+ * Values are read from "eventbooking.properties" (working directory first,
+ * then the classpath) and can be overridden with -D system properties of the
+ * same name, e.g. -Dmongo.pool.maxSize=200. Every key has a built-in default,
+ * so the file is optional.
+ *
+ * Secrets (SMTP password, sender address) are not committed. Put them in
+ * "eventbooking.local.properties" next to the main file - it is git-ignored
+ * and overrides it key by key - or pass them as -D properties.
+ */
+public class AppConfig {
+    private static final String CONFIG_FILE = "eventbooking.properties";
+    private static final String LOCAL_CONFIG_FILE = "eventbooking.local.properties";
+    private static AppConfig instance;
+
+    private final Properties properties = new Properties();
+
+    private AppConfig() {
+        load();
+    }
+
+    public static synchronized AppConfig getInstance() {
+        if (instance == null) {
+            instance = new AppConfig();
+        }
+        return instance;
+    }
+
+    private void load() {
+        loadShared();
+        Path local = Paths.get(LOCAL_CONFIG_FILE);
+        if (!Files.exists(local)) return;
+        try (InputStream in = Files.newInputStream(local)) {
+            properties.load(in);
+            System.out.println("[CONFIG] Loaded " + local.toAbsolutePath());
+        } catch (IOException e) {
+            System.err.println("[CONFIG ERROR] Could not read " + LOCAL_CONFIG_FILE + ": " + e.getMessage());
+        }
+    }
+
+    private void loadShared() {
+        Path file = Paths.get(CONFIG_FILE);
+        try {
+            if (Files.exists(file)) {
+                try (InputStream in = Files.newInputStream(file)) {
+                    properties.load(in);
+                }
+                System.out.println("[CONFIG] Loaded " + file.toAbsolutePath());
+                return;
+            }
+            try (InputStream in = AppConfig.class.getClassLoader().getResourceAsStream(CONFIG_FILE)) {
+                if (in != null) {
+                    properties.load(in);
+                    System.out.println("[CONFIG] Loaded " + CONFIG_FILE + " from classpath");
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[CONFIG ERROR] Could not read " + CONFIG_FILE + ", using defaults: " + e.getMessage());
+        }
+    }
+
+    public String getString(String key, String defaultValue) {
+        String value = System.getProperty(key, properties.getProperty(key));
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            System.err.println("[CONFIG ERROR] " + key + "=" + value + " is not a number, using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null) return defaultValue;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            System.err.println("[CONFIG ERROR] " + key + "=" + value + " is not a number, using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+}
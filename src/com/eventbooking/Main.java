@@ -1,24 +1,37 @@
 package com.eventbooking;
 
+import com.eventbooking.api.ApiServer;
 import com.eventbooking.ui.LoginFrame;
 import com.eventbooking.database.DatabaseManager;
+import com.eventbooking.database.SchemaManager;
+import com.eventbooking.services.CreditPointsService;
 import com.eventbooking.services.DailyTaskScheduler; // Import the scheduler
+import com.eventbooking.services.EventChangeJob;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import org.bson.Document;
 import javax.swing.UIManager;
+import java.util.Arrays;
 
 public class Main {
     public static void main(String[] args) {
-        try {
-            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
-        } catch (Exception e) {
-            e.printStackTrace();
+        // --headless: serve the HTTP API instead of opening the Swing UI
+        boolean headless = Arrays.asList(args).contains("--headless");
+        if (!headless) {
+            try {
+                UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
         }
 
         try {
             System.out.println("Initializing database connection...");
-            DatabaseManager dbManager = new DatabaseManager();
+            // Indexes and migrations first: DatabaseManager starts the notification
+            // writer, the hold sweep and the change streams as soon as it is built
+            new SchemaManager(MongoDBConnection.getDatabase()).bootstrap();
+
+            DatabaseManager dbManager = DatabaseManager.getInstance();
             System.out.println("Success: Database connection established.");
             
             seedInitialData(dbManager);
@@ -26,6 +39,20 @@ public class Main {
             // Start the automatic daily task scheduler
             DailyTaskScheduler scheduler = new DailyTaskScheduler();
             scheduler.start();
+
+            // Finish any bulk event job or credit award an earlier run was interrupted in
+            Thread resumer = new Thread(() -> {
+                EventChangeJob.resumeUnfinished();
+                CreditPointsService.getInstance().resumeUnfinishedAwards();
+            }, "event-job-resume");
+            resumer.setDaemon(true);
+            resumer.start();
+            
+            if (headless) {
+                new ApiServer().start();
+                System.out.println("Success: Event Booking System API launched.");
+                return;
+            }
             
             javax.swing.SwingUtilities.invokeLater(() -> {
                 new LoginFrame();
@@ -34,7 +61,7 @@ public class Main {
             
         } catch (Exception e) {
             System.err.println("FATAL: Failed to connect to database: " + e.getMessage());
-            System.err.println("Please ensure MongoDB is running on localhost:27017");
+            System.err.println("Please ensure MongoDB is running and mongo.uri in eventbooking.properties points to it");
             e.printStackTrace();
         }
     }
@@ -1,23 +1,142 @@
 package com.eventbooking;
 
+import com.eventbooking.database.ConnectionPoolMetrics;
 import com.mongodb.client.*;
 import com.mongodb.ConnectionString;
 import com.mongodb.MongoClientSettings;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared MongoDB client.
+ *
+ * One MongoClient (and so one connection pool) serves the whole process.
+ * Pool size, timeouts, read preference and write concern come from
+ * AppConfig:
+ *
+ *   mongo.uri                       (mongodb://localhost:27017/)
+ *   mongo.database                  (event_booking_db)
+ *   mongo.pool.maxSize              (100)
+ *   mongo.pool.minSize              (0)
+ *   mongo.pool.maxWaitMillis        (2000)  wait-queue timeout for a free connection
+ *   mongo.pool.maxIdleMillis        (0 = never)
+ *   mongo.connectTimeoutMillis      (10000)
+ *   mongo.socketTimeoutMillis       (0 = none)
+ *   mongo.readPreference            (primary)
+ *   mongo.writeConcern              (acknowledged)
+ *   mongo.pool.metricsIntervalSeconds (0 = off) log pool metrics periodically
+ */
 public class MongoDBConnection {
     private static MongoClient client;
     private static MongoDatabase database;
+    private static final ConnectionPoolMetrics poolMetrics = new ConnectionPoolMetrics();
+    private static final List<Runnable> beforeClose = new CopyOnWriteArrayList<>();
 
     static {
-        ConnectionString connString = new ConnectionString("mongodb://localhost:27017/");
+        AppConfig config = AppConfig.getInstance();
+        ConnectionString connString = new ConnectionString(config.getString("mongo.uri", "mongodb://localhost:27017/"));
+        int maxPoolSize = config.getInt("mongo.pool.maxSize", 100);
+        int minPoolSize = config.getInt("mongo.pool.minSize", 0);
+        long maxWaitMillis = config.getLong("mongo.pool.maxWaitMillis", 2000);
+        long maxIdleMillis = config.getLong("mongo.pool.maxIdleMillis", 0);
+        int connectTimeoutMillis = config.getInt("mongo.connectTimeoutMillis", 10000);
+        int socketTimeoutMillis = config.getInt("mongo.socketTimeoutMillis", 0);
+        ReadPreference readPreference = parseReadPreference(config.getString("mongo.readPreference", "primary"));
+        WriteConcern writeConcern = parseWriteConcern(config.getString("mongo.writeConcern", "acknowledged"));
+
         MongoClientSettings settings = MongoClientSettings.builder()
                 .applyConnectionString(connString)
+                .applyToConnectionPoolSettings(pool -> pool
+                        .maxSize(maxPoolSize)
+                        .minSize(minPoolSize)
+                        .maxWaitTime(maxWaitMillis, TimeUnit.MILLISECONDS)
+                        .maxConnectionIdleTime(maxIdleMillis, TimeUnit.MILLISECONDS)
+                        .addConnectionPoolListener(poolMetrics))
+                .applyToSocketSettings(socket -> socket
+                        .connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS)
+                        .readTimeout(socketTimeoutMillis, TimeUnit.MILLISECONDS))
+                .readPreference(readPreference)
+                .writeConcern(writeConcern)
                 .build();
         client = MongoClients.create(settings);
-        database = client.getDatabase("event_booking_db");
+        database = client.getDatabase(config.getString("mongo.database", "event_booking_db"));
+        System.out.println("[DB] Pool: maxSize=" + maxPoolSize + ", minSize=" + minPoolSize
+                + ", maxWait=" + maxWaitMillis + "ms, readPreference=" + readPreference.getName()
+                + ", writeConcern=" + writeConcern.asDocument().toJson());
+
+        startMetricsReporter(config.getInt("mongo.pool.metricsIntervalSeconds", 0));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (Runnable task : beforeClose) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    System.err.println("[DB ERROR] Shutdown task failed: " + e.getMessage());
+                }
+            }
+            System.out.println("[DB POOL] Final pool metrics: " + poolMetrics);
+            client.close();
+        }, "mongo-shutdown"));
     }
 
     public static MongoDatabase getDatabase() {
         return database;
     }
+
+    public static MongoClient getClient() {
+        return client;
+    }
+
+    /**
+     * Run a task at shutdown while the client is still open, e.g. to flush
+     * buffered writes. Shutdown hooks run concurrently, so a separate hook
+     * could find the client already closed.
+     */
+    public static void beforeClose(Runnable task) {
+        beforeClose.add(task);
+    }
+
+    public static ConnectionPoolMetrics getPoolMetrics() {
+        return poolMetrics;
+    }
+
+    private static void startMetricsReporter(int intervalSeconds) {
+        if (intervalSeconds <= 0) return;
+        Thread reporter = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(intervalSeconds * 1000L);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                System.out.println("[DB POOL] " + poolMetrics);
+            }
+        }, "mongo-pool-metrics");
+        reporter.setDaemon(true);
+        reporter.start();
+    }
+
+    private static ReadPreference parseReadPreference(String name) {
+        try {
+            return ReadPreference.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            System.err.println("[CONFIG ERROR] Unknown read preference '" + name + "', using primary");
+            return ReadPreference.primary();
+        }
+    }
+
+    private static WriteConcern parseWriteConcern(String name) {
+        if (name.matches("\\d+")) {
+            return new WriteConcern(Integer.parseInt(name));
+        }
+        WriteConcern writeConcern = WriteConcern.valueOf(name);
+        if (writeConcern == null) {
+            System.err.println("[CONFIG ERROR] Unknown write concern '" + name + "', using acknowledged");
+            return WriteConcern.ACKNOWLEDGED;
+        }
+        return writeConcern;
+    }
 }
@@ -0,0 +1,413 @@
+package com.eventbooking.api;
+
+import com.eventbooking.AppConfig;
+import com.eventbooking.MongoDBConnection;
+import com.eventbooking.database.DatabaseManager;
+import com.eventbooking.database.NotificationFeed;
+import com.eventbooking.models.Booking;
+import com.eventbooking.models.Event;
+import com.eventbooking.models.SeatMap;
+import com.eventbooking.services.BookingService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.bson.Document;
+import org.bson.json.JsonParseException;
+import org.bson.types.ObjectId;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedded HTTP/JSON API over BookingService, for running the system
+ * without Swing (servers, load tests).
+ *
+ *   GET  /api/health
+ *   GET  /api/events?q=&category=&minPrice=&maxPrice=&from=&to=&status=
+ *   GET  /api/events/{id}
+ *   GET  /api/events/{id}/seats
+ *   GET  /api/bookings                         (X-Username)
+ *   POST /api/bookings                         (X-Username) {"eventId", "seatIds" | "quantity", "paymentMethod"}
+ *   POST /api/bookings/{id}/cancel             (X-Username) {"seats": n}  (omit for the whole booking)
+ *   GET  /api/notifications?before=&limit=     (X-Username)
+ *   GET  /api/notifications/stream             (X-Username)  server-sent events
+ *   GET  /api/leaderboard?period=all|monthly|daily&limit=
+ *
+ * Event search matches words of name, type and venue by prefix, tolerating
+ * typos, best match first; from and to are ISO dates and status one of
+ * Upcoming, Event Day or Completed.
+ *
+ * Notifications come newest first; pass the last id of a page as before
+ * to get the next one. The stream sends an "inbox" event whenever the
+ * user's inbox changes (see NotificationFeed), with the unread count and
+ * the newest messages, or a "resync" event when the client should reload;
+ * a comment line every HEARTBEAT_SECONDS keeps proxies from closing it.
+ * At most api.maxStreams streams are open at once. Streams run on their own
+ * threads, never on the request workers, so open streams cannot starve
+ * ordinary requests.
+ *
+ * The caller is identified by the X-Username header; the server trusts it,
+ * so only expose it behind an authenticating proxy or in test environments.
+ *
+ * Requests run on virtual threads when the JVM has them (Java 21+),
+ * otherwise on a bounded pool sized by api.threads.
+ */
+public class ApiServer {
+    private static final String USER_HEADER = "X-Username";
+    private static final int MAX_NOTIFICATION_PAGE = 200;
+    private static final int HEARTBEAT_SECONDS = 25;
+
+    private final int port;
+    private final BookingService bookingService;
+    private HttpServer server;
+    private ExecutorService executor;
+    private ExecutorService streamExecutor;
+    private Semaphore streams;
+
+    public ApiServer() {
+        this(AppConfig.getInstance().getInt("api.port", 8080));
+    }
+
+    public ApiServer(int port) {
+        this.port = port;
+        this.bookingService = BookingService.getInstance();
+    }
+
+    public void start() throws IOException {
+        AppConfig config = AppConfig.getInstance();
+        server = HttpServer.create(new InetSocketAddress(port), config.getInt("api.backlog", 1024));
+        executor = createExecutor(config.getInt("api.threads", 200));
+        server.setExecutor(executor);
+        streams = new Semaphore(config.getInt("api.maxStreams", 1000));
+        streamExecutor = createStreamExecutor();
+        server.createContext("/api/", this::handle);
+        server.createContext("/api/notifications/stream", this::streamNotifications);
+        server.start();
+        System.out.println("[API] Listening on port " + port);
+    }
+
+    public void stop() {
+        if (server != null) server.stop(1);
+        if (executor != null) executor.shutdown();
+        if (streamExecutor != null) streamExecutor.shutdownNow();
+        System.out.println("[API] Stopped");
+    }
+
+    private static ExecutorService createExecutor(int threads) {
+        ExecutorService virtual = virtualThreadExecutor();
+        if (virtual != null) {
+            System.out.println("[API] Using virtual threads");
+            return virtual;
+        }
+        System.out.println("[API] Virtual threads unavailable, using " + threads + " worker threads");
+        AtomicInteger counter = new AtomicInteger();
+        // CallerRuns pushes back on the accept loop instead of dropping requests when saturated
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(threads * 10),
+            r -> {
+                Thread t = new Thread(r, "api-worker-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * One thread per open stream; the streams semaphore bounds how many
+     */
+    private static ExecutorService createStreamExecutor() {
+        ExecutorService virtual = virtualThreadExecutor();
+        if (virtual != null) return virtual;
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "api-stream-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() on Java 21+, otherwise null
+     */
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    // ==========================================================
+    // == ROUTING ==
+    // ==========================================================
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().replaceAll("^/api/|/$", "").split("/");
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            Object response = route(exchange, method, path, query);
+            send(exchange, 200, response);
+        } catch (ApiException e) {
+            send(exchange, e.status, new Document("error", e.getMessage()));
+        } catch (Exception e) {
+            System.err.println("[API ERROR] " + exchange.getRequestURI() + ": " + e.getMessage());
+            send(exchange, 500, new Document("error", "Internal error"));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Object route(HttpExchange exchange, String method, String[] path, Map<String, String> query)
+            throws IOException {
+        switch (path[0]) {
+            case "health":
+                return new Document("status", "ok")
+                    .append("pool", MongoDBConnection.getPoolMetrics().toString());
+
+            case "events":
+                requireMethod(method, "GET");
+                if (path.length == 1) {
+                    return JsonViews.events(bookingService.searchEvents(query.get("q"), query.get("category"),
+                        parseDouble(query.get("minPrice")), parseDouble(query.get("maxPrice")),
+                        parseDate(query.get("from")), parseDate(query.get("to")), query.get("status")));
+                }
+                int eventId = parseId(path[1]);
+                if (path.length == 2) {
+                    Event event = bookingService.getEvent(eventId);
+                    if (event == null) throw new ApiException(404, "Event not found");
+                    return JsonViews.event(event);
+                }
+                if (path.length == 3 && path[2].equals("seats")) {
+                    SeatMap seatMap = bookingService.getSeatMap(eventId);
+                    if (seatMap == null) throw new ApiException(404, "Event not found");
+                    return JsonViews.seatMap(seatMap);
+                }
+                break;
+
+            case "bookings":
+                String username = requireUser(exchange);
+                if (path.length == 1 && method.equals("GET")) {
+                    return JsonViews.bookings(bookingService.getBookings(username));
+                }
+                if (path.length == 1 && method.equals("POST")) {
+                    return JsonViews.booking(createBooking(username, readBody(exchange)));
+                }
+                if (path.length == 3 && path[2].equals("cancel")) {
+                    requireMethod(method, "POST");
+                    Document body = readBody(exchange);
+                    int seats = body.get("seats") instanceof Number ? ((Number) body.get("seats")).intValue() : 0;
+                    if (!bookingService.cancelBooking(username, parseId(path[1]), seats)) {
+                        throw new ApiException(409, "Booking could not be cancelled");
+                    }
+                    return new Document("cancelled", true);
+                }
+                break;
+
+            case "notifications":
+                requireMethod(method, "GET");
+                String user = requireUser(exchange);
+                ObjectId before = null;
+                if (query.containsKey("before")) {
+                    if (!ObjectId.isValid(query.get("before"))) throw new ApiException(400, "Invalid before id");
+                    before = new ObjectId(query.get("before"));
+                }
+                int pageSize = query.containsKey("limit")
+                    ? Math.max(1, Math.min(parseId(query.get("limit")), MAX_NOTIFICATION_PAGE))
+                    : DatabaseManager.NOTIFICATION_PAGE_SIZE;
+                return JsonViews.notifications(bookingService.getNotifications(user, before, pageSize));
+
+            case "leaderboard":
+                requireMethod(method, "GET");
+                int limit = query.containsKey("limit") ? parseId(query.get("limit")) : 10;
+                return JsonViews.plain(bookingService.getLeaderboard(query.get("period"), limit));
+
+            default:
+                break;
+        }
+        throw new ApiException(404, "Not found");
+    }
+
+    /**
+     * Server-sent events for one user's inbox, until the client goes away
+     */
+    private void streamNotifications(HttpExchange exchange) throws IOException {
+        String username;
+        try {
+            requireMethod(exchange.getRequestMethod(), "GET");
+            username = requireUser(exchange);
+            if (!streams.tryAcquire()) throw new ApiException(503, "Too many open streams");
+        } catch (ApiException e) {
+            send(exchange, e.status, new Document("error", e.getMessage()));
+            exchange.close();
+            return;
+        }
+        // Hand the exchange over and free the request worker straight away
+        try {
+            streamExecutor.execute(() -> runStream(exchange, username));
+        } catch (RejectedExecutionException e) {
+            streams.release();
+            exchange.close();
+        }
+    }
+
+    private void runStream(HttpExchange exchange, String username) {
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+        } catch (IOException e) {
+            streams.release();
+            exchange.close();
+            return;
+        }
+        try (NotificationFeed.Subscription subscription = NotificationFeed.getInstance().subscribe(username);
+             OutputStream out = exchange.getResponseBody()) {
+            sendEvent(out, "inbox", new Document("unread", bookingService.getUnreadCount(username)));
+            while (true) {
+                NotificationFeed.Update update = subscription.poll(HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+                if (update == null) {
+                    out.write(": keep-alive\n\n".getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                } else if (update.isResync()) {
+                    sendEvent(out, "resync", new Document("unread", bookingService.getUnreadCount(username)));
+                } else {
+                    sendEvent(out, "inbox", JsonViews.inboxUpdate(update));
+                }
+            }
+        } catch (IOException e) {
+            // Client disconnected
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            streams.release();
+            exchange.close();
+        }
+    }
+
+    private Booking createBooking(String username, Document body) {
+        if (!(body.get("eventId") instanceof Number)) throw new ApiException(400, "eventId is required");
+        int eventId = ((Number) body.get("eventId")).intValue();
+        String paymentMethod = body.getString("paymentMethod");
+
+        Booking booking;
+        if (body.get("seatIds") instanceof List) {
+            booking = bookingService.bookSeats(username, eventId, body.getList("seatIds", String.class), paymentMethod);
+        } else if (body.get("quantity") instanceof Number) {
+            booking = bookingService.bookTickets(username, eventId, ((Number) body.get("quantity")).intValue(), paymentMethod);
+        } else {
+            throw new ApiException(400, "seatIds or quantity is required");
+        }
+        if (booking == null) throw new ApiException(409, "Booking failed");
+        return booking;
+    }
+
+    // ==========================================================
+    // == HELPERS ==
+    // ==========================================================
+
+    /**
+     * Lists are wrapped as {"items": [...]} so every response is an object
+     */
+    private void send(HttpExchange exchange, int status, Object body) throws IOException {
+        Document document = body instanceof List ? new Document("items", body) : (Document) body;
+        byte[] bytes = document.toJson().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sendEvent(OutputStream out, String event, Document data) throws IOException {
+        out.write(("event: " + event + "\ndata: " + data.toJson() + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private Document readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            String text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            return text.isBlank() ? new Document() : Document.parse(text);
+        } catch (JsonParseException e) {
+            throw new ApiException(400, "Malformed JSON: " + e.getMessage());
+        }
+    }
+
+    private String requireUser(HttpExchange exchange) {
+        String username = exchange.getRequestHeaders().getFirst(USER_HEADER);
+        if (username == null || username.isBlank()) throw new ApiException(401, USER_HEADER + " header is required");
+        return username;
+    }
+
+    private void requireMethod(String method, String expected) {
+        if (!method.equals(expected)) throw new ApiException(405, "Use " + expected);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null) return params;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            String value = URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            if (!value.isEmpty()) params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8), value);
+        }
+        return params;
+    }
+
+    private static int parseId(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Not a number: " + value);
+        }
+    }
+
+    private static Double parseDouble(String value) {
+        if (value == null) return null;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Not a number: " + value);
+        }
+    }
+
+    private static LocalDate parseDate(String value) {
+        if (value == null) return null;
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new ApiException(400, "Not a date (yyyy-mm-dd): " + value);
+        }
+    }
+
+    /**
+     * An error that maps directly to an HTTP status
+     */
+    private static class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
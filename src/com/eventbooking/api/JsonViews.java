@@ -0,0 +1,120 @@
+package com.eventbooking.api;
+
+import com.eventbooking.database.NotificationFeed;
+import com.eventbooking.models.Booking;
+import com.eventbooking.models.Event;
+import com.eventbooking.models.Seat;
+import com.eventbooking.models.SeatMap;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Converts models into the JSON shapes returned by the API
+ */
+final class JsonViews {
+    private JsonViews() {}
+
+    static Document event(Event event) {
+        return new Document("id", event.getId())
+            .append("name", event.getName())
+            .append("type", event.getType())
+            .append("date", String.valueOf(event.getDate()))
+            .append("venue", event.getVenue())
+            .append("price", event.getPrice())
+            .append("totalSeats", event.getTotalSeats())
+            .append("seatsAvailable", event.getSeatsAvailable())
+            .append("status", event.getStatus());
+    }
+
+    static List<Document> events(List<Event> events) {
+        List<Document> views = new ArrayList<>(events.size());
+        for (Event event : events) {
+            views.add(event(event));
+        }
+        return views;
+    }
+
+    static Document booking(Booking booking) {
+        return new Document("id", booking.getId())
+            .append("username", booking.getUsername())
+            .append("eventId", booking.getEventId())
+            .append("eventName", booking.getEventName())
+            .append("seatsBooked", booking.getSeatsBooked())
+            .append("seatIds", booking.getSeatIds())
+            .append("totalPrice", booking.getTotalPrice())
+            .append("timestamp", String.valueOf(booking.getTimestamp()))
+            .append("eventDate", String.valueOf(booking.getEventDate()))
+            .append("cancelled", booking.isCancelled())
+            .append("paymentMethod", booking.getPaymentMethod())
+            .append("transactionId", booking.getTransactionId());
+    }
+
+    static List<Document> bookings(List<Booking> bookings) {
+        List<Document> views = new ArrayList<>(bookings.size());
+        for (Booking booking : bookings) {
+            views.add(booking(booking));
+        }
+        return views;
+    }
+
+    static Document seatMap(SeatMap seatMap) {
+        List<Document> rows = new ArrayList<>();
+        for (String row : seatMap.getRows()) {
+            List<String> available = new ArrayList<>();
+            List<String> booked = new ArrayList<>();
+            List<String> held = new ArrayList<>();
+            for (int number = 1; number <= seatMap.getSeatsPerRow(); number++) {
+                Seat seat = seatMap.getSeat(row + number);
+                if (seat == null) continue;
+                (seat.isBooked() ? booked : seat.isHeld() ? held : available).add(seat.getSeatId());
+            }
+            rows.add(new Document("row", row).append("available", available).append("booked", booked)
+                .append("held", held));
+        }
+        return new Document("eventId", seatMap.getEventId())
+            .append("seatsPerRow", seatMap.getSeatsPerRow())
+            .append("held", seatMap.countHeld())
+            .append("rows", rows);
+    }
+
+    /**
+     * Notifications keep their id, as a hex string, for paging and addressing
+     */
+    static List<Document> notifications(List<Document> notifications) {
+        List<Document> views = plain(notifications);
+        for (int i = 0; i < views.size(); i++) {
+            Object id = notifications.get(i).get("_id");
+            if (id instanceof ObjectId) views.get(i).put("id", ((ObjectId) id).toHexString());
+        }
+        return views;
+    }
+
+    static Document inboxUpdate(NotificationFeed.Update update) {
+        Document view = new Document("added", update.getAdded()).append("messages", update.getLatestMessages());
+        if (update.getUnread() != null) view.append("unread", update.getUnread());
+        return view;
+    }
+
+    /**
+     * Notification and leaderboard documents come straight from Mongo;
+     * drop the ObjectId so they serialize as plain JSON.
+     */
+    static List<Document> plain(List<Document> documents) {
+        List<Document> views = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            Document view = new Document(document);
+            Object id = view.remove("_id");
+            if (id != null && !(id instanceof ObjectId)) view.put("_id", id);
+            for (String key : view.keySet()) {
+                Object value = view.get(key);
+                if (value instanceof Date) view.put(key, ((Date) value).toInstant().toString());
+            }
+            views.add(view);
+        }
+        return views;
+    }
+}
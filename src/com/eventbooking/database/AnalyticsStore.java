@@ -0,0 +1,284 @@
+package com.eventbooking.database;
+
+import com.eventbooking.models.Event;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Analytics Store - materialised sales counters.
+ *
+ * Three small collections are kept up to date with $inc once a booking or
+ * cancellation has committed, so reports read O(events) documents instead
+ * of scanning every booking:
+ *
+ *   analytics_events      one per event: active/cancelled bookings, tickets
+ *                         sold, net revenue, refunds
+ *   analytics_categories  one per event type: tickets sold, net revenue
+ *   analytics_daily       one per calendar day: bookings, tickets, revenue
+ *                         taken, cancellations and refunds on that day
+ *
+ * "Revenue" is the value of bookings that are still active, matching what
+ * the old aggregations summed. Deleted events keep their document (flagged
+ * deleted) so booking totals stay complete, but leave their category.
+ *
+ * The counters are deliberately outside the booking transactions: every
+ * booking of the day increments the same analytics_daily document, and
+ * inside transactions those writes conflict and retry the whole booking.
+ * A crash between commit and counter update loses that increment; rebuild()
+ * recounts from the bookings.
+ */
+class AnalyticsStore {
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+
+    private final MongoCollection<Document> eventStats;
+    private final MongoCollection<Document> categoryStats;
+    private final MongoCollection<Document> dailyStats;
+    private final MongoDatabase database;
+
+    AnalyticsStore(MongoDatabase database) {
+        this.database = database;
+        this.eventStats = database.getCollection("analytics_events");
+        this.categoryStats = database.getCollection("analytics_categories");
+        this.dailyStats = database.getCollection("analytics_daily");
+    }
+
+    // ==========================================================
+    // == WRITE PATH ==
+    // ==========================================================
+
+    /**
+     * Count a new booking once the caller's transaction has committed
+     */
+    void recordBooking(TransactionRunner.TransactionContext tx, Event event, int seats, double amount) {
+        tx.onCommit(() -> applyBooking(event, seats, amount));
+    }
+
+    private void applyBooking(Event event, int seats, double amount) {
+        eventStats.updateOne(Filters.eq("_id", event.getId()), Updates.combine(
+            Updates.setOnInsert("eventName", event.getName()),
+            Updates.setOnInsert("type", event.getType()),
+            Updates.inc("activeBookings", 1),
+            Updates.inc("ticketsSold", seats),
+            Updates.inc("revenue", amount)), UPSERT);
+        if (event.getType() != null) {
+            categoryStats.updateOne(Filters.eq("_id", event.getType()), Updates.combine(
+                Updates.inc("ticketsSold", seats),
+                Updates.inc("revenue", amount)), UPSERT);
+        }
+        dailyStats.updateOne(Filters.eq("_id", today()), Updates.combine(
+            Updates.inc("bookings", 1),
+            Updates.inc("ticketsSold", seats),
+            Updates.inc("revenue", amount)), UPSERT);
+    }
+
+    /**
+     * Count cancelled seats. cancelledBookings is the number of bookings
+     * cancelled outright: 1 for a full cancellation, 0 for a partial one,
+     * the batch size for a bulk event cancellation. Applied once the
+     * caller's transaction has committed.
+     */
+    void recordCancellation(TransactionRunner.TransactionContext tx, int eventId, int cancelledBookings,
+                            int seats, double amount, double refund) {
+        tx.onCommit(() -> applyCancellation(eventId, cancelledBookings, seats, amount, refund));
+    }
+
+    private void applyCancellation(int eventId, int cancelledBookings, int seats, double amount, double refund) {
+        Document stats = eventStats.findOneAndUpdate(Filters.eq("_id", eventId), Updates.combine(
+            Updates.inc("activeBookings", -cancelledBookings),
+            Updates.inc("cancelledBookings", cancelledBookings),
+            Updates.inc("ticketsSold", -seats),
+            Updates.inc("revenue", -amount),
+            Updates.inc("refunds", refund)));
+        if (stats == null) {
+            System.err.println("[ANALYTICS WARNING] No counters for event " + eventId + "; rebuild analytics");
+        } else if (!stats.getBoolean("deleted", false) && stats.getString("type") != null) {
+            categoryStats.updateOne(Filters.eq("_id", stats.getString("type")), Updates.combine(
+                Updates.inc("ticketsSold", -seats),
+                Updates.inc("revenue", -amount)));
+        }
+        dailyStats.updateOne(Filters.eq("_id", today()), Updates.combine(
+            Updates.inc("cancellations", cancelledBookings),
+            Updates.inc("ticketsCancelled", seats),
+            Updates.inc("refunds", refund)), UPSERT);
+    }
+
+    /**
+     * Keep the event's name and type in step with the event; a type change
+     * moves its counters to the new category.
+     */
+    void recordEventDetails(Event event) {
+        Document before = eventStats.findOneAndUpdate(Filters.eq("_id", event.getId()), Updates.combine(
+            Updates.set("eventName", event.getName()),
+            Updates.set("type", event.getType())));
+        if (before == null || before.getBoolean("deleted", false)
+                || Objects.equals(event.getType(), before.getString("type"))) {
+            return;
+        }
+        moveCategoryCounters(before, before.getString("type"), -1);
+        moveCategoryCounters(before, event.getType(), 1);
+    }
+
+    /**
+     * Take a deleted event out of its category. Its own counters stay for
+     * the booking totals.
+     */
+    void recordEventDeleted(int eventId) {
+        Document before = eventStats.findOneAndUpdate(
+            Filters.and(Filters.eq("_id", eventId), Filters.ne("deleted", true)),
+            Updates.set("deleted", true));
+        if (before != null) {
+            moveCategoryCounters(before, before.getString("type"), -1);
+        }
+    }
+
+    private void moveCategoryCounters(Document stats, String type, int sign) {
+        if (type == null) return;
+        categoryStats.updateOne(Filters.eq("_id", type), Updates.combine(
+            Updates.inc("ticketsSold", sign * (int) number(stats, "ticketsSold")),
+            Updates.inc("revenue", sign * number(stats, "revenue"))), UPSERT);
+    }
+
+    // ==========================================================
+    // == READ PATH ==
+    // ==========================================================
+
+    List<Document> getTopEventsByRevenue(int limit) {
+        List<Document> top = new ArrayList<>();
+        for (Document stats : eventStats.find(Filters.ne("deleted", true))
+                .sort(Sorts.descending("revenue")).limit(limit)) {
+            if (number(stats, "revenue") <= 0) break;
+            top.add(new Document("eventName", stats.getString("eventName"))
+                .append("revenue", number(stats, "revenue"))
+                .append("ticketsSold", (int) number(stats, "ticketsSold")));
+        }
+        return top;
+    }
+
+    List<Document> getRevenueByCategory() {
+        List<Document> categories = new ArrayList<>();
+        for (Document stats : categoryStats.find(Filters.gt("revenue", 0)).sort(Sorts.descending("revenue"))) {
+            categories.add(new Document("category", stats.getString("_id"))
+                .append("revenue", number(stats, "revenue")));
+        }
+        return categories;
+    }
+
+    /**
+     * Booking totals over all events: activeBookings, cancelledBookings
+     */
+    Document getBookingTotals() {
+        Document totals = eventStats.aggregate(Arrays.asList(
+            new Document("$group", new Document("_id", null)
+                .append("activeBookings", new Document("$sum", "$activeBookings"))
+                .append("cancelledBookings", new Document("$sum", "$cancelledBookings")))
+        )).first();
+        if (totals == null) totals = new Document();
+        return new Document("activeBookings", (long) number(totals, "activeBookings"))
+            .append("cancelledBookings", (long) number(totals, "cancelledBookings"));
+    }
+
+    /**
+     * Daily counters for the last days days, oldest first. Days without
+     * activity are missing.
+     */
+    List<Document> getDailySales(int days) {
+        String from = LocalDate.now().minusDays(days - 1L).toString();
+        return dailyStats.find(Filters.gte("_id", from)).sort(Sorts.ascending("_id")).into(new ArrayList<>());
+    }
+
+    // ==========================================================
+    // == REBUILD ==
+    // ==========================================================
+
+    /**
+     * Recompute every counter from the bookings, server-side. Used by the
+     * schema migration and safe to run again at any time while no bookings
+     * are being written. Partial-cancellation refunds are not stored on
+     * bookings, so rebuilt refund totals only cover full cancellations.
+     */
+    void rebuild() {
+        String zone = ZoneId.systemDefault().getId();
+        Document active = new Document("$ne", Arrays.asList("$cancelled", true));
+
+        eventStats.deleteMany(new Document());
+        database.getCollection("bookings").aggregate(Arrays.asList(
+            new Document("$group", new Document("_id", "$eventId")
+                .append("eventName", new Document("$first", "$eventName"))
+                .append("activeBookings", sumIf(active, 1))
+                .append("cancelledBookings", sumIf(new Document("$eq", Arrays.asList("$cancelled", true)), 1))
+                .append("ticketsSold", sumIf(active, "$seatsBooked"))
+                .append("revenue", sumIf(active, "$totalPrice"))
+                .append("refunds", new Document("$sum", new Document("$ifNull", Arrays.asList("$refundAmount", 0))))),
+            new Document("$lookup", new Document("from", "events")
+                .append("localField", "_id")
+                .append("foreignField", "id")
+                .append("as", "event")),
+            new Document("$set", new Document("deleted", new Document("$eq", Arrays.asList(new Document("$size", "$event"), 0)))
+                .append("eventName", new Document("$ifNull", Arrays.asList(
+                    new Document("$arrayElemAt", Arrays.asList("$event.name", 0)), "$eventName")))
+                .append("type", new Document("$arrayElemAt", Arrays.asList("$event.type", 0)))),
+            new Document("$unset", "event"),
+            new Document("$merge", new Document("into", "analytics_events").append("whenMatched", "replace"))
+        )).toCollection();
+
+        categoryStats.deleteMany(new Document());
+        eventStats.aggregate(Arrays.asList(
+            new Document("$match", new Document("deleted", false)),
+            new Document("$group", new Document("_id", "$type")
+                .append("ticketsSold", new Document("$sum", "$ticketsSold"))
+                .append("revenue", new Document("$sum", "$revenue"))),
+            new Document("$merge", new Document("into", "analytics_categories").append("whenMatched", "replace"))
+        )).toCollection();
+
+        dailyStats.deleteMany(new Document());
+        database.getCollection("bookings").aggregate(Arrays.asList(
+            new Document("$match", new Document("timestamp", new Document("$type", "date"))),
+            new Document("$group", new Document("_id", day("$timestamp", zone))
+                .append("bookings", new Document("$sum", 1))
+                .append("ticketsSold", new Document("$sum", "$seatsBooked"))
+                .append("revenue", new Document("$sum", "$totalPrice"))),
+            new Document("$merge", new Document("into", "analytics_daily").append("whenMatched", "merge"))
+        )).toCollection();
+        database.getCollection("bookings").aggregate(Arrays.asList(
+            new Document("$match", new Document("cancelled", true).append("refundDate", new Document("$type", "date"))),
+            new Document("$group", new Document("_id", day("$refundDate", zone))
+                .append("cancellations", new Document("$sum", 1))
+                .append("ticketsCancelled", new Document("$sum", "$seatsBooked"))
+                .append("refunds", new Document("$sum", new Document("$ifNull", Arrays.asList("$refundAmount", 0))))),
+            new Document("$merge", new Document("into", "analytics_daily").append("whenMatched", "merge"))
+        )).toCollection();
+
+        System.out.println("[ANALYTICS] Rebuilt counters for " + eventStats.countDocuments() + " events, "
+            + categoryStats.countDocuments() + " categories, " + dailyStats.countDocuments() + " days");
+    }
+
+    private static Document sumIf(Document condition, Object value) {
+        return new Document("$sum", new Document("$cond", Arrays.asList(condition, value, 0)));
+    }
+
+    private static Document day(String field, String zone) {
+        return new Document("$dateToString", new Document("format", "%Y-%m-%d")
+            .append("date", field).append("timezone", zone));
+    }
+
+    private static String today() {
+        return LocalDate.now().toString();
+    }
+
+    private static double number(Document doc, String field) {
+        Object value = doc.get(field);
+        return value instanceof Number ? ((Number) value).doubleValue() : 0.0;
+    }
+}
@@ -0,0 +1,107 @@
+package com.eventbooking.database;
+
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionClosedEvent;
+import com.mongodb.event.ConnectionCreatedEvent;
+import com.mongodb.event.ConnectionPoolCreatedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connection pool metrics, fed by the driver's pool events.
+ *
+ * Tracks how many connections are open and checked out, how many threads
+ * are waiting for one, and how long check-outs take. A high peak of checked
+ * out connections together with long waits means the pool is too small.
+ */
+public class ConnectionPoolMetrics implements ConnectionPoolListener {
+    private final AtomicInteger maxSize = new AtomicInteger();
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicInteger checkedOut = new AtomicInteger();
+    private final AtomicInteger peakCheckedOut = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger peakWaiting = new AtomicInteger();
+    private final AtomicLong checkOuts = new AtomicLong();
+    private final AtomicLong failedCheckOuts = new AtomicLong();
+    private final AtomicLong totalWaitMicros = new AtomicLong();
+    private final AtomicLong maxWaitMicros = new AtomicLong();
+
+    @Override
+    public void connectionPoolCreated(ConnectionPoolCreatedEvent event) {
+        maxSize.set(event.getSettings().getMaxSize());
+    }
+
+    @Override
+    public void connectionCreated(ConnectionCreatedEvent event) {
+        open.incrementAndGet();
+    }
+
+    @Override
+    public void connectionClosed(ConnectionClosedEvent event) {
+        open.decrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckOutStarted(ConnectionCheckOutStartedEvent event) {
+        peakWaiting.accumulateAndGet(waiting.incrementAndGet(), Math::max);
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        waiting.decrementAndGet();
+        checkOuts.incrementAndGet();
+        peakCheckedOut.accumulateAndGet(checkedOut.incrementAndGet(), Math::max);
+        recordWait(event.getElapsedTime(TimeUnit.MICROSECONDS));
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        waiting.decrementAndGet();
+        failedCheckOuts.incrementAndGet();
+        recordWait(event.getElapsedTime(TimeUnit.MICROSECONDS));
+        System.err.println("[DB POOL] Connection check-out failed: " + event.getReason());
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        checkedOut.decrementAndGet();
+    }
+
+    private void recordWait(long micros) {
+        totalWaitMicros.addAndGet(micros);
+        maxWaitMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    public int getMaxSize() { return maxSize.get(); }
+    public int getOpenConnections() { return open.get(); }
+    public int getCheckedOutConnections() { return checkedOut.get(); }
+    public int getPeakCheckedOutConnections() { return peakCheckedOut.get(); }
+    public int getWaitingThreads() { return waiting.get(); }
+    public int getPeakWaitingThreads() { return peakWaiting.get(); }
+    public long getCheckOutCount() { return checkOuts.get(); }
+    public long getFailedCheckOutCount() { return failedCheckOuts.get(); }
+
+    public double getAverageWaitMillis() {
+        long count = checkOuts.get() + failedCheckOuts.get();
+        return count == 0 ? 0.0 : totalWaitMicros.get() / 1000.0 / count;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitMicros.get() / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("checkedOut=%d/%d (peak %d), open=%d, waiting=%d (peak %d), "
+                + "checkOuts=%d, failed=%d, avgWait=%.2fms, maxWait=%.2fms",
+            getCheckedOutConnections(), getMaxSize(), getPeakCheckedOutConnections(), getOpenConnections(),
+            getWaitingThreads(), getPeakWaitingThreads(), getCheckOutCount(), getFailedCheckOutCount(),
+            getAverageWaitMillis(), getMaxWaitMillis());
+    }
+}
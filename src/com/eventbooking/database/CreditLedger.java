@@ -0,0 +1,146 @@
+package com.eventbooking.database;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Credit Ledger - append-only history of credit point movements.
+ *
+ * Every change to a user's points is one document in credit_transactions
+ * (idempotencyKey, username, signed points, type, reason, balanceAfter,
+ * timestamp). users.creditPoints is a cached balance written in the same
+ * transaction as the entry and can be rebuilt from the ledger at any time.
+ *
+ * A debit is a single conditional findOneAndUpdate (creditPoints >= n), so
+ * concurrent checkouts cannot take a balance below zero. idempotencyKey is
+ * unique: posting the same key twice fails the second write, which rolls
+ * back its balance change.
+ */
+class CreditLedger {
+    static final String COLLECTION = "credit_transactions";
+    static final String AWARD = "AWARD";
+    static final String REDEEM = "REDEEM";
+    static final String REFUND = "REFUND";
+    static final String OPENING = "OPENING";
+
+    private static final FindOneAndUpdateOptions RETURN_BALANCE = new FindOneAndUpdateOptions()
+        .projection(Projections.include("creditPoints"))
+        .returnDocument(ReturnDocument.AFTER);
+
+    private final MongoCollection<Document> usersCollection;
+    private final MongoCollection<Document> ledgerCollection;
+
+    CreditLedger(MongoCollection<Document> usersCollection, MongoCollection<Document> ledgerCollection) {
+        this.usersCollection = usersCollection;
+        this.ledgerCollection = ledgerCollection;
+    }
+
+    /**
+     * Change a balance and record it. Joins the caller's transaction.
+     * @param points signed; a negative amount only applies if the balance covers it
+     * @return the new balance, or null if the user is missing or cannot cover a debit
+     */
+    Integer post(TransactionRunner.TransactionContext tx, String username, int points, String type,
+                 String reason, String idempotencyKey) {
+        Bson filter = points < 0
+            ? Filters.and(Filters.eq("username", username), Filters.gte("creditPoints", -points))
+            : Filters.eq("username", username);
+        Document user = usersCollection.findOneAndUpdate(tx.session(), filter,
+            Updates.inc("creditPoints", points), RETURN_BALANCE);
+        if (user == null) return null;
+        tx.onRollback(() -> usersCollection.updateOne(tx.session(), Filters.eq("username", username),
+            Updates.inc("creditPoints", -points)));
+
+        int balance = user.getInteger("creditPoints", 0);
+        ledgerCollection.insertOne(tx.session(), entry(idempotencyKey, username, points, type, reason)
+            .append("balanceAfter", balance));
+        return balance;
+    }
+
+    /**
+     * Record balance changes another write already applied (the award
+     * bulkWrite). Joins the caller's transaction.
+     */
+    void record(TransactionRunner.TransactionContext tx, List<Document> entries) {
+        if (entries.isEmpty()) return;
+        ledgerCollection.insertMany(tx.session(), entries);
+        List<String> keys = new ArrayList<>();
+        for (Document entry : entries) keys.add(entry.getString("idempotencyKey"));
+        tx.onRollback(() -> ledgerCollection.deleteMany(tx.session(), Filters.in("idempotencyKey", keys)));
+    }
+
+    static Document entry(String idempotencyKey, String username, int points, String type, String reason) {
+        return new Document("idempotencyKey", idempotencyKey)
+            .append("username", username)
+            .append("points", points)
+            .append("type", type)
+            .append("reason", reason)
+            .append("timestamp", new Date());
+    }
+
+    /**
+     * A user's movements, newest first
+     */
+    List<Document> history(String username, int limit) {
+        return ledgerCollection.find(Filters.eq("username", username))
+            .sort(new Document("timestamp", -1).append("_id", -1))
+            .limit(limit)
+            .into(new ArrayList<>());
+    }
+
+    // ==========================================================
+    // == REBUILD ==
+    // ==========================================================
+
+    /**
+     * Open the ledger for balances that predate it: one OPENING entry per
+     * user holding points. Safe to run again; users already opened are kept.
+     */
+    static void open(MongoDatabase db) {
+        db.getCollection("users").aggregate(Arrays.asList(
+            new Document("$match", new Document("creditPoints", new Document("$ne", 0))
+                .append("username", new Document("$type", "string"))),
+            new Document("$project", new Document("_id", 0)
+                .append("idempotencyKey", new Document("$concat", Arrays.asList("opening:", "$username")))
+                .append("username", 1)
+                .append("points", new Document("$ifNull", Arrays.asList("$creditPoints", 0)))
+                .append("type", OPENING)
+                .append("reason", "Balance carried over to the ledger")
+                .append("balanceAfter", new Document("$ifNull", Arrays.asList("$creditPoints", 0)))
+                .append("timestamp", "$$NOW")),
+            new Document("$merge", new Document("into", COLLECTION)
+                .append("on", "idempotencyKey")
+                .append("whenMatched", "keepExisting")
+                .append("whenNotMatched", "insert"))
+        )).toCollection();
+    }
+
+    /**
+     * Recompute every cached balance as the sum of the user's ledger
+     * entries, server-side. Run while no points are being posted.
+     */
+    static void rebuildBalances(MongoDatabase db) {
+        db.getCollection(COLLECTION).aggregate(Arrays.asList(
+            new Document("$group", new Document("_id", "$username")
+                .append("creditPoints", new Document("$sum", "$points"))),
+            new Document("$project", new Document("_id", 0).append("username", "$_id").append("creditPoints", 1)),
+            new Document("$merge", new Document("into", "users")
+                .append("on", "username")
+                .append("whenMatched", "merge")
+                .append("whenNotMatched", "discard"))
+        )).toCollection();
+        System.out.println("[DB] Credit point balances rebuilt from the ledger");
+    }
+}
@@ -1,15 +1,26 @@
 package com.eventbooking.database;
 
+import com.eventbooking.AppConfig;
+import com.eventbooking.database.codecs.BsonDates;
+import com.eventbooking.database.codecs.ModelCodecs;
 import com.eventbooking.models.*;
 import com.eventbooking.services.EmailService;
 import com.eventbooking.services.RefundService;
 import com.eventbooking.MongoDBConnection;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
 import com.mongodb.client.*;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
 import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
 import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.UpdateResult;
 import org.bson.Document;
 import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
@@ -17,29 +28,94 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.time.ZoneId;
 import java.util.Date;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * Data access for the whole application. One shared instance is used by
+ * every screen and service; it is thread-safe because the driver's
+ * collections and the shared connection pool are.
+ */
 public class DatabaseManager {
+    private static DatabaseManager instance;
+    private static final int DEFAULT_SEAT_MAP_SEATS = 50;
+    private static final int BEST_AVAILABLE_ATTEMPTS = 5;
+    private static final long BEST_AVAILABLE_BACKOFF_MILLIS = 20;
+    public static final int NOTIFICATION_PAGE_SIZE = 50;
+
     private MongoDatabase database;
     private MongoCollection<Document> usersCollection;
     private MongoCollection<Document> eventsCollection;
     private MongoCollection<Document> bookingsCollection;
     private MongoCollection<Document> seatMapsCollection;
     private MongoCollection<Document> notificationsCollection;
+    private MongoCollection<Document> countersCollection;
+    private MongoCollection<Document> jobsCollection;
+    private MongoCollection<Document> awardRunsCollection;
+    private MongoCollection<Document> awardEntriesCollection;
+    private MongoCollection<User> userModels;
+    private MongoCollection<Event> eventModels;
+    private MongoCollection<Booking> bookingModels;
+    private MongoCollection<SeatMap> seatMapModels;
+    private SeatReservationEngine seatReservationEngine;
+    private IdAllocator bookingIdAllocator;
+    private IdAllocator eventIdAllocator;
+    private EventCache eventCache;
+    private EventSearchIndex searchIndex;
+    private TransactionRunner transactionRunner;
+    private AnalyticsStore analytics;
+    private Leaderboard leaderboard;
+    private CreditLedger creditLedger;
+    private SeatHoldManager seatHolds;
+    private NotificationInbox inbox;
+
+    public static synchronized DatabaseManager getInstance() {
+        if (instance == null) {
+            instance = new DatabaseManager();
+        }
+        return instance;
+    }
 
-    public DatabaseManager() {
-        this.database = MongoDBConnection.getDatabase();
+    private DatabaseManager() {
+        this.database = MongoDBConnection.getDatabase().withCodecRegistry(ModelCodecs.registry());
         this.usersCollection = database.getCollection("users");
         this.eventsCollection = database.getCollection("events");
         this.bookingsCollection = database.getCollection("bookings");
         this.seatMapsCollection = database.getCollection("seatmaps");
         this.notificationsCollection = database.getCollection("notifications");
+        this.countersCollection = database.getCollection("counters");
+        this.jobsCollection = database.getCollection("jobs");
+        this.awardRunsCollection = database.getCollection("credit_award_runs");
+        this.awardEntriesCollection = database.getCollection("credit_award_entries");
+        this.userModels = database.getCollection("users", User.class);
+        this.eventModels = database.getCollection("events", Event.class);
+        this.bookingModels = database.getCollection("bookings", Booking.class);
+        this.seatMapModels = database.getCollection("seatmaps", SeatMap.class);
+        this.seatReservationEngine = new SeatReservationEngine(seatMapsCollection, eventsCollection, bookingsCollection);
+        this.bookingIdAllocator = new IdAllocator(countersCollection, bookingsCollection, "bookingId", 1000);
+        this.eventIdAllocator = new IdAllocator(countersCollection, eventsCollection, "eventId", 10);
+        this.transactionRunner = new TransactionRunner(MongoDBConnection.getClient());
+        this.analytics = new AnalyticsStore(database);
+        this.leaderboard = new Leaderboard(usersCollection, bookingsCollection, transactionRunner);
+        this.creditLedger = new CreditLedger(usersCollection, database.getCollection(CreditLedger.COLLECTION));
+        this.inbox = new NotificationInbox(notificationsCollection, database.getCollection(NotificationInbox.COUNTERS),
+            database.getCollection(NotificationInbox.ARCHIVE));
+        startNotificationWriter();
+        this.seatHolds = new SeatHoldManager(database.getCollection(SeatHoldManager.COLLECTION), seatReservationEngine,
+            transactionRunner, AppConfig.getInstance().getInt("holds.ttlSeconds", 600));
+        this.eventCache = EventCache.getInstance();
+        this.searchIndex = new EventSearchIndex(eventModels,
+            Math.max(1, AppConfig.getInstance().getInt("search.maxResults", 1000)));
+        this.eventCache.addInvalidationListener(searchIndex);
+        this.eventCache.watch(eventsCollection);
+        NotificationFeed.getInstance().watch(database, inbox::cacheUnread);
     }
 
     // ==========================================================
@@ -59,21 +135,16 @@ public class DatabaseManager {
             .append("monthlyTickets", 0)
             .append("monthlyEvents", 0)
             .append("monthlySpent", 0.0)
+            .append("totalSpent", 0.0)
             .append("profileImagePath", null); // ADDED: Field for profile image path
         usersCollection.insertOne(d);
         return true;
     }
 
     public User authenticateUser(String u, String p, String r) {
-        Document d = usersCollection.find(new Document("username", u).append("role", r)).first();
-        if (d != null && d.getString("password").equals(hashPassword(p))) {
-            if (r.equals("Admin")) return new Admin(u, p, d.getString("email"), d.getString("phone"));
-            else {
-                Attendee a = new Attendee(u, p, d.getString("email"), d.getString("phone"));
-                a.setTicketsBought(d.getInteger("ticketsBought", 0));
-                a.setEventsAttended(d.getInteger("eventsAttended", 0));
-                return a;
-            }
+        User user = userModels.find(Filters.and(Filters.eq("username", u), Filters.eq("role", r))).first();
+        if (user != null && user.getPassword() != null && user.getPassword().equals(hashPassword(p))) {
+            return user;
         }
         return null;
     }
@@ -135,9 +206,9 @@ public class DatabaseManager {
 
     public boolean addEvent(Event event) {
         try {
-            Document doc = eventToDocument(event);
-            eventsCollection.insertOne(doc);
-            createDefaultSeatMap(event.getId());
+            eventModels.insertOne(event);
+            eventCache.invalidate(event.getId());
+            createDefaultSeatMap(event.getId(), event.getTotalSeats());
             return true;
         } catch (Exception e) { 
             return false; 
@@ -147,25 +218,7 @@ public class DatabaseManager {
     public List<Booking> getBookingsForEvent(int eventId) {
         List<Booking> bookings = new ArrayList<>();
         try {
-            for (Document doc : bookingsCollection.find(new Document("eventId", eventId))) {
-                try {
-                    Booking booking = new Booking(
-                        doc.getInteger("id"),
-                        doc.getString("username"),
-                        doc.getInteger("eventId"),
-                        doc.getString("eventName"),
-                        doc.getInteger("seatsBooked"),
-                        doc.getDouble("totalPrice"),
-                        parseTimestamp(doc)
-                    );
-                    if (doc.getBoolean("cancelled", false)) booking.cancel();
-                    if (doc.containsKey("paymentMethod")) booking.setPaymentMethod(doc.getString("paymentMethod"));
-                    if (doc.containsKey("transactionId")) booking.setTransactionId(doc.getString("transactionId"));
-                    bookings.add(booking);
-                } catch (Exception e) {
-                    System.err.println("[DB ERROR] Error parsing booking: " + e.getMessage());
-                }
-            }
+            bookingModels.find(Filters.eq("eventId", eventId)).into(bookings);
         } catch (Exception e) {
             System.err.println("[DB ERROR] Error fetching bookings: " + e.getMessage());
         }
@@ -175,28 +228,79 @@ public class DatabaseManager {
     public List<Booking> getBookingsForEventsOnDate(LocalDate date) {
         List<Booking> bookings = new ArrayList<>();
         Bson filter = Filters.and(
-            Filters.eq("eventDate", date.toString()),
+            Filters.eq("eventDate", BsonDates.fromLocalDate(date)),
             Filters.eq("cancelled", false)
         );
-        for (Document doc : bookingsCollection.find(filter)) {
-            bookings.add(documentToBooking(doc));
-        }
-        return bookings;
+        return bookingModels.find(filter).into(bookings);
     }
 
+    /**
+     * Save an admin's edit of the event's details. Only the editable fields
+     * are written: seatsAvailable belongs to the reservation engine and is
+     * never taken from the (possibly stale) Event passed in. A new totalSeats
+     * moves seatsAvailable by the difference and replaces the seat map, so it
+     * is refused once any seat is sold or held.
+     * @return false if the event is gone, the seat change was refused or the write failed
+     */
     public boolean updateEvent(Event event) {
+        int eventId = event.getId();
         try {
-            eventsCollection.replaceOne(Filters.eq("id", event.getId()), eventToDocument(event));
+            Document current = eventsCollection.find(Filters.eq("id", eventId))
+                .projection(Projections.include("totalSeats")).first();
+            if (current == null) return false;
+            int oldTotal = current.getInteger("totalSeats", 0);
+            int delta = event.getTotalSeats() - oldTotal;
+            Bson details = Updates.combine(
+                Updates.set("name", event.getName()),
+                Updates.set("type", event.getType()),
+                Updates.set("venue", event.getVenue()),
+                Updates.set("date", BsonDates.fromLocalDate(event.getDate())),
+                Updates.set("price", event.getPrice()));
+
+            if (delta == 0) {
+                eventsCollection.updateOne(Filters.eq("id", eventId), details);
+            } else {
+                Boolean resized = transactionRunner.run("resize event " + eventId, tx -> {
+                    // Only while nothing is sold or held: the map is rebuilt empty
+                    UpdateResult result = eventsCollection.updateOne(tx.session(),
+                        Filters.and(Filters.eq("id", eventId), Filters.eq("totalSeats", oldTotal),
+                            Filters.eq("seatsAvailable", oldTotal)),
+                        Updates.combine(details, Updates.set("totalSeats", event.getTotalSeats()),
+                            Updates.inc("seatsAvailable", delta)));
+                    if (result.getMatchedCount() == 0) {
+                        throw tx.abort("Seats of event " + eventId + " are already sold or held");
+                    }
+                    tx.onRollback(() -> eventsCollection.updateOne(tx.session(), Filters.eq("id", eventId),
+                        Updates.combine(Updates.set("totalSeats", oldTotal), Updates.inc("seatsAvailable", -delta))));
+                    seatMapsCollection.deleteOne(tx.session(), Filters.eq("eventId", eventId));
+                    seatMapModels.insertOne(tx.session(), SeatMap.forCapacity(eventId, event.getTotalSeats()));
+                    return true;
+                });
+                seatReservationEngine.forget(eventId);
+                if (resized == null) {
+                    System.err.println("[DB ERROR] Seat count of event " + eventId
+                        + " can only change before any seats are sold");
+                    eventCache.invalidate(eventId);
+                    return false;
+                }
+            }
+            eventCache.invalidate(eventId);
+            analytics.recordEventDetails(event);
             return true;
-        } catch (Exception e) { 
-            return false; 
+        } catch (Exception e) {
+            System.err.println("[DB ERROR] Error updating event: " + e.getMessage());
+            eventCache.invalidate(eventId);
+            return false;
         }
     }
 
     public boolean deleteEvent(int eventId) {
         try {
             eventsCollection.deleteOne(Filters.eq("id", eventId));
+            eventCache.invalidate(eventId);
             seatMapsCollection.deleteOne(Filters.eq("eventId", eventId));
+            seatReservationEngine.forget(eventId);
+            analytics.recordEventDeleted(eventId);
             return true;
         } catch (Exception e) {
             System.err.println("[DB ERROR] Error deleting event: " + e.getMessage());
@@ -205,45 +309,41 @@ public class DatabaseManager {
     }
 
     public Event getEventById(int eventId) {
-        Document doc = eventsCollection.find(Filters.eq("id", eventId)).first();
-        return doc != null ? documentToEvent(doc) : null;
+        return eventCache.getEvent(eventId, () -> eventModels.find(Filters.eq("id", eventId)).first());
     }
 
     public List<Event> getAllEvents() {
-        List<Event> events = new ArrayList<>();
-        try (MongoCursor<Document> cursor = eventsCollection.find().iterator()) {
-            while (cursor.hasNext()) events.add(documentToEvent(cursor.next())); 
-        }
-        return events;
+        return eventCache.getAllEvents(() -> eventModels.find().into(new ArrayList<>()));
     }
 
     public List<Event> searchEvents(String searchText, String category, Double minPrice, Double maxPrice) {
-        List<Bson> filters = new ArrayList<>();
-        if (searchText != null && !searchText.trim().isEmpty()) {
-            Pattern pattern = Pattern.compile(Pattern.quote(searchText), Pattern.CASE_INSENSITIVE);
-            filters.add(Filters.or(Filters.regex("name", pattern), Filters.regex("venue", pattern)));
-        }
-        if (category != null && !category.equals("All")) {
-            filters.add(Filters.eq("type", category));
-        }
-        if (minPrice != null && maxPrice != null && maxPrice > minPrice) {
-            filters.add(Filters.and(Filters.gte("price", minPrice), Filters.lte("price", maxPrice)));
-        }
-        Bson finalFilter = filters.isEmpty() ? new Document() : Filters.and(filters);
-        List<Event> events = new ArrayList<>();
-        try (MongoCursor<Document> cursor = eventsCollection.find(finalFilter).iterator()) {
-            while (cursor.hasNext()) events.add(documentToEvent(cursor.next())); 
-        }
-        return events;
+        return searchEvents(searchText, category, minPrice, maxPrice, null, null, null);
+    }
+
+    /**
+     * Search name, type and venue by word prefix (tolerating typos), ranked
+     * best first, within optional category, price, date and status filters.
+     * Served from the in-memory search index; "All" means no filter.
+     */
+    public List<Event> searchEvents(String searchText, String category, Double minPrice, Double maxPrice,
+                                    LocalDate from, LocalDate to, String status) {
+        return searchIndex.search(searchText, "All".equals(category) ? null : category, minPrice, maxPrice,
+            from, to, "All".equals(status) ? null : status);
+    }
+
+    /**
+     * The most events one searchEvents call returns
+     */
+    public int getSearchResultLimit() {
+        return searchIndex.maxResults();
     }
 
     public List<String> getUniqueEventTypes() {
-        return eventsCollection.distinct("type", String.class).into(new ArrayList<>());
+        return eventCache.getEventTypes(() -> eventsCollection.distinct("type", String.class).into(new ArrayList<>()));
     }
     
     public int getNextEventId() {
-        Document doc = eventsCollection.find().sort(new Document("id", -1)).limit(1).first();
-        return doc != null ? doc.getInteger("id") + 1 : 1;
+        return eventIdAllocator.nextId();
     }
 
     // ==========================================================
@@ -252,22 +352,7 @@ public class DatabaseManager {
 
     public Booking getBookingById(int bookingId) {
         try {
-            Document result = bookingsCollection.find(new Document("id", bookingId)).first();
-            if (result != null) {
-                Booking booking = new Booking(
-                    result.getInteger("id"),
-                    result.getString("username"),
-                    result.getInteger("eventId"),
-                    result.getString("eventName"),
-                    result.getInteger("seatsBooked"),
-                    result.getDouble("totalPrice"),
-                    parseTimestamp(result)
-                );
-                if (result.containsKey("paymentMethod")) booking.setPaymentMethod(result.getString("paymentMethod"));
-                if (result.containsKey("transactionId")) booking.setTransactionId(result.getString("transactionId"));
-                return booking;
-            }
-            return null;
+            return bookingModels.find(Filters.eq("id", bookingId)).first();
         } catch (Exception e) {
             System.err.println("[DB ERROR] Error getting booking by ID: " + e.getMessage());
             return null;
@@ -275,20 +360,11 @@ public class DatabaseManager {
     }
 
     public SeatMap getSeatMapForEvent(int eventId) {
-        Document doc = seatMapsCollection.find(Filters.eq("eventId", eventId)).first();
-        if (doc == null) {
-            createDefaultSeatMap(eventId);
-            doc = seatMapsCollection.find(Filters.eq("eventId", eventId)).first();
-        }
-        List<String> rows = doc.getList("rows", String.class);
-        int seatsPerRow = doc.getInteger("seatsPerRow");
-        SeatMap seatMap = new SeatMap(eventId, rows, seatsPerRow);
-        List<Document> seats = doc.getList("seats", Document.class);
-        for (Document seatDoc : seats) {
-            Seat seat = seatMap.getSeat(seatDoc.getString("seatId"));
-            if (seat != null && "BOOKED".equals(seatDoc.getString("status"))) {
-                seat.book(seatDoc.getString("bookedBy"));
-            }
+        SeatMap seatMap = seatMapModels.find(Filters.eq("eventId", eventId)).first();
+        if (seatMap == null) {
+            Event event = getEventById(eventId);
+            createDefaultSeatMap(eventId, event != null ? event.getTotalSeats() : DEFAULT_SEAT_MAP_SEATS);
+            seatMap = seatMapModels.find(Filters.eq("eventId", eventId)).first();
         }
         return seatMap;
     }
@@ -297,31 +373,79 @@ public class DatabaseManager {
                                          String paymentMethod, String transactionId) {
         Event event = getEventById(eventId);
         if (event == null || seatIds.isEmpty()) return null;
-        if (!bookSeatsInMap(eventId, username, seatIds)) return null;
-        event.allocateSeats(seatIds.size());
-        updateEvent(event);
         int bookingId = getNextBookingId();
-        double totalPrice = seatIds.size() * event.getPrice();
-        LocalDateTime now = LocalDateTime.now();
-        Booking booking = new Booking(bookingId, username, eventId, event.getName(), seatIds.size(), totalPrice, now);
-        Document bookingDoc = bookingToDocument(booking);
-        bookingDoc.append("seatIds", seatIds)
-                  .append("paymentMethod", paymentMethod)
-                  .append("transactionId", transactionId)
-                  .append("paymentStatus", "Completed")
-                  .append("eventDate", event.getDate().toString());
-        bookingsCollection.insertOne(bookingDoc);
-        usersCollection.updateOne(Filters.eq("username", username), 
-            Updates.combine(
-                Updates.inc("ticketsBought", seatIds.size()),
-                Updates.inc("monthlyTickets", seatIds.size()),
-                Updates.inc("eventsAttended", 1),
-                Updates.inc("monthlyEvents", 1),
-                Updates.inc("monthlySpent", totalPrice)
-            ));
-        return booking;
+        try {
+            Booking created = transactionRunner.run("booking " + bookingId, tx -> {
+                SeatReservationEngine.SeatClaimResult claim =
+                    seatReservationEngine.claimSeats(tx.session(), eventId, username, seatIds);
+                if (!claim.isSuccess()) {
+                    throw tx.abort("Seat claim failed: " + claim.getMessage() + " " + claim.getConflictingSeats());
+                }
+                List<String> claimed = claim.getClaimedSeats();
+                tx.onRollback(() -> seatReservationEngine.releaseSeats(tx.session(), eventId, username, claimed));
+
+                Booking booking = newBooking(bookingId, username, event, claimed.size(), paymentMethod, transactionId);
+                booking.setSeatIds(claimed);
+                bookingModels.insertOne(tx.session(), booking);
+                usersCollection.updateOne(tx.session(), Filters.eq("username", username),
+                    bookingStatsUpdate(claimed.size(), booking.getTotalPrice()));
+                analytics.recordBooking(tx, event, claimed.size(), booking.getTotalPrice());
+                return booking;
+            });
+            eventCache.invalidateSeats(eventId);
+            if (created != null) {
+                leaderboard.recordBooking(created.getId(), username, created.getSeatsBooked(), created.getTotalPrice());
+            }
+            return created;
+        } catch (Exception e) {
+            System.err.println("[DB ERROR] Failed to save booking: " + e.getMessage());
+            eventCache.invalidateSeats(eventId);
+            return null;
+        }
     }
     
+    /**
+     * Book seatsCount tickets on the best available seats (see
+     * BestAvailableFinder). The pick is made on a snapshot of the seat map and
+     * claimed atomically; if another buyer takes one of the seats first, the
+     * search runs again on a fresh map after a randomised, growing pause, and
+     * the booking fails once the attempts run out. Only when the seat map
+     * itself has too few free seats for the group, e.g. on events with more
+     * tickets on sale than mapped seats, is an unassigned booking made.
+     */
+    public Booking createBestAvailableBooking(String username, int eventId, int seatsCount,
+                                              String paymentMethod, String transactionId) {
+        for (int attempt = 1; attempt <= BEST_AVAILABLE_ATTEMPTS; attempt++) {
+            SeatMap seatMap = getSeatMapForEvent(eventId);
+            List<String> seatIds = BestAvailableFinder.findSeats(seatMap, seatsCount);
+            if (seatIds.isEmpty()) {
+                return createSimpleBooking(username, eventId, seatsCount, paymentMethod, transactionId);
+            }
+            Booking booking = createBookingWithSeats(username, eventId, seatIds, paymentMethod, transactionId);
+            if (booking != null) return booking;
+            if (attempt == BEST_AVAILABLE_ATTEMPTS) break;
+            long backoff = ThreadLocalRandom.current().nextLong(BEST_AVAILABLE_BACKOFF_MILLIS << attempt);
+            System.out.println("[DB] Best available seats " + seatIds + " were taken, searching again in "
+                + backoff + "ms");
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        System.err.println("[DB ERROR] Best available seats for event " + eventId + " kept being taken; "
+            + "booking failed after " + BEST_AVAILABLE_ATTEMPTS + " attempts");
+        return null;
+    }
+
+    /**
+     * Suggest the best seats on a seat map already loaded, e.g. by the seat picker
+     */
+    public List<String> findBestAvailableSeats(SeatMap seatMap, int seatsCount) {
+        return BestAvailableFinder.findSeats(seatMap, seatsCount);
+    }
+
     public Booking createSimpleBooking(String username, int eventId, int seatsCount, 
                                       String paymentMethod, String transactionId) {
         System.out.println("[DB] createSimpleBooking called for user: " + username);
@@ -334,94 +458,191 @@ public class DatabaseManager {
             System.err.println("[DB ERROR] Not enough seats available");
             return null;
         }
-        if (!event.allocateSeats(seatsCount) || !updateEvent(event)) {
-            System.err.println("[DB ERROR] Failed to allocate/update event");
-            event.releaseSeats(seatsCount);
+        int bookingId = getNextBookingId();
+        try {
+            Booking created = transactionRunner.run("booking " + bookingId, tx -> {
+                if (!seatReservationEngine.reserveSeatCount(tx.session(), eventId, seatsCount)) {
+                    throw tx.abort("Not enough seats available");
+                }
+                tx.onRollback(() -> seatReservationEngine.releaseSeatCount(tx.session(), eventId, seatsCount));
+
+                Booking booking = newBooking(bookingId, username, event, seatsCount, paymentMethod, transactionId);
+                bookingModels.insertOne(tx.session(), booking);
+                usersCollection.updateOne(tx.session(), Filters.eq("username", username),
+                    bookingStatsUpdate(seatsCount, booking.getTotalPrice()));
+                analytics.recordBooking(tx, event, seatsCount, booking.getTotalPrice());
+                return booking;
+            });
+            eventCache.invalidateSeats(eventId);
+            if (created != null) {
+                leaderboard.recordBooking(created.getId(), username, seatsCount, created.getTotalPrice());
+                System.out.println("[DB SUCCESS] Simple booking created - ID: " + bookingId);
+            }
+            return created;
+        } catch (Exception e) {
+            System.err.println("[DB ERROR] Failed to save booking: " + e.getMessage());
+            eventCache.invalidateSeats(eventId);
+            return null;
+        }
+    }
+
+    // ==========================================================
+    // == SEAT HOLDS (CHECKOUT) ==
+    // ==========================================================
+
+    /**
+     * Hold seats while the buyer pays, so nobody can take them in the
+     * meantime. The hold expires after holds.ttlSeconds unless converted
+     * with createBookingFromHold or released with releaseSeatHold.
+     * @return the hold id, or null if any of the seats is taken or held
+     */
+    public String holdSeats(String username, int eventId, List<String> seatIds) {
+        if (seatIds.isEmpty()) return null;
+        try {
+            Document hold = seatHolds.place(username, eventId, seatIds);
+            eventCache.invalidateSeats(eventId);
+            return hold != null ? hold.getString("_id") : null;
+        } catch (Exception e) {
+            System.err.println("[DB ERROR] Failed to hold seats: " + e.getMessage());
+            eventCache.invalidateSeats(eventId);
+            return null;
+        }
+    }
+
+    /**
+     * Give held seats back, e.g. when payment fails or the buyer gives up
+     */
+    public boolean releaseSeatHold(String holdId) {
+        try {
+            return seatHolds.release(holdId, "released");
+        } catch (Exception e) {
+            System.err.println("[DB ERROR] Failed to release seat hold " + holdId + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Turn a paid hold into a booking. The hold, the seat map and the booking
+     * change in one transaction, so the held seats cannot be lost between
+     * payment and booking.
+     * @return the booking, or null if the hold has expired or was released
+     */
+    public Booking createBookingFromHold(String holdId, String paymentMethod, String transactionId) {
+        Document hold = seatHolds.get(holdId);
+        if (hold == null) {
+            System.err.println("[DB ERROR] Seat hold " + holdId + " has expired or was released");
             return null;
         }
+        int eventId = hold.getInteger("eventId");
+        String username = hold.getString("username");
+        List<String> seatIds = hold.getList("seatIds", String.class);
+        Event event = getEventById(eventId);
+        if (event == null) return null;
         int bookingId = getNextBookingId();
-        double totalPrice = seatsCount * event.getPrice();
-        LocalDateTime now = LocalDateTime.now();
-        Booking booking = new Booking(bookingId, username, eventId, event.getName(), seatsCount, totalPrice, now);
-        Document bookingDoc = bookingToDocument(booking);
-        bookingDoc.append("paymentMethod", paymentMethod)
-                  .append("transactionId", transactionId)
-                  .append("paymentStatus", "Completed")
-                  .append("eventDate", event.getDate().toString());
         try {
-            bookingsCollection.insertOne(bookingDoc);
-            usersCollection.updateOne(
-                Filters.eq("username", username),
-                Updates.combine(
-                    Updates.inc("ticketsBought", seatsCount),
-                    Updates.inc("monthlyTickets", seatsCount),
-                    Updates.inc("eventsAttended", 1),
-                    Updates.inc("monthlyEvents", 1),
-                    Updates.inc("monthlySpent", totalPrice)
-                )
-            );
-            System.out.println("[DB SUCCESS] Simple booking created - ID: " + bookingId);
-            return booking;
+            Booking created = transactionRunner.run("booking " + bookingId + " from hold " + holdId, tx -> {
+                if (!seatHolds.consume(tx, hold)) {
+                    throw tx.abort("Seat hold " + holdId + " has expired or was released");
+                }
+                if (!seatReservationEngine.convertHold(tx.session(), eventId, seatIds)) {
+                    throw tx.abort("Seats " + seatIds + " are no longer held");
+                }
+                tx.onRollback(() -> seatReservationEngine.revertToHold(tx.session(), eventId, seatIds));
+
+                Booking booking = newBooking(bookingId, username, event, seatIds.size(), paymentMethod, transactionId);
+                booking.setSeatIds(seatIds);
+                bookingModels.insertOne(tx.session(), booking);
+                usersCollection.updateOne(tx.session(), Filters.eq("username", username),
+                    bookingStatsUpdate(seatIds.size(), booking.getTotalPrice()));
+                analytics.recordBooking(tx, event, seatIds.size(), booking.getTotalPrice());
+                return booking;
+            });
+            eventCache.invalidateSeats(eventId);
+            if (created != null) {
+                leaderboard.recordBooking(created.getId(), username, created.getSeatsBooked(), created.getTotalPrice());
+            }
+            return created;
         } catch (Exception e) {
-            System.err.println("[DB ERROR] Failed to save booking: " + e.getMessage());
-            event.releaseSeats(seatsCount);
-            updateEvent(event);
+            System.err.println("[DB ERROR] Failed to save booking from hold: " + e.getMessage());
+            eventCache.invalidateSeats(eventId);
             return null;
         }
     }
+
+    /**
+     * Checkouts in progress for an event
+     */
+    public long getActiveHoldCount(int eventId) {
+        return seatHolds.activeHolds(eventId);
+    }
+
+    public int getSeatHoldMinutes() {
+        return (int) (seatHolds.getTtlMillis() / 60000);
+    }
+
+    private Booking newBooking(int bookingId, String username, Event event, int seats,
+                               String paymentMethod, String transactionId) {
+        Booking booking = new Booking(bookingId, username, event.getId(), event.getName(), seats,
+            seats * event.getPrice(), LocalDateTime.now());
+        booking.setPaymentMethod(paymentMethod);
+        booking.setTransactionId(transactionId);
+        booking.setPaymentStatus("Completed");
+        booking.setEventDate(event.getDate());
+        return booking;
+    }
+
+    private Bson bookingStatsUpdate(int seats, double totalPrice) {
+        return Updates.combine(
+            Updates.inc("ticketsBought", seats),
+            Updates.inc("monthlyTickets", seats),
+            Updates.inc("eventsAttended", 1),
+            Updates.inc("monthlyEvents", 1),
+            Updates.inc("monthlySpent", totalPrice),
+            Updates.inc("totalSpent", totalPrice)
+        );
+    }
+
+    private Bson ticketStatsUpdate(int seats, double amount) {
+        return Updates.combine(
+            Updates.inc("ticketsBought", seats),
+            Updates.inc("monthlyTickets", seats),
+            Updates.inc("totalSpent", amount)
+        );
+    }
     
     public List<Booking> getUserBookings(String username) {
-        List<Booking> bookings = new ArrayList<>();
-        try (MongoCursor<Document> cursor = bookingsCollection.find(Filters.eq("username", username)).iterator()) {
-            while (cursor.hasNext()) bookings.add(documentToBooking(cursor.next())); 
-        }
-        return bookings;
+        return bookingModels.find(Filters.eq("username", username)).into(new ArrayList<>());
     }
 
     public boolean cancelBookingForEventCancellation(int bookingId, double refundAmount, String reason) {
         try {
-            Document bookingDoc = bookingsCollection.find(Filters.eq("id", bookingId)).first();
-            if (bookingDoc == null || bookingDoc.getBoolean("cancelled", false)) {
-                return false;
-            }
-            
-            String username = bookingDoc.getString("username");
-            int eventId = bookingDoc.getInteger("eventId");
-            int seats = bookingDoc.getInteger("seatsBooked");
-            
-            bookingsCollection.updateOne(
-                Filters.eq("id", bookingId),
-                Updates.combine(
-                    Updates.set("cancelled", true),
-                    Updates.set("status", "Cancelled - Event Cancelled by Organizer"),
-                    Updates.set("paymentStatus", "Full Refund Processed"),
-                    Updates.set("refundAmount", refundAmount),
-                    Updates.set("refundPercentage", 100.0),
-                    Updates.set("refundReason", reason),
-                    Updates.set("refundDate", LocalDateTime.now().toString()),
-                    Updates.set("cancellationType", "Admin Event Cancellation")
-                )
-            );
-            
-            List<String> seatIds = bookingDoc.getList("seatIds", String.class);
-            if (seatIds != null && !seatIds.isEmpty()) {
-                releaseSeatsInMap(eventId, seatIds);
-            }
-            
-            Event event = getEventById(eventId);
-            if (event != null) {
-                event.releaseSeats(seats);
-                updateEvent(event);
-            }
-            
-            usersCollection.updateOne(
-                Filters.eq("username", username),
-                Updates.combine(
-                    Updates.inc("ticketsBought", -seats),
-                    Updates.inc("monthlyTickets", -seats)
-                )
-            );
-            
+            Document bookingDoc = transactionRunner.run("event cancellation of booking " + bookingId, tx -> {
+                Document before = bookingsCollection.findOneAndUpdate(tx.session(),
+                    Filters.and(Filters.eq("id", bookingId), Filters.ne("cancelled", true)),
+                    Updates.combine(
+                        Updates.set("cancelled", true),
+                        Updates.set("status", "Cancelled - Event Cancelled by Organizer"),
+                        Updates.set("paymentStatus", "Full Refund Processed"),
+                        Updates.set("refundAmount", refundAmount),
+                        Updates.set("refundPercentage", 100.0),
+                        Updates.set("refundReason", reason),
+                        Updates.set("refundDate", new Date()),
+                        Updates.set("cancellationType", "Admin Event Cancellation")
+                    ));
+                if (before == null) {
+                    throw tx.abort("Booking " + bookingId + " not found or already cancelled");
+                }
+                tx.onRollback(() -> restoreBooking(tx.session(), before));
+                releaseCancelledSeats(tx, before, before.getInteger("seatsBooked"), before.getDouble("totalPrice"),
+                    before.getList("seatIds", String.class));
+                analytics.recordCancellation(tx, before.getInteger("eventId"), 1, before.getInteger("seatsBooked"),
+                    before.getDouble("totalPrice"), refundAmount);
+                return before;
+            });
+            if (bookingDoc == null) return false;
+            eventCache.invalidateSeats(bookingDoc.getInteger("eventId"));
+            recordCancelledOnLeaderboard(bookingDoc, bookingDoc.getInteger("seatsBooked"),
+                bookingDoc.getDouble("totalPrice"), true);
             return true;
         
         } catch (Exception e) {
@@ -439,7 +660,7 @@ public class DatabaseManager {
             int eventId = bookingDoc.getInteger("eventId");
             int seats = bookingDoc.getInteger("seatsBooked");
             double totalPrice = bookingDoc.getDouble("totalPrice");
-            String eventDateStr = bookingDoc.getString("eventDate");
+            LocalDate eventDate = BsonDates.toLocalDate(bookingDoc.get("eventDate"));
             
             System.out.println("\n--- USER BOOKING CANCELLATION PROCESS ---");
             System.out.println("Booking ID: " + bookingId + " | User: " + username);
@@ -447,8 +668,7 @@ public class DatabaseManager {
             
             RefundService refundService = RefundService.getInstance();
             RefundService.RefundDetails refund = null;
-            if (eventDateStr != null) {
-                LocalDate eventDate = LocalDate.parse(eventDateStr);
+            if (eventDate != null) {
                 refund = refundService.calculateRefund(totalPrice, eventDate);
             } else {
                 refund = new RefundService.RefundDetails(totalPrice, 0.0, 0.0, -1, "No refund - Date not found");
@@ -458,17 +678,31 @@ public class DatabaseManager {
                 " (" + String.format("%.0f%%", refund.getRefundPercentage()) + ")");
             System.out.println("----------------------------------------------------------------");
             
-            bookingsCollection.updateOne(
-                Filters.eq("id", bookingId),
-                Updates.combine(
-                    Updates.set("cancelled", true),
-                    Updates.set("status", "Cancelled"),
-                    Updates.set("paymentStatus", refund.getRefundAmount() > 0 ? "Refunded" : "No Refund"),
-                    Updates.set("refundAmount", refund.getRefundAmount()),
-                    Updates.set("refundPercentage", refund.getRefundPercentage()),
-                    Updates.set("refundDate", LocalDateTime.now().toString())
-                )
-            );
+            RefundService.RefundDetails finalRefund = refund;
+            Boolean committed = transactionRunner.run("cancellation of booking " + bookingId, tx -> {
+                // Only matches if nobody cancelled or resized the booking since we read it
+                UpdateResult result = bookingsCollection.updateOne(tx.session(),
+                    Filters.and(Filters.eq("id", bookingId), Filters.ne("cancelled", true),
+                        Filters.eq("seatsBooked", seats)),
+                    Updates.combine(
+                        Updates.set("cancelled", true),
+                        Updates.set("status", "Cancelled"),
+                        Updates.set("paymentStatus", finalRefund.getRefundAmount() > 0 ? "Refunded" : "No Refund"),
+                        Updates.set("refundAmount", finalRefund.getRefundAmount()),
+                        Updates.set("refundPercentage", finalRefund.getRefundPercentage()),
+                        Updates.set("refundDate", new Date())
+                    ));
+                if (result.getModifiedCount() == 0) {
+                    throw tx.abort("Booking " + bookingId + " changed concurrently");
+                }
+                tx.onRollback(() -> restoreBooking(tx.session(), bookingDoc));
+                releaseCancelledSeats(tx, bookingDoc, seats, totalPrice, bookingDoc.getList("seatIds", String.class));
+                analytics.recordCancellation(tx, eventId, 1, seats, totalPrice, finalRefund.getRefundAmount());
+                return true;
+            });
+            if (committed == null) return false;
+            eventCache.invalidateSeats(eventId);
+            recordCancelledOnLeaderboard(bookingDoc, seats, totalPrice, true);
             
             if (refund.getRefundAmount() > 0) {
                 String paymentMethod = bookingDoc.getString("paymentMethod");
@@ -476,20 +710,6 @@ public class DatabaseManager {
                     paymentMethod != null ? paymentMethod : "Original Payment Method");
             }
             
-            List<String> seatIds = bookingDoc.getList("seatIds", String.class);
-            if (seatIds != null && !seatIds.isEmpty()) releaseSeatsInMap(eventId, seatIds);
-            
-            Event event = getEventById(eventId);
-            if (event != null) {
-                event.releaseSeats(seats);
-                updateEvent(event);
-            }
-            
-            usersCollection.updateOne(
-                Filters.eq("username", username),
-                Updates.combine(Updates.inc("ticketsBought", -seats), Updates.inc("monthlyTickets", -seats))
-            );
-            
             EmailService emailService = EmailService.getInstance();
             Document userDoc = getUserDetails(username);
             if (userDoc != null) {
@@ -546,30 +766,43 @@ public class DatabaseManager {
             RefundService.RefundDetails refundDetails = RefundService.getInstance().calculateRefund(originalValueToCancel, event.getDate());
             double finalRefundAmount = refundDetails.getRefundAmount();
 
-            bookingsCollection.updateOne(
-                Filters.eq("id", bookingId),
-                Updates.combine(
+            // Seat-mapped bookings give up their last seats; the rest stay booked
+            List<String> seatIds = bookingDoc.getList("seatIds", String.class);
+            List<String> releasedSeats = new ArrayList<>();
+            List<String> keptSeats = new ArrayList<>();
+            if (seatIds != null && seatIds.size() == currentSeats) {
+                keptSeats.addAll(seatIds.subList(0, currentSeats - seatsToCancel));
+                releasedSeats.addAll(seatIds.subList(currentSeats - seatsToCancel, currentSeats));
+            }
+
+            Boolean committed = transactionRunner.run("partial cancellation of booking " + bookingId, tx -> {
+                List<Bson> updates = new ArrayList<>(Arrays.asList(
                     Updates.inc("seatsBooked", -seatsToCancel),
-                    Updates.inc("totalPrice", -originalValueToCancel)
-                )
-            );
+                    Updates.inc("totalPrice", -originalValueToCancel)));
+                if (!releasedSeats.isEmpty()) {
+                    updates.add(Updates.set("seatIds", keptSeats));
+                }
+                UpdateResult result = bookingsCollection.updateOne(tx.session(),
+                    Filters.and(Filters.eq("id", bookingId), Filters.ne("cancelled", true),
+                        Filters.eq("seatsBooked", currentSeats)),
+                    Updates.combine(updates));
+                if (result.getModifiedCount() == 0) {
+                    throw tx.abort("Booking " + bookingId + " changed concurrently");
+                }
+                tx.onRollback(() -> restoreBooking(tx.session(), bookingDoc));
+                releaseCancelledSeats(tx, bookingDoc, seatsToCancel, originalValueToCancel, releasedSeats);
+                analytics.recordCancellation(tx, eventId, 0, seatsToCancel, originalValueToCancel, finalRefundAmount);
+                return true;
+            });
+            if (committed == null) return false;
+            eventCache.invalidateSeats(eventId);
+            recordCancelledOnLeaderboard(bookingDoc, seatsToCancel, originalValueToCancel, false);
 
             if (finalRefundAmount > 0) {
                 String paymentMethod = bookingDoc.getString("paymentMethod");
                 RefundService.getInstance().processRefund(username, bookingId, finalRefundAmount, paymentMethod != null ? paymentMethod : "Original Method");
             }
             
-            event.releaseSeats(seatsToCancel);
-            updateEvent(event);
-
-            usersCollection.updateOne(
-                Filters.eq("username", username),
-                Updates.combine(
-                    Updates.inc("ticketsBought", -seatsToCancel),
-                    Updates.inc("monthlyTickets", -seatsToCancel)
-                )
-            );
-            
             EmailService emailService = EmailService.getInstance();
             Document userDoc = getUserDetails(username);
             String email = userDoc.getString("email");
@@ -593,50 +826,63 @@ public class DatabaseManager {
         }
     }
 
+    /**
+     * Second half of every cancellation: take the tickets off the user's
+     * stats, then return the seats. Seats go last so a failure here can be
+     * compensated without re-claiming them.
+     */
+    private void releaseCancelledSeats(TransactionRunner.TransactionContext tx, Document bookingDoc,
+                                       int seats, double amount, List<String> seatIds) {
+        String username = bookingDoc.getString("username");
+        int eventId = bookingDoc.getInteger("eventId");
+        usersCollection.updateOne(tx.session(), Filters.eq("username", username), ticketStatsUpdate(-seats, -amount));
+        tx.onRollback(() -> usersCollection.updateOne(tx.session(), Filters.eq("username", username),
+            ticketStatsUpdate(seats, amount)));
+        seatReservationEngine.releaseBookedSeats(tx.session(), eventId, null, seatIds, seats);
+    }
 
-    private boolean bookSeatsInMap(int eventId, String username, List<String> seatIds) {
-        Bson update = Updates.combine(seatIds.stream()
-            .map(seatId -> Updates.set("seats.$[elem].status", "BOOKED"))
-            .toList());
-        com.mongodb.client.model.UpdateOptions options = new com.mongodb.client.model.UpdateOptions()
-            .arrayFilters(Arrays.asList(Filters.in("elem.seatId", seatIds)));
-        return seatMapsCollection.updateOne(Filters.eq("eventId", eventId), update, options).getModifiedCount() > 0;
+    private void recordCancelledOnLeaderboard(Document bookingDoc, int seats, double amount, boolean wholeBooking) {
+        int seatsLeft = wholeBooking ? 0 : bookingDoc.getInteger("seatsBooked") - seats;
+        leaderboard.recordCancellation(bookingDoc.getInteger("id"), seatsLeft, bookingDoc.getString("username"),
+            seats, amount, wholeBooking, BsonDates.toLocalDateTime(bookingDoc.get("timestamp")));
     }
-    
-    private void releaseSeatsInMap(int eventId, List<String> seatIds) {
-        Bson update = Updates.combine(
-            Updates.set("seats.$[elem].status", "AVAILABLE"),
-            Updates.set("seats.$[elem].bookedBy", null)
-        );
-        com.mongodb.client.model.UpdateOptions options = new com.mongodb.client.model.UpdateOptions()
-            .arrayFilters(Arrays.asList(Filters.in("elem.seatId", seatIds)));
-        seatMapsCollection.updateOne(Filters.eq("eventId", eventId), update, options);
+
+    /**
+     * Compensating write for cancellations when transactions are unavailable
+     */
+    private void restoreBooking(ClientSession session, Document bookingDoc) {
+        bookingsCollection.replaceOne(session, Filters.eq("_id", bookingDoc.get("_id")), bookingDoc);
     }
-    
-    private void createDefaultSeatMap(int eventId) {
-        List<String> rows = Arrays.asList("A", "B", "C", "D", "E");
-        int seatsPerRow = 10;
-        List<Document> seats = new ArrayList<>();
-        for (String row : rows) {
-            for (int i = 1; i <= seatsPerRow; i++) {
-                seats.add(new Document("seatId", row + i).append("status", "AVAILABLE").append("bookedBy", null));
-            }
-        }
-        seatMapsCollection.insertOne(new Document("eventId", eventId)
-            .append("rows", rows).append("seatsPerRow", seatsPerRow).append("seats", seats));
+
+    /**
+     * A roughly square map with one seat per ticket (see SeatMap.forCapacity)
+     */
+    private void createDefaultSeatMap(int eventId, int totalSeats) {
+        seatMapModels.insertOne(SeatMap.forCapacity(eventId, totalSeats));
     }
 
     private int getNextBookingId() {
-        Document doc = bookingsCollection.find().sort(new Document("id", -1)).limit(1).first();
-        return doc != null ? doc.getInteger("id") + 1 : 1;
+        return bookingIdAllocator.nextId();
     }
 
     public List<Booking> getAllBookings() {
-        List<Booking> bookings = new ArrayList<>();
-        try (MongoCursor<Document> cursor = bookingsCollection.find().iterator()) {
-            while (cursor.hasNext()) bookings.add(documentToBooking(cursor.next()));
-        }
-        return bookings;
+        return bookingModels.find().into(new ArrayList<>());
+    }
+
+    /**
+     * Every booking in id order, fetched batchSize at a time, for exports.
+     * Only the ledger fields are returned. The caller must close the cursor.
+     */
+    public MongoCursor<Document> streamBookingLedger(List<String> fields, int batchSize) {
+        return bookingsCollection.find()
+            .projection(Projections.fields(Projections.include(fields), Projections.excludeId()))
+            .sort(Sorts.ascending("id"))
+            .batchSize(batchSize)
+            .cursor();
+    }
+
+    public long estimateBookingCount() {
+        return bookingsCollection.estimatedDocumentCount();
     }
 
     public List<String> getBookedSeatsForUser(int eventId, String username) {
@@ -652,6 +898,221 @@ public class DatabaseManager {
         return bookedSeats;
     }
 
+    // ==========================================================
+    // == BULK EVENT JOBS ==
+    // ==========================================================
+
+    /**
+     * Cancel every active booking of an event with one update, refunding
+     * each in full. The bookings are tagged with jobId so the fan-out that
+     * follows can find exactly these bookings again after a restart.
+     * @return the number of bookings cancelled by this call
+     */
+    public long cancelActiveBookingsForEvent(int eventId, String reason, String jobId) {
+        List<Bson> pipeline = Arrays.asList(new Document("$set", new Document()
+            .append("cancelled", true)
+            .append("status", "Cancelled - Event Cancelled by Organizer")
+            .append("paymentStatus", "Full Refund Processed")
+            .append("refundAmount", "$totalPrice")
+            .append("refundPercentage", 100.0)
+            .append("refundReason", reason)
+            .append("refundDate", "$$NOW")
+            .append("cancellationType", "Admin Event Cancellation")
+            .append("cancellationJob", jobId)));
+        return bookingsCollection.updateMany(
+            Filters.and(Filters.eq("eventId", eventId), Filters.ne("cancelled", true)), pipeline)
+            .getModifiedCount();
+    }
+
+    /**
+     * Move the denormalised eventDate of an event's bookings to a new date.
+     * Reminders are re-armed for the new date.
+     */
+    public void updateBookingEventDates(int eventId, LocalDate newDate) {
+        bookingsCollection.updateMany(Filters.eq("eventId", eventId), Updates.combine(
+            Updates.set("eventDate", BsonDates.fromLocalDate(newDate)),
+            Updates.unset("reminderSent")));
+    }
+
+    /**
+     * One page of an event's bookings in id order, for keyset pagination.
+     * @param cancellationJob only bookings cancelled by this job, or null for active bookings
+     */
+    public List<Booking> getBookingsPage(int eventId, String cancellationJob, int afterBookingId, int limit) {
+        Bson filter = Filters.and(
+            Filters.eq("eventId", eventId),
+            cancellationJob != null ? Filters.eq("cancellationJob", cancellationJob) : Filters.ne("cancelled", true),
+            Filters.gt("id", afterBookingId));
+        return bookingModels.find(filter).sort(Sorts.ascending("id")).limit(limit).into(new ArrayList<>());
+    }
+
+    public long countBookings(int eventId, String cancellationJob) {
+        return bookingsCollection.countDocuments(Filters.and(
+            Filters.eq("eventId", eventId),
+            cancellationJob != null ? Filters.eq("cancellationJob", cancellationJob) : Filters.ne("cancelled", true)));
+    }
+
+    /**
+     * Look up many users' email addresses with a single $in query
+     */
+    public Map<String, String> getEmailsForUsers(Collection<String> usernames) {
+        Map<String, String> emails = new HashMap<>();
+        if (usernames.isEmpty()) return emails;
+        for (Document user : usersCollection.find(Filters.in("username", usernames))
+                .projection(Projections.include("username", "email"))) {
+            String email = user.getString("email");
+            if (email != null && !email.isEmpty()) emails.put(user.getString("username"), email);
+        }
+        return emails;
+    }
+
+    /**
+     * Apply one fan-out batch: take cancelled tickets off users' stats and
+     * the sales counters, insert the batch's notifications and move the job
+     * checkpoint.
+     * On a replica set the batch is one transaction, so replaying it after a
+     * crash is safe: the checkpoint only moves together with the writes (the
+     * sales counters follow after the commit). On a standalone server the
+     * writes are separate; a crash part way through a batch replays it and
+     * can repeat its notifications and stat updates.
+     */
+    public void commitJobBatch(String jobId, int eventId, int lastBookingId, int processed,
+                               List<Booking> cancelled, Map<String, List<String>> notifications) {
+        Boolean committed = transactionRunner.run("job " + jobId + " batch", tx -> {
+            if (!cancelled.isEmpty()) {
+                Map<String, Integer> seatsByUser = new HashMap<>();
+                Map<String, Double> spentByUser = new HashMap<>();
+                int seats = 0;
+                double refunded = 0;
+                for (Booking booking : cancelled) {
+                    seatsByUser.merge(booking.getUsername(), booking.getSeatsBooked(), Integer::sum);
+                    spentByUser.merge(booking.getUsername(), booking.getTotalPrice(), Double::sum);
+                    seats += booking.getSeatsBooked();
+                    refunded += booking.getTotalPrice();
+                }
+                List<WriteModel<Document>> statUpdates = new ArrayList<>();
+                List<WriteModel<Document>> statRollbacks = new ArrayList<>();
+                for (Map.Entry<String, Integer> entry : seatsByUser.entrySet()) {
+                    double spent = spentByUser.get(entry.getKey());
+                    statUpdates.add(new UpdateOneModel<>(Filters.eq("username", entry.getKey()),
+                        ticketStatsUpdate(-entry.getValue(), -spent)));
+                    statRollbacks.add(new UpdateOneModel<>(Filters.eq("username", entry.getKey()),
+                        ticketStatsUpdate(entry.getValue(), spent)));
+                }
+                usersCollection.bulkWrite(tx.session(), statUpdates, new BulkWriteOptions().ordered(false));
+                tx.onRollback(() -> usersCollection.bulkWrite(tx.session(), statRollbacks,
+                    new BulkWriteOptions().ordered(false)));
+                analytics.recordCancellation(tx, eventId, processed, seats, refunded, refunded);
+            }
+            List<Document> notificationDocs = new ArrayList<>();
+            for (Map.Entry<String, List<String>> entry : notifications.entrySet()) {
+                for (String message : entry.getValue()) {
+                    notificationDocs.add(userNotification(entry.getKey(), message));
+                }
+            }
+            inbox.deliverAll(tx, notificationDocs);
+            jobsCollection.updateOne(tx.session(), Filters.eq("_id", jobId), Updates.combine(
+                Updates.set("lastBookingId", lastBookingId),
+                Updates.inc("processed", processed),
+                Updates.set("updatedAt", new Date())));
+            return true;
+        });
+        if (committed != null) {
+            for (Booking booking : cancelled) {
+                leaderboard.recordCancellation(booking.getId(), 0, booking.getUsername(), booking.getSeatsBooked(),
+                    booking.getTotalPrice(), true, booking.getTimestamp());
+            }
+        }
+    }
+
+    /**
+     * Create the job record, or return the existing one if the job was
+     * interrupted earlier.
+     */
+    public Document startOrResumeJob(String jobId, Document spec) {
+        Document job = jobsCollection.find(Filters.eq("_id", jobId)).first();
+        if (job != null) return job;
+        job = new Document(spec).append("_id", jobId)
+            .append("status", "RUNNING")
+            .append("lastBookingId", 0)
+            .append("processed", 0)
+            .append("startedAt", new Date());
+        jobsCollection.insertOne(job);
+        return job;
+    }
+
+    public void updateJob(String jobId, Bson update) {
+        jobsCollection.updateOne(Filters.eq("_id", jobId), update);
+    }
+
+    public List<Document> getUnfinishedJobs() {
+        return jobsCollection.find(Filters.ne("status", "DONE")).into(new ArrayList<>());
+    }
+
+    // ==========================================================
+    // == EVENT-DAY REMINDERS ==
+    // ==========================================================
+
+    /**
+     * Claim every active, not yet reminded booking on the given date for one
+     * reminder run. Each booking can be claimed by exactly one run, so the
+     * scheduler and the admin button never remind anyone twice.
+     * @return the number of bookings claimed
+     */
+    public long claimRemindersForDate(LocalDate date, String runId) {
+        return bookingsCollection.updateMany(Filters.and(
+                Filters.eq("eventDate", BsonDates.fromLocalDate(date)),
+                Filters.eq("cancelled", false),
+                Filters.exists("reminderSent", false)),
+            Updates.set("reminderSent", runId)).getModifiedCount();
+    }
+
+    /**
+     * Hand back the bookings a reminder run claimed but did not remind, so
+     * the next run picks them up again.
+     * @param handled per event, the usernames that keep the claim
+     * @return the number of bookings released
+     */
+    public long releaseReminderClaims(LocalDate date, String runId, Map<Integer, Set<String>> handled) {
+        Bson claimedByRun = Filters.and(
+            Filters.eq("eventDate", BsonDates.fromLocalDate(date)),
+            Filters.eq("reminderSent", runId));
+        long released = bookingsCollection.updateMany(
+            Filters.and(claimedByRun, Filters.nin("eventId", handled.keySet())),
+            Updates.unset("reminderSent")).getModifiedCount();
+        for (Map.Entry<Integer, Set<String>> event : handled.entrySet()) {
+            released += bookingsCollection.updateMany(Filters.and(claimedByRun,
+                    Filters.eq("eventId", event.getKey()), Filters.nin("username", event.getValue())),
+                Updates.unset("reminderSent")).getModifiedCount();
+        }
+        return released;
+    }
+
+    /**
+     * The distinct (username, eventId, email) targets of a reminder run,
+     * with the email joined in by the server. The caller must close the cursor.
+     */
+    public MongoCursor<Document> streamReminderTargets(LocalDate date, String runId, int batchSize) {
+        return bookingsCollection.aggregate(Arrays.asList(
+            new Document("$match", new Document("eventDate", BsonDates.fromLocalDate(date))
+                .append("reminderSent", runId)),
+            new Document("$group", new Document("_id", new Document("username", "$username")
+                .append("eventId", "$eventId"))),
+            new Document("$lookup", new Document("from", "users")
+                .append("localField", "_id.username")
+                .append("foreignField", "username")
+                .append("as", "user")),
+            new Document("$project", new Document("_id", 0)
+                .append("username", "$_id.username")
+                .append("eventId", "$_id.eventId")
+                .append("email", new Document("$arrayElemAt", Arrays.asList("$user.email", 0))))
+        )).batchSize(batchSize).cursor();
+    }
+
+    public List<Event> getEventsOnDate(LocalDate date) {
+        return eventModels.find(Filters.eq("date", BsonDates.fromLocalDate(date))).into(new ArrayList<>());
+    }
+
     // ==========================================================
     // == ANALYTICS & REPORTING ==
     // ==========================================================
@@ -661,36 +1122,21 @@ public class DatabaseManager {
      * This method is required for the "Award Daily Credits" feature.
      */
     public List<Document> getDailyTopAttendees() {
-        LocalDateTime startOfDay = LocalDate.now().atStartOfDay();
-        LocalDateTime endOfDay = LocalDate.now().atTime(LocalTime.MAX);
-
-        return bookingsCollection.aggregate(Arrays.asList(
-            new Document("$match", new Document("cancelled", new Document("$ne", true))
-                .append("timestamp", new Document("$gte", startOfDay.toString())
-                .append("$lte", endOfDay.toString()))),
-            new Document("$group", new Document("_id", "$username")
-                .append("dailyTickets", new Document("$sum", "$seatsBooked"))
-                .append("dailySpent", new Document("$sum", "$totalPrice"))),
-            new Document("$project", new Document("username", "$_id")
-                .append("dailyTickets", 1)
-                .append("dailySpent", 1)
-                .append("_id", 0)),
-            new Document("$sort", new Document("dailyTickets", -1))
-        )).into(new ArrayList<>());
+        List<Document> daily = new ArrayList<>();
+        for (Leaderboard.Score score : leaderboard.top(Leaderboard.Window.DAILY, Integer.MAX_VALUE)) {
+            if (score.tickets <= 0) break;
+            daily.add(new Document("username", score.username)
+                .append("dailyTickets", score.tickets)
+                .append("dailySpent", score.spent));
+        }
+        return daily;
     }
 
+    // Sales figures are read from the materialised counters (see AnalyticsStore), never from bookings
+
     public List<Document> getTopEventsByRevenue(int limit) {
         try {
-            return bookingsCollection.aggregate(Arrays.asList(
-                new Document("$match", new Document("cancelled", new Document("$ne", true))),
-                new Document("$group", new Document("_id", "$eventName")
-                    .append("revenue", new Document("$sum", "$totalPrice"))
-                    .append("ticketsSold", new Document("$sum", "$seatsBooked"))),
-                new Document("$project", new Document("eventName", "$_id")
-                    .append("revenue", 1).append("ticketsSold", 1).append("_id", 0)),
-                new Document("$sort", new Document("revenue", -1)),
-                new Document("$limit", limit)
-            )).into(new ArrayList<>());
+            return analytics.getTopEventsByRevenue(limit);
         } catch (Exception e) {
             System.err.println("[DB ERROR] Error getting top events: " + e.getMessage());
             return new ArrayList<>();
@@ -699,99 +1145,101 @@ public class DatabaseManager {
 
     public List<Document> getRevenueByCategory() {
         try {
-            return bookingsCollection.aggregate(Arrays.asList(
-                new Document("$match", new Document("cancelled", new Document("$ne", true))),
-                new Document("$lookup", new Document("from", "events")
-                    .append("localField", "eventId")
-                    .append("foreignField", "id")
-                    .append("as", "eventDetails")),
-                new Document("$unwind", "$eventDetails"),
-                new Document("$group", new Document("_id", "$eventDetails.type")
-                    .append("totalRevenue", new Document("$sum", "$totalPrice"))),
-                new Document("$project", new Document("category", "$_id")
-                    .append("revenue", "$totalRevenue")
-                    .append("_id", 0)),
-                new Document("$sort", new Document("revenue", -1))
-            )).into(new ArrayList<>());
+            return analytics.getRevenueByCategory();
         } catch (Exception e) {
             System.err.println("[DB ERROR] Error getting revenue by category: " + e.getMessage());
             return new ArrayList<>();
         }
     }
 
+    /**
+     * activeBookings and cancelledBookings across all events
+     */
+    public Document getBookingTotals() {
+        return analytics.getBookingTotals();
+    }
+
+    /**
+     * Per-day bookings, tickets, revenue, cancellations and refunds, oldest first
+     */
+    public List<Document> getDailySales(int days) {
+        return analytics.getDailySales(days);
+    }
+
     public List<Document> getMonthlyTopAttendees(int limit) {
-        try {
-            LocalDateTime monthStart = LocalDateTime.now().withDayOfMonth(1)
-                .withHour(0).withMinute(0).withSecond(0);
-            return bookingsCollection.aggregate(Arrays.asList(
-                new Document("$match", new Document("cancelled", new Document("$ne", true))
-                    .append("timestamp", new Document("$gte", monthStart.toString()))),
-                new Document("$group", new Document("_id", "$username")
-                    .append("monthlyTickets", new Document("$sum", "$seatsBooked"))
-                    .append("monthlyEvents", new Document("$sum", 1))
-                    .append("monthlySpent", new Document("$sum", "$totalPrice"))),
-                new Document("$project", new Document("username", "$_id")
-                    .append("monthlyTickets", 1).append("monthlyEvents", 1)
-                    .append("monthlySpent", 1).append("_id", 0)),
-                new Document("$sort", new Document("monthlyTickets", -1)),
-                new Document("$limit", limit)
-            )).into(new ArrayList<>());
-        } catch (Exception e) {
-            System.err.println("[DB ERROR] Error getting monthly attendees: " + e.getMessage());
-            return new ArrayList<>();
+        List<Document> monthly = new ArrayList<>();
+        for (Leaderboard.Score score : leaderboard.top(Leaderboard.Window.MONTHLY, limit)) {
+            if (score.tickets <= 0) break;
+            monthly.add(new Document("username", score.username)
+                .append("monthlyTickets", score.tickets)
+                .append("monthlyEvents", score.bookings)
+                .append("monthlySpent", score.spent));
         }
+        return monthly;
     }
 
     public List<Document> getTopAttendees(int limit) {
+        List<Document> attendees = new ArrayList<>();
+        for (Leaderboard.Score score : leaderboard.top(Leaderboard.Window.ALL_TIME, limit)) {
+            attendees.add(new Document("username", score.username)
+                .append("ticketsBought", score.tickets)
+                .append("eventsAttended", score.bookings)
+                .append("totalSpent", score.spent));
+        }
+        return attendees;
+    }
+
+    // ==========================================================
+    // == NOTIFICATION SYSTEM ==
+    // ==========================================================
+
+    public void addAdminNotification(String username, String message) {
         try {
-            List<Document> attendees = usersCollection.find(Filters.eq("role", "Attendee"))
-                .sort(Sorts.descending("ticketsBought")).limit(limit).into(new ArrayList<>());
-            for (Document attendee : attendees) {
-                attendee.append("totalSpent", calculateTotalSpent(attendee.getString("username")));
-            }
-            return attendees;
+            inbox.deliver(username, NotificationInbox.ADMIN, message);
         } catch (Exception e) {
-            System.err.println("[DB ERROR] Error getting top attendees: " + e.getMessage());
-            return new ArrayList<>();
+            System.err.println("[DB ERROR] Error adding admin notification: " + e.getMessage());
         }
     }
 
-    private double calculateTotalSpent(String username) {
+    public void addUserNotification(String username, String message) {
         try {
-            List<Document> results = bookingsCollection.aggregate(Arrays.asList(
-                new Document("$match", new Document("username", username)
-                    .append("cancelled", new Document("$ne", true))),
-                new Document("$group", new Document("_id", null)
-                    .append("total", new Document("$sum", "$totalPrice")))
-            )).into(new ArrayList<>());
-            return !results.isEmpty() && results.get(0).containsKey("total") ? 
-                results.get(0).getDouble("total") : 0.0;
+            inbox.deliver(username, NotificationInbox.USER, message);
         } catch (Exception e) {
-            System.err.println("[DB ERROR] Error calculating total spent: " + e.getMessage());
-            return 0.0;
+            System.err.println("[DB ERROR] Error adding user notification: " + e.getMessage());
         }
     }
 
-    // ==========================================================
-    // == NOTIFICATION SYSTEM ==
-    // ==========================================================
+    private static Document userNotification(String username, String message) {
+        return NotificationInbox.notification(username, NotificationInbox.USER, message);
+    }
 
-    public void addAdminNotification(String username, String message) {
+    /**
+     * The newest page of a user's notifications
+     */
+    public List<Document> getUserNotifications(String username) {
+        return getUserNotifications(username, null, NOTIFICATION_PAGE_SIZE);
+    }
+
+    /**
+     * A page of a user's notifications, newest first
+     * @param before _id of the last notification already shown, or null for the first page
+     */
+    public List<Document> getUserNotifications(String username, ObjectId before, int limit) {
         try {
-            notificationsCollection.insertOne(new Document("username", username)
-                .append("message", message)
-                .append("timestamp", LocalDateTime.now().toString()) // Store as String for consistency
-                .append("read", false)
-                .append("type", "admin"));
+            return inbox.page(username, NotificationInbox.USER, before, limit);
         } catch (Exception e) {
-            System.err.println("[DB ERROR] Error adding admin notification: " + e.getMessage());
+            System.err.println("[DB ERROR] Error getting user notifications: " + e.getMessage());
+            return new ArrayList<>();
         }
     }
 
     public List<Document> getAdminNotifications(String username) {
+        return getAdminNotifications(username, null, NOTIFICATION_PAGE_SIZE);
+    }
+
+    public List<Document> getAdminNotifications(String username, ObjectId before, int limit) {
         try {
-            return notificationsCollection.find(Filters.and(Filters.eq("username", username), Filters.eq("type", "admin")))
-                .sort(Sorts.descending("timestamp")).limit(50).into(new ArrayList<>());
+            return inbox.page(username, NotificationInbox.ADMIN, before, limit);
         } catch (Exception e) {
             System.err.println("[DB ERROR] Error getting admin notifications: " + e.getMessage());
             return new ArrayList<>();
@@ -800,19 +1248,16 @@ public class DatabaseManager {
 
     public int getUnreadNotificationCount(String username) {
         try {
-            return (int) notificationsCollection.countDocuments(
-                Filters.and(Filters.eq("username", username), Filters.eq("read", false)));
+            return inbox.unreadCount(username);
         } catch (Exception e) {
             System.err.println("[DB ERROR] Error getting unread count: " + e.getMessage());
             return 0;
         }
     }
 
-    public void markNotificationAsRead(String username, String timestamp) {
+    public void markNotificationAsRead(String username, ObjectId notificationId) {
         try {
-            notificationsCollection.updateOne(
-                Filters.and(Filters.eq("username", username), Filters.eq("timestamp", timestamp)),
-                Updates.set("read", true));
+            inbox.markRead(username, notificationId);
         } catch (Exception e) {
             System.err.println("[DB ERROR] Error marking notification as read: " + e.getMessage());
         }
@@ -820,180 +1265,134 @@ public class DatabaseManager {
 
     public void markAllNotificationsAsRead(String username) {
         try {
-            notificationsCollection.updateMany(Filters.eq("username", username), Updates.set("read", true));
+            inbox.markAllRead(username);
         } catch (Exception e) {
             System.err.println("[DB ERROR] Error marking all as read: " + e.getMessage());
         }
     }
 
-    public void deleteNotification(String username, String timestamp) {
+    public void deleteNotification(String username, ObjectId notificationId) {
         try {
-            notificationsCollection.deleteOne(
-                Filters.and(Filters.eq("username", username), Filters.eq("timestamp", timestamp)));
+            inbox.delete(username, notificationId);
         } catch (Exception e) {
             System.err.println("[DB ERROR] Error deleting notification: " + e.getMessage());
         }
     }
 
-    public void addUserNotification(String username, String message) {
-        try {
-            notificationsCollection.insertOne(new Document()
-                .append("username", username)
-                .append("message", message)
-                .append("timestamp", LocalDateTime.now().toString())
-                .append("read", false)
-                .append("type", "user"));
-        } catch (Exception e) {
-            System.err.println("[DB ERROR] Error adding user notification: " + e.getMessage());
-        }
+    private void startNotificationWriter() {
+        AppConfig config = AppConfig.getInstance();
+        inbox.startWriter(config.getInt("notifications.batchSize", 500),
+            config.getLong("notifications.flushMillis", 200),
+            config.getInt("notifications.bufferCapacity", 10000),
+            config.getLong("notifications.offerTimeoutMillis", 100));
+        long drainMillis = config.getLong("notifications.shutdownDrainMillis", 5000);
+        MongoDBConnection.beforeClose(() -> inbox.stopWriter(drainMillis));
     }
 
-    public List<Document> getUserNotifications(String username) {
+    /**
+     * Apply the retention policy: notifications older than
+     * notifications.retentionDays (90, 0 = keep forever) are moved to
+     * notifications_archive, or deleted if notifications.archiveDays is 0.
+     * @return how many notifications were removed
+     */
+    public long pruneNotifications() {
+        AppConfig config = AppConfig.getInstance();
+        int retentionDays = config.getInt("notifications.retentionDays", 90);
+        if (retentionDays <= 0) return 0;
+        boolean archive = config.getInt("notifications.archiveDays", 365) > 0;
+        Date cutoff = BsonDates.fromLocalDateTime(LocalDateTime.now().minusDays(retentionDays));
         try {
-            return notificationsCollection.find(Filters.and(Filters.eq("username", username), Filters.eq("type", "user")))
-                .sort(new Document("timestamp", -1)).into(new ArrayList<>());
+            long removed = inbox.prune(cutoff, archive, config.getInt("notifications.pruneBatchSize", 1000));
+            System.out.println("[DB] " + (archive ? "Archived " : "Deleted ") + removed
+                + " notification(s) older than " + retentionDays + " days");
+            return removed;
         } catch (Exception e) {
-            System.err.println("[DB ERROR] Error getting user notifications: " + e.getMessage());
-            return new ArrayList<>();
+            System.err.println("[DB ERROR] Notification pruning failed: " + e.getMessage());
+            return 0;
         }
     }
 
+    /**
+     * Recount unread notifications for every user, should the counters ever drift
+     */
+    public void rebuildUnreadCounters() {
+        NotificationInbox.rebuildCounters(database);
+        System.out.println("[DB] Unread notification counters rebuilt");
+    }
+
     // ==========================================================
-    // == HELPER & CONVERSION METHODS ==
+    // == CREDIT POINTS LEDGER ==
     // ==========================================================
-    
-    private LocalDateTime parseTimestamp(Document doc) {
-        if (doc.containsKey("timestamp")) {
-            Object timestampObj = doc.get("timestamp");
-            if (timestampObj instanceof Date) {
-                return ((Date) timestampObj).toInstant()
-                    .atZone(ZoneId.systemDefault())
-                    .toLocalDateTime();
-            } else if (timestampObj instanceof String) {
-                return LocalDateTime.parse((String) timestampObj);
-            }
-        }
-        return LocalDateTime.now();
-    }
+    // Every balance change is an entry in credit_transactions, written in
+    // the same transaction as users.creditPoints (see CreditLedger).
 
-    private Event documentToEvent(Document doc) {
-        Event event = new Event(
-            doc.getInteger("id"), 
-            doc.getString("name"), 
-            doc.getString("type"), 
-            LocalDate.parse(doc.getString("date")), 
-            doc.getString("venue"), 
-            doc.getInteger("totalSeats"), 
-            doc.getDouble("price")
-        );
-        
-        if (doc.containsKey("seatsAvailable")) {
-            event.setSeatsAvailable(doc.getInteger("seatsAvailable"));
-        }
-        if (doc.containsKey("status")) {
-            event.setStatus(doc.getString("status"));
-        }
-        if (doc.containsKey("cancellationReason")) {
-            event.setCancellationReason(doc.getString("cancellationReason"));
-        }
-        if (doc.containsKey("originalDate")) {
-            event.setOriginalDate(LocalDate.parse(doc.getString("originalDate")));
-        }
-        
-        return event;
-    }
-    
-    private Document eventToDocument(Event event) {
-        Document doc = new Document("id", event.getId())
-            .append("name", event.getName())
-            .append("type", event.getType())
-            .append("date", event.getDate().toString())
-            .append("venue", event.getVenue())
-            .append("totalSeats", event.getTotalSeats())
-            .append("seatsAvailable", event.getSeatsAvailable())
-            .append("price", event.getPrice())
-            .append("status", event.getStatus());
-        
-        if (event.getCancellationReason() != null) {
-            doc.append("cancellationReason", event.getCancellationReason());
-        }
-        if (event.getOriginalDate() != null) {
-            doc.append("originalDate", event.getOriginalDate().toString());
-        }
-        
-        return doc;
-    }
-
-    private Booking documentToBooking(Document doc) {
-        Booking booking = new Booking(
-            doc.getInteger("id"), 
-            doc.getString("username"), 
-            doc.getInteger("eventId"), 
-            doc.getString("eventName"), 
-            doc.getInteger("seatsBooked"), 
-            doc.getDouble("totalPrice"), 
-            parseTimestamp(doc)
-        );
-        
-        if (doc.getBoolean("cancelled", false)) {
-            booking.cancel();
-        }
-        if (doc.containsKey("paymentMethod")) {
-            booking.setPaymentMethod(doc.getString("paymentMethod"));
-        }
-        if (doc.containsKey("transactionId")) {
-            booking.setTransactionId(doc.getString("transactionId"));
-        }
-        
-        return booking;
+    /**
+     * @param idempotencyKey unique per award; awarding the same key again changes nothing
+     */
+    public boolean addCreditPoints(String username, int points, String reason, String idempotencyKey) {
+        return postCreditTransaction(username, points, CreditLedger.AWARD, reason, idempotencyKey);
     }
-    
-    private Document bookingToDocument(Booking booking) {
-        return new Document("id", booking.getId())
-            .append("username", booking.getUsername())
-            .append("eventId", booking.getEventId())
-            .append("eventName", booking.getEventName())
-            .append("seatsBooked", booking.getSeatsBooked())
-            .append("totalPrice", booking.getTotalPrice())
-            .append("timestamp", booking.getTimestamp().toString())
-            .append("cancelled", booking.isCancelled())
-            .append("status", booking.getStatus());
+
+    /**
+     * Take points if, and only if, the balance covers them. Safe under
+     * concurrent checkouts: the check and the debit are one conditional update.
+     * @param idempotencyKey one per checkout; a retried redemption is not charged twice
+     */
+    public boolean redeemCreditPoints(String username, int points, String idempotencyKey) {
+        return postCreditTransaction(username, -points, CreditLedger.REDEEM, "Redeemed for a discount", idempotencyKey);
     }
 
-    // ==========================================================
-    // == CREDIT POINTS MANAGEMENT ==
-    // ==========================================================
+    /**
+     * Give back the points of a redemption whose payment did not go through
+     */
+    public boolean refundCreditRedemption(String username, int points, String redemptionKey) {
+        return postCreditTransaction(username, points, CreditLedger.REFUND, "Payment failed; points returned",
+            "refund:" + redemptionKey);
+    }
 
-    public boolean addCreditPoints(String username, int points) {
+    private boolean postCreditTransaction(String username, int points, String type, String reason,
+                                          String idempotencyKey) {
         try {
-            usersCollection.updateOne(new Document("username", username), 
-                new Document("$inc", new Document("creditPoints", points)));
-            System.out.println("[DB] Added " + points + " credit points to " + username);
+            Integer balance = transactionRunner.run(type + " " + points + " credit points for " + username, tx -> {
+                Integer after = creditLedger.post(tx, username, points, type, reason, idempotencyKey);
+                if (after == null) throw tx.abort("balance does not cover " + (-points) + " points");
+                return after;
+            });
+            if (balance == null) return false;
+            System.out.println("[DB] " + type + " " + points + " credit points for " + username + ", balance " + balance);
+            return true;
+        } catch (MongoWriteException e) {
+            if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                System.err.println("[DB ERROR] Error posting credit points: " + e.getMessage());
+                return false;
+            }
+            System.out.println("[DB] Credit transaction " + idempotencyKey + " already posted");
             return true;
         } catch (Exception e) {
-            System.err.println("[DB ERROR] Error adding credit points: " + e.getMessage());
+            System.err.println("[DB ERROR] Error posting credit points: " + e.getMessage());
             return false;
         }
     }
 
-    public boolean deductCreditPoints(String username, int points) {
+    /**
+     * A user's credit point movements, newest first
+     */
+    public List<Document> getCreditHistory(String username, int limit) {
         try {
-            Document userDoc = usersCollection.find(new Document("username", username)).first();
-            if (userDoc == null) return false;
-            
-            int currentPoints = userDoc.getInteger("creditPoints", 0);
-            if (currentPoints < points) return false;
-            
-            usersCollection.updateOne(new Document("username", username), 
-                new Document("$inc", new Document("creditPoints", -points)));
-            System.out.println("[DB] Deducted " + points + " credit points from " + username);
-            return true;
+            return creditLedger.history(username, limit);
         } catch (Exception e) {
-            System.err.println("[DB ERROR] Error deducting credit points: " + e.getMessage());
-            return false;
+            System.err.println("[DB ERROR] Error loading credit history: " + e.getMessage());
+            return new ArrayList<>();
         }
     }
 
+    /**
+     * Reset every cached balance to the sum of the user's ledger entries
+     */
+    public void rebuildCreditBalances() {
+        CreditLedger.rebuildBalances(database);
+    }
+
     public int getUserCreditPoints(String username) {
         try {
             Document userDoc = usersCollection.find(new Document("username", username)).first();
@@ -1004,6 +1403,130 @@ public class DatabaseManager {
         }
     }
 
+    // ==========================================================
+    // == CREDIT AWARD RUNS ==
+    // ==========================================================
+    // An award run ranks attendees once into credit_award_entries, then
+    // awards them in rank order, one transaction per chunk. Each user also
+    // records the last period they were awarded for (awardField), so a
+    // replayed chunk can never pay anyone twice.
+
+    public Document startOrResumeAwardRun(String runId, String type, String period) {
+        Document run = awardRunsCollection.find(Filters.eq("_id", runId)).first();
+        if (run != null) return run;
+        run = new Document("_id", runId)
+            .append("type", type)
+            .append("period", period)
+            .append("status", "RANKING")
+            .append("lastRank", 0)
+            .append("awarded", 0)
+            .append("startedAt", new Date());
+        awardRunsCollection.insertOne(run);
+        return run;
+    }
+
+    public List<Document> getUnfinishedAwardRuns() {
+        return awardRunsCollection.find(Filters.ne("status", "DONE")).into(new ArrayList<>());
+    }
+
+    public void updateAwardRun(String runId, Bson update) {
+        awardRunsCollection.updateOne(Filters.eq("_id", runId), update);
+    }
+
+    /**
+     * Attendees ranked by tickets (then spend) over active bookings made in
+     * [from, to). The caller must close the cursor.
+     */
+    public MongoCursor<Document> streamAttendeeRanking(LocalDateTime from, LocalDateTime to, int batchSize) {
+        return bookingsCollection.aggregate(Arrays.asList(
+            new Document("$match", new Document("cancelled", new Document("$ne", true))
+                .append("timestamp", new Document("$gte", BsonDates.fromLocalDateTime(from))
+                    .append("$lt", BsonDates.fromLocalDateTime(to)))),
+            new Document("$group", new Document("_id", "$username")
+                .append("tickets", new Document("$sum", "$seatsBooked"))
+                .append("spent", new Document("$sum", "$totalPrice"))),
+            new Document("$match", new Document("tickets", new Document("$gt", 0))),
+            new Document("$sort", new Document("tickets", -1).append("spent", -1).append("_id", 1))
+        )).allowDiskUse(true).batchSize(batchSize).cursor();
+    }
+
+    /**
+     * Throw away a half-written ranking so it can be taken again
+     */
+    public void clearAwardEntries(String runId) {
+        awardEntriesCollection.deleteMany(Filters.eq("runId", runId));
+    }
+
+    public void insertAwardEntries(List<Document> entries) {
+        if (!entries.isEmpty()) awardEntriesCollection.insertMany(entries);
+    }
+
+    public List<Document> getAwardEntries(String runId, int afterRank, int limit) {
+        return awardEntriesCollection.find(Filters.and(Filters.eq("runId", runId), Filters.gt("rank", afterRank)))
+            .sort(Sorts.ascending("rank")).limit(limit).into(new ArrayList<>());
+    }
+
+    /**
+     * Award one chunk of ranked entries: a single bulkWrite of $inc updates,
+     * one insertMany each of notifications and ledger entries, and the run
+     * checkpoint, all in one transaction. Users already awarded for this period are skipped.
+     * @param messages notification per username
+     * @return the usernames actually awarded, or null if the chunk failed
+     */
+    public List<String> commitAwardBatch(String runId, String awardField, String period, List<Document> entries,
+                                         Map<String, String> messages) {
+        int lastRank = entries.get(entries.size() - 1).getInteger("rank");
+        return transactionRunner.run("award run " + runId + " to rank " + lastRank, tx -> {
+            List<String> usernames = new ArrayList<>();
+            for (Document entry : entries) usernames.add(entry.getString("username"));
+            // username -> the period stamp it held before this chunk, so a rollback can put it back
+            Map<String, String> pending = new HashMap<>();
+            for (Document user : usersCollection.find(tx.session(), Filters.and(
+                    Filters.in("username", usernames), Filters.ne(awardField, period)))
+                    .projection(Projections.include("username", awardField))) {
+                pending.put(user.getString("username"), user.getString(awardField));
+            }
+
+            List<WriteModel<Document>> awards = new ArrayList<>();
+            List<Document> notificationDocs = new ArrayList<>();
+            List<Document> ledgerEntries = new ArrayList<>();
+            List<String> awarded = new ArrayList<>();
+            for (Document entry : entries) {
+                String username = entry.getString("username");
+                if (!pending.containsKey(username)) continue;
+                ledgerEntries.add(CreditLedger.entry(runId + ":" + username, username, entry.getInteger("points"),
+                    CreditLedger.AWARD, messages.get(username)));
+                awards.add(new UpdateOneModel<>(
+                    Filters.and(Filters.eq("username", username), Filters.ne(awardField, period)),
+                    Updates.combine(Updates.inc("creditPoints", entry.getInteger("points")),
+                        Updates.set(awardField, period))));
+                notificationDocs.add(userNotification(username, messages.get(username)));
+                awarded.add(username);
+            }
+            if (!awards.isEmpty()) {
+                usersCollection.bulkWrite(tx.session(), awards, new BulkWriteOptions().ordered(false));
+                tx.onRollback(() -> {
+                    for (Document entry : entries) {
+                        String username = entry.getString("username");
+                        if (!awarded.contains(username)) continue;
+                        String previous = pending.get(username);
+                        usersCollection.updateOne(tx.session(),
+                            Filters.and(Filters.eq("username", username), Filters.eq(awardField, period)),
+                            Updates.combine(Updates.inc("creditPoints", -entry.getInteger("points")),
+                                previous != null ? Updates.set(awardField, previous) : Updates.unset(awardField)));
+                    }
+                });
+                inbox.deliverAll(tx, notificationDocs);
+                creditLedger.record(tx, ledgerEntries);
+            }
+            awardRunsCollection.updateOne(tx.session(), Filters.eq("_id", runId), Updates.combine(
+                Updates.set("lastRank", lastRank),
+                Updates.inc("awarded", awarded.size()),
+                Updates.set("updatedAt", new Date())));
+            return awarded;
+        });
+    }
+
     public void resetMonthlyStats() {
         try {
             usersCollection.updateMany(new Document(), 
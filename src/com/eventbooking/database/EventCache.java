@@ -0,0 +1,361 @@
+package com.eventbooking.database;
+
+import com.eventbooking.models.Event;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import org.bson.BsonDocument;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Event Cache - bounded, read-through cache for events.
+ *
+ * Entries expire after a TTL and the least recently used entry is evicted
+ * once the cache is full. A background change stream on "events" invalidates
+ * entries as soon as any instance (admin or attendee) changes an event, so
+ * the TTL is only a safety net. Changes that only move seat counts, i.e.
+ * every booking, patch the cached entries in place instead of dropping the
+ * event lists.
+ *
+ * Change streams need a replica set. For local development a single-node
+ * replica set is enough:
+ *
+ *   mongod --replSet rs0 --dbpath <data dir>
+ *   mongosh --eval "rs.initiate()"
+ *
+ * Against a standalone server the watcher logs a warning and the cache falls
+ * back to TTL-only expiry plus local invalidation on writes.
+ */
+public class EventCache {
+    private static final int MAX_ENTRIES = 500;
+    private static final long TTL_MILLIS = 30_000;
+    private static final long RETRY_DELAY_MILLIS = 5_000;
+    private static final int CHANGE_STREAM_NOT_SUPPORTED = 40573;
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+    // Fields that change what the event lists show, besides seat counts
+    private static final Set<String> LISTED_FIELDS = new HashSet<>(Arrays.asList(
+        "id", "name", "type", "date", "venue", "price", "totalSeats", "status",
+        "cancellationReason", "originalDate"));
+
+    private static EventCache instance;
+
+    private final Map<Integer, Entry<Event>> events = new LinkedHashMap<Integer, Entry<Event>>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Entry<Event>> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private Entry<List<Event>> allEvents;
+    private Entry<List<String>> eventTypes;
+    // Invalidations are stamped from one clock so a slow load cannot re-cache
+    // stale data: a load started at stamp t is dropped if what it read was
+    // invalidated after t. Each event has its own stamp and the lists share
+    // one, so a booking on one event does not spoil loads of any other.
+    private long clock = 0;
+    private long listsInvalidatedAt = 0;
+    private long allInvalidatedAt = 0;
+    private final Map<Integer, Long> eventInvalidatedAt = new HashMap<>();
+
+    private volatile boolean watching = false;
+    private volatile boolean live = false;
+    private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+
+    private EventCache() {}
+
+    public static synchronized EventCache getInstance() {
+        if (instance == null) {
+            instance = new EventCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Start invalidating entries from the change stream of the given
+     * collection. Only the first call has an effect.
+     */
+    public synchronized void watch(MongoCollection<Document> eventsCollection) {
+        if (watching) return;
+        watching = true;
+        Thread watcher = new Thread(() -> runWatcher(eventsCollection), "event-cache-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Get an event, loading it on a miss. Returns a copy, so callers may
+     * modify the result freely.
+     */
+    public Event getEvent(int eventId, Supplier<Event> loader) {
+        long loadStartedAt;
+        synchronized (this) {
+            Entry<Event> entry = events.get(eventId);
+            if (entry != null && !entry.isExpired()) {
+                return copyOf(entry.value);
+            }
+            loadStartedAt = clock;
+        }
+        Event loaded = loader.get();
+        if (loaded != null) {
+            synchronized (this) {
+                if (!eventInvalidatedSince(eventId, loadStartedAt)) {
+                    events.put(eventId, new Entry<>(copyOf(loaded)));
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Get all events, loading them on a miss. Returns copies.
+     */
+    public List<Event> getAllEvents(Supplier<List<Event>> loader) {
+        long loadStartedAt;
+        synchronized (this) {
+            if (allEvents != null && !allEvents.isExpired()) {
+                return copyOf(allEvents.value);
+            }
+            loadStartedAt = clock;
+        }
+        List<Event> loaded = loader.get();
+        synchronized (this) {
+            if (listsInvalidatedAt > loadStartedAt) return loaded;
+            // A seat count that moved during the load is patched by the change stream
+            allEvents = new Entry<>(copyOf(loaded));
+            for (Event event : loaded) {
+                if (!eventInvalidatedSince(event.getId(), loadStartedAt)) {
+                    events.put(event.getId(), new Entry<>(copyOf(event)));
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Get the distinct event types, loading them on a miss.
+     */
+    public List<String> getEventTypes(Supplier<List<String>> loader) {
+        long loadStartedAt;
+        synchronized (this) {
+            if (eventTypes != null && !eventTypes.isExpired()) {
+                return new ArrayList<>(eventTypes.value);
+            }
+            loadStartedAt = clock;
+        }
+        List<String> loaded = loader.get();
+        synchronized (this) {
+            if (listsInvalidatedAt > loadStartedAt) return loaded;
+            eventTypes = new Entry<>(Collections.unmodifiableList(new ArrayList<>(loaded)));
+        }
+        return loaded;
+    }
+
+    /**
+     * True while the change stream is open, i.e. while changes made by other
+     * instances are seen as they happen
+     */
+    public boolean isLive() {
+        return live;
+    }
+
+    /**
+     * Also tell the listener about every invalidation, e.g. to keep a
+     * derived structure in step with the cache. Called with the cache locked,
+     * so it must not block.
+     */
+    public void addInvalidationListener(InvalidationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Drop one event along with the lists that contain it.
+     */
+    public synchronized void invalidate(int eventId) {
+        long stamp = ++clock;
+        eventInvalidatedAt.put(eventId, stamp);
+        listsInvalidatedAt = stamp;
+        events.remove(eventId);
+        allEvents = null;
+        eventTypes = null;
+        for (InvalidationListener listener : listeners) {
+            listener.invalidated(eventId);
+        }
+    }
+
+    /**
+     * Drop one event after a write that only moved its seat counts. While
+     * the change stream is open the lists and the listeners keep the event
+     * and the stream patches its seats; without it this is invalidate().
+     */
+    public synchronized void invalidateSeats(int eventId) {
+        if (!live) {
+            invalidate(eventId);
+            return;
+        }
+        eventInvalidatedAt.put(eventId, ++clock);
+        events.remove(eventId);
+    }
+
+    /**
+     * Update the seats of one event wherever it is cached. Nothing is
+     * stamped: the cached copies are already current.
+     */
+    private synchronized void patchSeats(int eventId, int seatsAvailable) {
+        Entry<Event> entry = events.get(eventId);
+        if (entry != null) entry.value.setSeatsAvailable(seatsAvailable);
+        if (allEvents != null) {
+            for (Event event : allEvents.value) {
+                if (event.getId() == eventId) event.setSeatsAvailable(seatsAvailable);
+            }
+        }
+        for (InvalidationListener listener : listeners) {
+            listener.seatsChanged(eventId, seatsAvailable);
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        long stamp = ++clock;
+        allInvalidatedAt = stamp;
+        listsInvalidatedAt = stamp;
+        eventInvalidatedAt.clear();
+        events.clear();
+        allEvents = null;
+        eventTypes = null;
+        for (InvalidationListener listener : listeners) {
+            listener.invalidatedAll();
+        }
+    }
+
+    private void runWatcher(MongoCollection<Document> eventsCollection) {
+        BsonDocument resumeToken = null;
+        while (true) {
+            ChangeStreamIterable<Document> stream = eventsCollection.watch().fullDocument(FullDocument.UPDATE_LOOKUP);
+            if (resumeToken != null) {
+                stream = stream.resumeAfter(resumeToken);
+            }
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor()) {
+                System.out.println("[CACHE] Watching events for changes");
+                live = true;
+                // Anything cached before the stream opened may already be stale
+                invalidateAll();
+                while (true) {
+                    ChangeStreamDocument<Document> change = cursor.next();
+                    resumeToken = change.getResumeToken();
+                    applyChange(change);
+                }
+            } catch (MongoCommandException e) {
+                if (e.getErrorCode() == CHANGE_STREAM_NOT_SUPPORTED) {
+                    System.err.println("[CACHE WARNING] Change streams need a replica set; "
+                        + "event cache falls back to " + (TTL_MILLIS / 1000) + "s TTL expiry");
+                    return;
+                }
+                System.err.println("[CACHE ERROR] Change stream failed: " + e.getMessage());
+                // Reopen from now instead; the reopened stream invalidates everything
+                if (e.getErrorCode() == CHANGE_STREAM_HISTORY_LOST) resumeToken = null;
+            } catch (MongoException e) {
+                System.err.println("[CACHE ERROR] Change stream interrupted: " + e.getMessage());
+                if (e.getCode() == CHANGE_STREAM_HISTORY_LOST) resumeToken = null;
+            }
+            live = false;
+            invalidateAll();
+            try {
+                Thread.sleep(RETRY_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void applyChange(ChangeStreamDocument<Document> change) {
+        Document fullDocument = change.getFullDocument();
+        Object id = fullDocument != null ? fullDocument.get("id") : null;
+        if (id instanceof Number) {
+            int eventId = ((Number) id).intValue();
+            Object seats = fullDocument.get("seatsAvailable");
+            if (change.getOperationType() == OperationType.UPDATE && seats instanceof Number
+                    && !touchesListedFields(change.getUpdateDescription())) {
+                patchSeats(eventId, ((Number) seats).intValue());
+            } else {
+                invalidate(eventId);
+            }
+        } else {
+            // Deletes only carry the _id, so we cannot tell which event went away
+            invalidateAll();
+        }
+    }
+
+    private boolean eventInvalidatedSince(int eventId, long stamp) {
+        Long invalidatedAt = eventInvalidatedAt.get(eventId);
+        return allInvalidatedAt > stamp || (invalidatedAt != null && invalidatedAt > stamp);
+    }
+
+    private static boolean touchesListedFields(UpdateDescription update) {
+        if (update == null) return true;
+        List<String> fields = new ArrayList<>();
+        if (update.getUpdatedFields() != null) fields.addAll(update.getUpdatedFields().keySet());
+        if (update.getRemovedFields() != null) fields.addAll(update.getRemovedFields());
+        for (String field : fields) {
+            // A nested path counts as its top-level field
+            int dot = field.indexOf('.');
+            if (LISTED_FIELDS.contains(dot < 0 ? field : field.substring(0, dot))) return true;
+        }
+        return false;
+    }
+
+    static List<Event> copyOf(List<Event> source) {
+        List<Event> copies = new ArrayList<>(source.size());
+        for (Event event : source) {
+            copies.add(copyOf(event));
+        }
+        return copies;
+    }
+
+    static Event copyOf(Event source) {
+        Event copy = new Event(source.getId(), source.getName(), source.getType(), source.getDate(),
+            source.getVenue(), source.getTotalSeats(), source.getPrice());
+        copy.setSeatsAvailable(source.getSeatsAvailable());
+        copy.setCancellationReason(source.getCancellationReason());
+        copy.setOriginalDate(source.getOriginalDate());
+        if (source.getStatus() != null) copy.setStatus(source.getStatus());
+        return copy;
+    }
+
+    public interface InvalidationListener {
+        void invalidated(int eventId);
+        void invalidatedAll();
+        /** Only the seat count of the event changed; it is called with the cache locked */
+        void seatsChanged(int eventId, int seatsAvailable);
+    }
+
+    private static class Entry<T> {
+        final T value;
+        final long expiresAt;
+
+        Entry(T value) {
+            this.value = value;
+            this.expiresAt = System.currentTimeMillis() + TTL_MILLIS;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+}
@@ -0,0 +1,643 @@
+package com.eventbooking.database;
+
+import com.eventbooking.models.Event;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * Event Search Index - in-memory inverted index over events.
+ *
+ * name, type and venue are split into lower-case, accent-free tokens, each
+ * with a posting list of the documents (and fields) it occurs in. Every word
+ * of a query must match a token exactly or as a prefix, so results appear
+ * while typing; only a word that matches nothing that way is retried against
+ * tokens one typo away (two for words of eight letters or more). Results
+ * are ranked by the field matched (name, then type, then venue) and by how
+ * well it matched.
+ *
+ * Category, price and date filters have a posting list per value, kept in
+ * sorted maps: a range is the union of a sub map, built into a BitSet and
+ * intersected with the text matches. Status is a date range relative to
+ * today, as in Event.updateStatus(). Without text, results come in date
+ * order from today on, then undated events, then past events latest first.
+ *
+ * Events are indexed under internal document numbers. An update indexes a
+ * new document and marks the old one dead, so posting lists only ever grow
+ * at the end; once more than half the documents are dead the index is
+ * rebuilt from its own copies, without a round trip.
+ *
+ * The index is built on first use and then follows EventCache: events
+ * invalidated there, by a local write or by the change stream, are reloaded
+ * in one query before the next search, and seat counts from the stream are
+ * patched into the indexed copies without a query. invalidateAll, and
+ * without a change stream every REBUILD_MILLIS, rebuild it on a background
+ * thread; searches keep using the current index until the new one is
+ * loaded. No query runs under the index lock: loads are taken under
+ * loadLock and only swapped in under the index lock.
+ */
+class EventSearchIndex implements EventCache.InvalidationListener {
+    private static final byte NAME = 1, TYPE = 2, VENUE = 4;
+    private static final float EXACT = 1.0f, PREFIX = 0.6f, FUZZY = 0.3f;
+    private static final int FUZZY_MIN_LENGTH = 4;
+    private static final int TWO_TYPO_LENGTH = 8;
+    private static final int MIN_COMPACT_DOCS = 1024;
+    private static final long REBUILD_MILLIS = 5 * 60_000;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final MongoCollection<Event> eventModels;
+    private final int maxResults;
+    private final Set<Integer> staleEvents = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, Integer> seatChanges = new ConcurrentHashMap<>();
+    // One load at a time, so an older copy of an event never lands after a newer one
+    private final Object loadLock = new Object();
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "search-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean stale = false;
+    private volatile boolean built = false;
+    private boolean rebuilding = false;
+    private final Set<Integer> reloadedDuringRebuild = new HashSet<>();
+    private volatile long builtAt = 0;
+
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private final Map<String, Postings> types = new HashMap<>();
+    private final TreeMap<Double, Postings> prices = new TreeMap<>();
+    private final TreeMap<Long, Postings> dates = new TreeMap<>();
+    private final Postings undated = new Postings();
+    private final Map<Integer, Integer> docsByEventId = new HashMap<>();
+    private final BitSet live = new BitSet();
+    private Event[] events = new Event[MIN_COMPACT_DOCS];
+    private int nextDoc = 0;
+
+    // Scratch space reused by every search, which holds the lock anyway
+    private float[] scores = new float[0];
+    private float[] best = new float[0];
+    private int[][] typoRows = new int[3][16];
+
+    /**
+     * @param maxResults the most events a search returns, best first
+     */
+    EventSearchIndex(MongoCollection<Event> eventModels, int maxResults) {
+        this.eventModels = eventModels;
+        this.maxResults = maxResults;
+    }
+
+    @Override
+    public void invalidated(int eventId) {
+        staleEvents.add(eventId);
+    }
+
+    @Override
+    public void invalidatedAll() {
+        stale = true;
+    }
+
+    @Override
+    public void seatsChanged(int eventId, int seatsAvailable) {
+        // Applied by the next search: the cache lock is held here
+        seatChanges.put(eventId, seatsAvailable);
+    }
+
+    /**
+     * The most events one search returns
+     */
+    int maxResults() {
+        return maxResults;
+    }
+
+    /**
+     * Search events. Every argument is optional; with no text the matches
+     * come back by date, upcoming first.
+     * @param status "Upcoming", "Event Day" or "Completed"
+     * @return copies of the matching events, so callers may modify them
+     */
+    List<Event> search(String text, String category, Double minPrice, Double maxPrice,
+                       LocalDate from, LocalDate to, String status) {
+        Set<String> words = new LinkedHashSet<>(tokenize(text));
+        refresh();
+        synchronized (this) {
+            applySeatChanges();
+            BitSet matches = (BitSet) live.clone();
+            if (category != null) {
+                Postings ofType = types.get(category);
+                matches.and(union(ofType == null ? Collections.emptyList() : Collections.singletonList(ofType)));
+            }
+            if (minPrice != null || maxPrice != null) {
+                matches.and(union(range(prices, minPrice, maxPrice).values()));
+            }
+            NavigableMap<Long, Postings> dateRange = dateRange(from, to, status);
+            if (dateRange != dates) {
+                matches.and(union(dateRange.values()));
+            }
+            return words.isEmpty() ? byDate(matches, dateRange) : ranked(matches, words);
+        }
+    }
+
+    // ==========================================================
+    // == MAINTENANCE ==
+    // ==========================================================
+
+    /**
+     * Bring the index up to date before a search
+     */
+    private void refresh() {
+        if (!built) {
+            buildFirst();
+            return;
+        }
+        boolean due = stale
+            || !EventCache.getInstance().isLive() && System.currentTimeMillis() - builtAt > REBUILD_MILLIS;
+        synchronized (this) {
+            if (due && !rebuilding) {
+                stale = false;
+                rebuilding = true;
+                rebuilder.execute(this::rebuildInBackground);
+            }
+        }
+        reloadStale();
+    }
+
+    /**
+     * Nothing to search yet: the first build is the only one searches wait for
+     */
+    private void buildFirst() {
+        synchronized (loadLock) {
+            if (built) return;
+            List<Integer> covered = new ArrayList<>(staleEvents);
+            List<Event> all;
+            try {
+                all = eventModels.find().into(new ArrayList<>());
+            } catch (MongoException e) {
+                System.err.println("[SEARCH ERROR] Could not build the event index: " + e.getMessage());
+                return;
+            }
+            synchronized (this) {
+                rebuild(all, covered);
+            }
+        }
+    }
+
+    private void reloadStale() {
+        if (staleEvents.isEmpty()) return;
+        synchronized (loadLock) {
+            if (staleEvents.isEmpty()) return;
+            List<Integer> eventIds = new ArrayList<>(staleEvents);
+            staleEvents.removeAll(eventIds);
+            Map<Integer, Event> reloaded = new HashMap<>();
+            try {
+                for (Event event : eventModels.find(Filters.in("id", eventIds))) {
+                    reloaded.put(event.getId(), event);
+                }
+            } catch (MongoException e) {
+                staleEvents.addAll(eventIds);
+                System.err.println("[SEARCH ERROR] Could not reload changed events: " + e.getMessage());
+                return;
+            }
+            synchronized (this) {
+                // The rebuild being loaded may hold older copies of these
+                if (rebuilding) reloadedDuringRebuild.addAll(eventIds);
+                for (Integer eventId : eventIds) {
+                    remove(eventId);
+                    Event event = reloaded.get(eventId);
+                    if (event != null) add(event);
+                }
+                int liveDocs = docsByEventId.size();
+                if (nextDoc > MIN_COMPACT_DOCS && nextDoc - liveDocs > liveDocs) {
+                    compact();
+                }
+            }
+        }
+    }
+
+    /**
+     * Patch the seat counts reported since the last search into the indexed
+     * copies. Seats are not indexed, so nothing else changes.
+     */
+    private void applySeatChanges() {
+        if (seatChanges.isEmpty()) return;
+        for (Integer eventId : new ArrayList<>(seatChanges.keySet())) {
+            Integer seatsAvailable = seatChanges.remove(eventId);
+            Integer doc = docsByEventId.get(eventId);
+            if (seatsAvailable == null || doc == null) continue;
+            events[doc].setSeatsAvailable(seatsAvailable);
+            // The rebuild being loaded may hold an older count
+            if (rebuilding) reloadedDuringRebuild.add(eventId);
+        }
+    }
+
+    /**
+     * Load every event without holding the lock, then swap them in. Events
+     * invalidated during the load stay stale and are reloaded again.
+     */
+    private void rebuildInBackground() {
+        List<Integer> covered = new ArrayList<>(staleEvents);
+        List<Event> all;
+        try {
+            all = eventModels.find().into(new ArrayList<>());
+        } catch (MongoException e) {
+            System.err.println("[SEARCH ERROR] Could not rebuild the event index: " + e.getMessage());
+            synchronized (this) {
+                rebuilding = false;
+                reloadedDuringRebuild.clear();
+                stale = true;
+            }
+            return;
+        }
+        synchronized (this) {
+            rebuilding = false;
+            rebuild(all, covered);
+        }
+    }
+
+    private void rebuild(List<Event> all, List<Integer> covered) {
+        clear();
+        for (Event event : all) {
+            add(event);
+        }
+        staleEvents.removeAll(covered);
+        staleEvents.addAll(reloadedDuringRebuild);
+        reloadedDuringRebuild.clear();
+        built = true;
+        builtAt = System.currentTimeMillis();
+        System.out.println("[SEARCH] Indexed " + all.size() + " events");
+    }
+
+    private void add(Event event) {
+        int doc = nextDoc++;
+        if (doc == events.length) {
+            events = Arrays.copyOf(events, doc * 2);
+        }
+        events[doc] = EventCache.copyOf(event);
+        live.set(doc);
+        Integer replaced = docsByEventId.put(event.getId(), doc);
+        if (replaced != null) {
+            live.clear(replaced);
+            events[replaced] = null;
+        }
+        indexField(event.getName(), doc, NAME);
+        indexField(event.getType(), doc, TYPE);
+        indexField(event.getVenue(), doc, VENUE);
+        if (event.getType() != null) {
+            types.computeIfAbsent(event.getType(), type -> new Postings()).add(doc, (byte) 0);
+        }
+        prices.computeIfAbsent(event.getPrice(), price -> new Postings()).add(doc, (byte) 0);
+        if (event.getDate() != null) {
+            dates.computeIfAbsent(event.getDate().toEpochDay(), day -> new Postings()).add(doc, (byte) 0);
+        } else {
+            undated.add(doc, (byte) 0);
+        }
+    }
+
+    private void indexField(String value, int doc, byte field) {
+        for (String token : tokenize(value)) {
+            terms.computeIfAbsent(token, term -> new Postings()).add(doc, field);
+        }
+    }
+
+    private void remove(int eventId) {
+        Integer doc = docsByEventId.remove(eventId);
+        if (doc != null) {
+            live.clear(doc);
+            events[doc] = null;
+        }
+    }
+
+    /**
+     * Re-index the live documents under new numbers, dropping the dead ones
+     */
+    private void compact() {
+        List<Event> current = new ArrayList<>(docsByEventId.size());
+        for (int doc = live.nextSetBit(0); doc >= 0; doc = live.nextSetBit(doc + 1)) {
+            current.add(events[doc]);
+        }
+        clear();
+        for (Event event : current) {
+            add(event);
+        }
+    }
+
+    private void clear() {
+        terms.clear();
+        types.clear();
+        prices.clear();
+        dates.clear();
+        undated.clear();
+        docsByEventId.clear();
+        live.clear();
+        events = new Event[MIN_COMPACT_DOCS];
+        nextDoc = 0;
+    }
+
+    // ==========================================================
+    // == QUERYING ==
+    // ==========================================================
+
+    /**
+     * The date postings a query is limited to, or all of them if it is not
+     */
+    private NavigableMap<Long, Postings> dateRange(LocalDate from, LocalDate to, String status) {
+        Long low = from != null ? from.toEpochDay() : null;
+        Long high = to != null ? to.toEpochDay() : null;
+        if (status != null) {
+            long today = LocalDate.now().toEpochDay();
+            switch (status) {
+                case "Upcoming":
+                    low = low == null ? today + 1 : Math.max(low, today + 1);
+                    break;
+                case "Event Day":
+                    low = low == null ? today : Math.max(low, today);
+                    high = high == null ? today : Math.min(high, today);
+                    break;
+                case "Completed":
+                    high = high == null ? today - 1 : Math.min(high, today - 1);
+                    break;
+                default:
+                    return Collections.emptyNavigableMap();
+            }
+        }
+        return range(dates, low, high);
+    }
+
+    /**
+     * Matches from today on in date order, then undated ones when no date
+     * filter applies, then past ones latest first
+     */
+    private List<Event> byDate(BitSet matches, NavigableMap<Long, Postings> dateRange) {
+        List<Event> results = new ArrayList<>(Math.min(matches.cardinality(), maxResults));
+        long today = LocalDate.now().toEpochDay();
+        collect(dateRange.tailMap(today, true).values(), matches, results);
+        if (dateRange == dates) {
+            collect(Collections.singletonList(undated), matches, results);
+        }
+        collect(dateRange.headMap(today, false).descendingMap().values(), matches, results);
+        return results;
+    }
+
+    private void collect(Collection<Postings> postingLists, BitSet matches, List<Event> results) {
+        for (Postings postings : postingLists) {
+            for (int i = 0; i < postings.size; i++) {
+                if (results.size() == maxResults) return;
+                int doc = postings.docs[i];
+                if (matches.get(doc)) results.add(EventCache.copyOf(events[doc]));
+            }
+        }
+    }
+
+    private List<Event> ranked(BitSet matches, Set<String> words) {
+        if (scores.length < nextDoc) {
+            scores = new float[events.length];
+            best = new float[events.length];
+        } else {
+            Arrays.fill(scores, 0, nextDoc, 0f);
+        }
+        // Raw words of the BitSet: clearing bits one by one through BitSet is slow
+        long[] matching = matches.toLongArray();
+        for (String word : words) {
+            boolean found = score(terms.get(word), EXACT, matching);
+            for (Postings postings : terms.subMap(word, false, word + Character.MAX_VALUE, false).values()) {
+                found |= score(postings, PREFIX, matching);
+            }
+            if (!found && word.length() >= FUZZY_MIN_LENGTH) {
+                found = fuzzy(word, matching);
+            }
+            if (!found) return new ArrayList<>();
+            // A match must hit every word: keep the documents this word scored
+            for (int i = 0; i < matching.length; i++) {
+                for (long bits = matching[i]; bits != 0; bits &= bits - 1) {
+                    int doc = (i << 6) + Long.numberOfTrailingZeros(bits);
+                    if (best[doc] > 0) {
+                        scores[doc] += best[doc];
+                        best[doc] = 0;
+                    } else {
+                        matching[i] &= ~(1L << doc);
+                    }
+                }
+            }
+        }
+        return top(matching);
+    }
+
+    /**
+     * Score the terms within typo range of a word. Only terms starting with
+     * the same letter, or with its first two letters swapped, are compared:
+     * that keeps the scan to a slice of the dictionary, and a wrong first
+     * letter is the rarest typo.
+     */
+    private boolean fuzzy(String word, long[] matching) {
+        int maxTypos = word.length() >= TWO_TYPO_LENGTH ? 2 : 1;
+        boolean found = false;
+        String first = word.substring(0, 1);
+        for (Map.Entry<String, Postings> term : terms.subMap(first, true, first + Character.MAX_VALUE, false).entrySet()) {
+            if (withinTypos(word, term.getKey(), maxTypos)) found |= score(term.getValue(), FUZZY, matching);
+        }
+        if (word.charAt(0) == word.charAt(1)) return found;
+        String swapped = "" + word.charAt(1) + word.charAt(0);
+        for (Map.Entry<String, Postings> term : terms.subMap(swapped, true, swapped + Character.MAX_VALUE, false).entrySet()) {
+            if (withinTypos(word, term.getKey(), maxTypos)) found |= score(term.getValue(), FUZZY, matching);
+        }
+        return found;
+    }
+
+    /**
+     * Raise the best score of the current word for every matching document
+     * of one posting list
+     * @return true if any document matched
+     */
+    private boolean score(Postings postings, float quality, long[] matching) {
+        if (postings == null) return false;
+        boolean found = false;
+        for (int i = 0; i < postings.size; i++) {
+            int doc = postings.docs[i];
+            if ((doc >> 6) >= matching.length || (matching[doc >> 6] & (1L << doc)) == 0) continue;
+            byte fields = postings.fields[i];
+            float weight = (fields & NAME) != 0 ? 3 : (fields & TYPE) != 0 ? 2 : 1;
+            best[doc] = Math.max(best[doc], quality * weight);
+            found = true;
+        }
+        return found;
+    }
+
+    /**
+     * The best maxResults matches, best first; ties go to the older document
+     */
+    private List<Event> top(long[] matching) {
+        int count = 0;
+        for (long bits : matching) count += Long.bitCount(bits);
+        // Min-heap keyed by score in the high half and inverted document number in the low half
+        long[] heap = new long[Math.min(maxResults, count)];
+        int size = 0;
+        for (int i = 0; i < matching.length; i++) {
+            for (long bits = matching[i]; bits != 0; bits &= bits - 1) {
+                int doc = (i << 6) + Long.numberOfTrailingZeros(bits);
+                long key = (long) Float.floatToIntBits(scores[doc]) << 32 | (Integer.MAX_VALUE - doc);
+                if (size < heap.length) {
+                    heap[size] = key;
+                    siftUp(heap, size++);
+                } else if (key > heap[0]) {
+                    heap[0] = key;
+                    siftDown(heap, size);
+                }
+            }
+        }
+        Event[] results = new Event[size];
+        while (size > 0) {
+            int doc = Integer.MAX_VALUE - (int) heap[0];
+            heap[0] = heap[--size];
+            siftDown(heap, size);
+            results[size] = EventCache.copyOf(events[doc]);
+        }
+        return new ArrayList<>(Arrays.asList(results));
+    }
+
+    private static void siftUp(long[] heap, int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (heap[parent] <= heap[i]) return;
+            long swap = heap[parent];
+            heap[parent] = heap[i];
+            heap[i] = swap;
+            i = parent;
+        }
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        int i = 0;
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && heap[left] < heap[smallest]) smallest = left;
+            if (right < size && heap[right] < heap[smallest]) smallest = right;
+            if (smallest == i) return;
+            long swap = heap[smallest];
+            heap[smallest] = heap[i];
+            heap[i] = swap;
+            i = smallest;
+        }
+    }
+
+    private static BitSet union(Collection<Postings> postingLists) {
+        BitSet union = new BitSet();
+        for (Postings postings : postingLists) {
+            for (int i = 0; i < postings.size; i++) {
+                union.set(postings.docs[i]);
+            }
+        }
+        return union;
+    }
+
+    /**
+     * The entries between low and high inclusive; a null bound is open
+     */
+    private static <K extends Comparable<K>> NavigableMap<K, Postings> range(TreeMap<K, Postings> map, K low, K high) {
+        if (low != null && high != null && low.compareTo(high) > 0) return Collections.emptyNavigableMap();
+        NavigableMap<K, Postings> range = map;
+        if (low != null) range = range.tailMap(low, true);
+        if (high != null) range = range.headMap(high, true);
+        return range;
+    }
+
+    /**
+     * Lower-case, accent-free words of a text: "Café Rock-Night" is
+     * [cafe, rock, night]
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+            .toLowerCase(Locale.ROOT);
+        for (String token : SEPARATORS.split(folded)) {
+            if (!token.isEmpty()) tokens.add(token);
+        }
+        return tokens;
+    }
+
+    /**
+     * True if b is at most maxTypos insertions, deletions, substitutions or
+     * swaps of adjacent letters away from a
+     */
+    private boolean withinTypos(String a, String b, int maxTypos) {
+        int n = a.length(), m = b.length();
+        if (Math.abs(n - m) > maxTypos) return false;
+        if (typoRows[0].length <= m) {
+            typoRows = new int[3][m + 1];
+        }
+        int[] beforePrevious = typoRows[0];
+        int[] previous = typoRows[1];
+        int[] current = typoRows[2];
+        for (int j = 0; j <= m; j++) previous[j] = j;
+        for (int i = 1; i <= n; i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= m; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int distance = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    distance = Math.min(distance, beforePrevious[j - 2] + 1);
+                }
+                current[j] = distance;
+                rowMin = Math.min(rowMin, distance);
+            }
+            // Every later row is at least this far off
+            if (rowMin > maxTypos) return false;
+            int[] recycled = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[m] <= maxTypos;
+    }
+
+    /**
+     * Ascending document numbers, each with the fields the term occurs in
+     */
+    private static class Postings {
+        int[] docs = new int[4];
+        byte[] fields = new byte[4];
+        int size;
+
+        void add(int doc, byte field) {
+            // A term found in several fields of one document is one entry
+            if (size > 0 && docs[size - 1] == doc) {
+                fields[size - 1] |= field;
+                return;
+            }
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                fields = Arrays.copyOf(fields, size * 2);
+            }
+            docs[size] = doc;
+            fields[size] = field;
+            size++;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.eventbooking.database;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Batched ID allocator backed by the "counters" collection.
+ *
+ * Each sequence leases a block of IDs with a single $inc/upsert and hands
+ * them out from memory, so most inserts cost no extra round trip. Blocks are
+ * disjoint across app instances, which keeps IDs unique without a
+ * sort-by-id scan. IDs are unique and increasing per instance, but may
+ * have gaps after a restart.
+ */
+public class IdAllocator {
+    private final MongoCollection<Document> countersCollection;
+    private final MongoCollection<Document> sourceCollection;
+    private final String sequenceName;
+    private final int blockSize;
+
+    private final AtomicLong next = new AtomicLong(1);
+    private volatile long blockEnd = 0; // exclusive
+    private volatile boolean seeded = false;
+
+    /**
+     * @param sourceCollection the collection whose "id" field this sequence feeds,
+     *                         used once to seed the counter above existing data
+     */
+    public IdAllocator(MongoCollection<Document> countersCollection,
+                       MongoCollection<Document> sourceCollection,
+                       String sequenceName, int blockSize) {
+        this.countersCollection = countersCollection;
+        this.sourceCollection = sourceCollection;
+        this.sequenceName = sequenceName;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Get the next unique ID for this sequence
+     */
+    public int nextId() {
+        while (true) {
+            long end = blockEnd;
+            long id = next.getAndIncrement();
+            if (id < end) {
+                return Math.toIntExact(id);
+            }
+            leaseBlock(end);
+        }
+    }
+
+    private synchronized void leaseBlock(long observedEnd) {
+        if (blockEnd != observedEnd) return; // another thread already refilled
+        if (!seeded) {
+            seedFromExistingData();
+            seeded = true;
+        }
+        Document counter = countersCollection.findOneAndUpdate(
+            Filters.eq("_id", sequenceName),
+            Updates.inc("value", (long) blockSize),
+            new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER));
+        long end = counter.get("value", Number.class).longValue() + 1;
+        next.set(end - blockSize);
+        blockEnd = end;
+        System.out.println("[DB] Leased IDs " + (end - blockSize) + "-" + (end - 1) + " for '" + sequenceName + "'");
+    }
+
+    /**
+     * Raise the counter to the highest ID already stored. $max makes this
+     * safe to run concurrently from several instances.
+     */
+    private void seedFromExistingData() {
+        Document top = sourceCollection.find()
+            .projection(Projections.include("id"))
+            .sort(Sorts.descending("id")).limit(1).first();
+        long maxId = top != null && top.get("id") != null ? top.get("id", Number.class).longValue() : 0L;
+        countersCollection.updateOne(Filters.eq("_id", sequenceName),
+            Updates.max("value", maxId), new UpdateOptions().upsert(true));
+    }
+}
@@ -0,0 +1,388 @@
+package com.eventbooking.database;
+
+import com.eventbooking.database.codecs.BsonDates;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import org.bson.Document;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Leaderboard - in-memory rankings of attendees for three windows.
+ *
+ * Each window keeps every attendee's score in a skip list ordered by
+ * tickets, then spend, so the top K is read straight off the head of the
+ * list without touching MongoDB. Bookings and cancellations made by this
+ * process update the scores as they commit; every REFRESH_MILLIS (and when
+ * a day or month rolls over) a window is reloaded to pick up changes made by
+ * other instances:
+ *
+ *   ALL_TIME  from users (ticketsBought, eventsAttended, totalSpent)
+ *   MONTHLY   from this month's active bookings
+ *   DAILY     from today's active bookings
+ *
+ * Reloads run on a background thread, in one snapshot transaction, and
+ * swap the new board in when done; nobody waits for them except the first
+ * top() of a period. Changes recorded meanwhile are journaled with their
+ * booking and replayed onto the new board unless the snapshot already saw
+ * that booking in that state. Without a replica set the reads are not one
+ * snapshot, so a change made during a reload can be missed until the next.
+ */
+class Leaderboard {
+    private static final long REFRESH_MILLIS = 5 * 60_000;
+
+    enum Window { ALL_TIME, MONTHLY, DAILY }
+
+    private final MongoCollection<Document> usersCollection;
+    private final MongoCollection<Document> bookingsCollection;
+    private final TransactionRunner transactionRunner;
+    private final Map<Window, Board> boards = new ConcurrentHashMap<>();
+    private final ExecutorService reloader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "leaderboard-reload");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    Leaderboard(MongoCollection<Document> usersCollection, MongoCollection<Document> bookingsCollection,
+                TransactionRunner transactionRunner) {
+        this.usersCollection = usersCollection;
+        this.bookingsCollection = bookingsCollection;
+        this.transactionRunner = transactionRunner;
+        for (Window window : Window.values()) {
+            boards.put(window, new Board(null));
+        }
+    }
+
+    /**
+     * The best limit attendees of a window, best first
+     */
+    List<Score> top(Window window, int limit) {
+        Board board = current(window).awaitLoaded();
+        List<Score> top = new ArrayList<>(Math.min(limit, 64));
+        Iterator<Score> ranked = board.ranking.iterator();
+        while (ranked.hasNext() && top.size() < limit) {
+            top.add(ranked.next());
+        }
+        return top;
+    }
+
+    void recordBooking(int bookingId, String username, int seats, double amount) {
+        Change change = new Change(bookingId, seats, username, seats, 1, amount);
+        for (Window window : Window.values()) {
+            current(window).add(change);
+        }
+    }
+
+    /**
+     * @param seatsLeft seats the booking still holds after the cancellation, 0 if it is gone
+     * @param wholeBooking true if the booking itself is gone, not just some of its seats
+     * @param bookedAt when the booking was made; it only counts against windows it was made in
+     */
+    void recordCancellation(int bookingId, int seatsLeft, String username, int seats, double amount,
+                            boolean wholeBooking, LocalDateTime bookedAt) {
+        // All-time eventsAttended counts bookings ever made, so it is not reduced
+        current(Window.ALL_TIME).add(new Change(bookingId, seatsLeft, username, -seats, 0, -amount));
+        if (bookedAt == null) return;
+        Change change = new Change(bookingId, seatsLeft, username, -seats, wholeBooking ? -1 : 0, -amount);
+        LocalDate bookedOn = bookedAt.toLocalDate();
+        LocalDate today = LocalDate.now();
+        if (bookedOn.getYear() == today.getYear() && bookedOn.getMonth() == today.getMonth()) {
+            current(Window.MONTHLY).add(change);
+        }
+        if (bookedOn.equals(today)) {
+            current(Window.DAILY).add(change);
+        }
+    }
+
+    // ==========================================================
+    // == LOADING ==
+    // ==========================================================
+
+    /**
+     * The window's board for the current period, scheduling a reload if it
+     * is due. Never blocks on MongoDB.
+     */
+    private Board current(Window window) {
+        String period = periodOf(window);
+        Board board = boards.get(window);
+        if (!period.equals(board.period)) {
+            synchronized (boards) {
+                board = boards.get(window);
+                if (!period.equals(board.period)) {
+                    // A new day or month starts empty; changes still arriving on
+                    // the old board move on to it
+                    Board fresh = new Board(period);
+                    board.retire(fresh);
+                    boards.put(window, fresh);
+                    board = fresh;
+                }
+            }
+        }
+        if (board.startReloadIfDue()) {
+            Board reloading = board;
+            reloader.execute(() -> reload(window, reloading));
+        }
+        return board;
+    }
+
+    private void reload(Window window, Board board) {
+        try {
+            transactionRunner.run("leaderboard " + window + " reload", tx -> {
+                if (board.successor != null) return true; // a retried attempt after the swap
+                Map<String, Score> loaded = load(window, tx.session());
+                Map<Integer, Integer> seen = new HashMap<>();
+                Set<Integer> looked = new HashSet<>();
+                int checked = 0;
+                while (true) {
+                    List<Change> pending = board.journalFrom(checked);
+                    if (!pending.isEmpty()) {
+                        lookUpBookings(tx.session(), pending, looked, seen);
+                        checked += pending.size();
+                        continue;
+                    }
+                    // Swap only once every journaled change has been checked against the snapshot
+                    if (board.swapIfChecked(checked, loaded, seen, boards, window)) return true;
+                }
+            });
+        } catch (Exception e) {
+            System.err.println("[DB ERROR] Error loading " + window + " leaderboard: " + e.getMessage());
+        } finally {
+            board.reloadFinished(); // keep serving the old scores if the swap did not happen
+        }
+    }
+
+    private Map<String, Score> load(Window window, ClientSession session) {
+        Map<String, Score> loaded = new HashMap<>();
+        if (window == Window.ALL_TIME) {
+            for (Document user : usersCollection.find(session, Filters.eq("role", "Attendee"))
+                    .projection(Projections.include("username", "ticketsBought", "eventsAttended", "totalSpent"))) {
+                String username = user.getString("username");
+                loaded.put(username, new Score(username, (int) number(user, "ticketsBought"),
+                    (int) number(user, "eventsAttended"), number(user, "totalSpent")));
+            }
+            return loaded;
+        }
+        LocalDateTime from = window == Window.DAILY
+            ? LocalDate.now().atStartOfDay()
+            : LocalDate.now().withDayOfMonth(1).atStartOfDay();
+        for (Document row : bookingsCollection.aggregate(session, Arrays.asList(
+                new Document("$match", new Document("cancelled", new Document("$ne", true))
+                    .append("timestamp", new Document("$gte", BsonDates.fromLocalDateTime(from)))),
+                new Document("$group", new Document("_id", "$username")
+                    .append("tickets", new Document("$sum", "$seatsBooked"))
+                    .append("bookings", new Document("$sum", 1))
+                    .append("spent", new Document("$sum", "$totalPrice")))))) {
+            String username = row.getString("_id");
+            loaded.put(username, new Score(username, (int) number(row, "tickets"),
+                (int) number(row, "bookings"), number(row, "spent")));
+        }
+        return loaded;
+    }
+
+    /**
+     * The seats each booking held in the snapshot, 0 if cancelled; bookings
+     * the snapshot does not have are left out of seen
+     */
+    private void lookUpBookings(ClientSession session, List<Change> changes, Set<Integer> looked,
+                                Map<Integer, Integer> seen) {
+        List<Integer> ids = new ArrayList<>();
+        for (Change change : changes) {
+            if (looked.add(change.bookingId)) ids.add(change.bookingId);
+        }
+        if (ids.isEmpty()) return;
+        for (Document booking : bookingsCollection.find(session, Filters.in("id", ids))
+                .projection(Projections.include("id", "seatsBooked", "cancelled"))) {
+            seen.put(booking.getInteger("id"),
+                booking.getBoolean("cancelled", false) ? 0 : (int) number(booking, "seatsBooked"));
+        }
+    }
+
+    private static String periodOf(Window window) {
+        switch (window) {
+            case DAILY: return LocalDate.now().toString();
+            case MONTHLY: return LocalDate.now().withDayOfMonth(1).toString();
+            default: return "all";
+        }
+    }
+
+    private static double number(Document doc, String field) {
+        Object value = doc.get(field);
+        return value instanceof Number ? ((Number) value).doubleValue() : 0.0;
+    }
+
+    /**
+     * One change to a booking, as recorded after it committed. seatsLeft is
+     * what the booking holds afterwards, so a snapshot holding that many
+     * seats or fewer already includes it.
+     */
+    private static final class Change {
+        final int bookingId;
+        final int seatsLeft;
+        final String username;
+        final int tickets;
+        final int bookings;
+        final double spent;
+
+        Change(int bookingId, int seatsLeft, String username, int tickets, int bookings, double spent) {
+            this.bookingId = bookingId;
+            this.seatsLeft = seatsLeft;
+            this.username = username;
+            this.tickets = tickets;
+            this.bookings = bookings;
+            this.spent = spent;
+        }
+
+        boolean includedIn(Map<Integer, Integer> seen) {
+            Integer seats = seen.get(bookingId);
+            return seats != null && seats <= seatsLeft;
+        }
+    }
+
+    /**
+     * One window's scores for one period. Writers lock the board; readers
+     * walk the skip list without locking. A replaced board forwards late
+     * writes to its successor.
+     */
+    private static class Board {
+        final String period;
+        final Map<String, Score> scores = new HashMap<>();
+        final ConcurrentSkipListSet<Score> ranking = new ConcurrentSkipListSet<>(Score.ORDER);
+        private final CountDownLatch loaded = new CountDownLatch(1);
+        private long loadedAt;
+        private boolean reloading;
+        private List<Change> journal;
+        volatile Board successor;
+
+        Board(String period) {
+            this.period = period;
+        }
+
+        void add(Change change) {
+            Board target = this;
+            while (true) {
+                synchronized (target) {
+                    if (target.successor == null) {
+                        target.apply(change);
+                        if (target.journal != null) target.journal.add(change);
+                        return;
+                    }
+                }
+                target = target.successor;
+            }
+        }
+
+        private void apply(Change change) {
+            Score old = scores.get(change.username);
+            Score updated = old == null
+                ? new Score(change.username, change.tickets, change.bookings, change.spent)
+                : new Score(change.username, old.tickets + change.tickets, old.bookings + change.bookings,
+                    old.spent + change.spent);
+            if (old != null) ranking.remove(old);
+            scores.put(change.username, updated);
+            ranking.add(updated);
+        }
+
+        synchronized boolean startReloadIfDue() {
+            if (reloading || successor != null || System.currentTimeMillis() <= loadedAt + REFRESH_MILLIS) {
+                return false;
+            }
+            reloading = true;
+            journal = new ArrayList<>();
+            return true;
+        }
+
+        synchronized List<Change> journalFrom(int index) {
+            return journal == null ? new ArrayList<>() : new ArrayList<>(journal.subList(index, journal.size()));
+        }
+
+        /**
+         * Build the replacement from the snapshot plus the journaled changes
+         * it missed and publish it, unless more changes arrived unchecked
+         */
+        synchronized boolean swapIfChecked(int checked, Map<String, Score> snapshot, Map<Integer, Integer> seen,
+                                           Map<Window, Board> boards, Window window) {
+            if (successor != null) return true;
+            if (journal.size() != checked) return false;
+            Board fresh = new Board(period);
+            fresh.scores.putAll(snapshot);
+            fresh.ranking.addAll(snapshot.values());
+            for (Change change : journal) {
+                if (!change.includedIn(seen)) fresh.apply(change);
+            }
+            fresh.loadedAt = System.currentTimeMillis();
+            fresh.loaded.countDown();
+            // A rollover may have replaced this board while it reloaded
+            boards.replace(window, this, fresh);
+            retire(fresh);
+            return true;
+        }
+
+        synchronized void retire(Board next) {
+            if (successor == null) successor = next;
+            loaded.countDown();
+        }
+
+        synchronized void reloadFinished() {
+            reloading = false;
+            journal = null;
+            loadedAt = System.currentTimeMillis();
+            loaded.countDown();
+        }
+
+        /**
+         * Wait for the first load of the period, then return the newest board
+         */
+        Board awaitLoaded() {
+            Board board = this;
+            while (true) {
+                try {
+                    board.loaded.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return board;
+                }
+                Board next = board.successor;
+                if (next == null) return board;
+                board = next;
+            }
+        }
+    }
+
+    /**
+     * An attendee's standing in one window
+     */
+    static final class Score {
+        static final Comparator<Score> ORDER = Comparator.comparingInt((Score s) -> s.tickets).reversed()
+            .thenComparing(Comparator.comparingDouble((Score s) -> s.spent).reversed())
+            .thenComparing(s -> s.username);
+
+        final String username;
+        final int tickets;
+        final int bookings;
+        final double spent;
+
+        Score(String username, int tickets, int bookings, double spent) {
+            this.username = username;
+            this.tickets = tickets;
+            this.bookings = bookings;
+            this.spent = spent;
+        }
+    }
+}
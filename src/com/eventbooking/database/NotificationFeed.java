@@ -0,0 +1,316 @@
+package com.eventbooking.database;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Notification Feed - pushes inbox changes to whoever is watching.
+ *
+ * One change stream per process watches "notifications" (new messages) and
+ * "notification_counters" (unread counts), whichever instance wrote them,
+ * and hands each change to the subscriptions of the user it belongs to.
+ * Changes for users nobody is watching are dropped on arrival.
+ *
+ * Every subscription has a bounded queue. A subscriber that falls more than
+ * QUEUE_CAPACITY changes behind loses its backlog and gets one update marked
+ * resync, telling it to reload instead. Whatever is queued when a subscriber
+ * gets to it is coalesced into a single update, so a burst of 500
+ * notifications is one refresh, not 500.
+ *
+ * Like EventCache this needs a replica set; against a standalone server
+ * isLive() stays false and screens keep their manual refresh.
+ */
+public class NotificationFeed {
+    private static final int QUEUE_CAPACITY = 64;
+    private static final int MAX_MESSAGES = 5;
+    private static final long RETRY_DELAY_MILLIS = 5_000;
+    private static final int CHANGE_STREAM_NOT_SUPPORTED = 40573;
+    /** The resume token is older than the oplog; resuming from it can never succeed */
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+
+    private static NotificationFeed instance;
+
+    private final Map<String, Set<Subscription>> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "notification-push");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean watching = false;
+    private volatile boolean live = false;
+
+    private NotificationFeed() {}
+
+    public static synchronized NotificationFeed getInstance() {
+        if (instance == null) {
+            instance = new NotificationFeed();
+        }
+        return instance;
+    }
+
+    /**
+     * Start the change stream. Only the first call has an effect.
+     * @param onUnread told of every unread count seen, to keep caches current
+     */
+    synchronized void watch(MongoDatabase database, BiConsumer<String, Integer> onUnread) {
+        if (watching) return;
+        watching = true;
+        Thread watcher = new Thread(() -> runWatcher(database, onUnread), "notification-feed-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * True while the change stream is open, i.e. while pushes can arrive
+     */
+    public boolean isLive() {
+        return live;
+    }
+
+    /**
+     * Subscribe to be polled, e.g. by a server-sent event stream
+     */
+    public Subscription subscribe(String username) {
+        return register(new Subscription(username, null));
+    }
+
+    /**
+     * Subscribe to be called back on the shared "notification-push" thread.
+     * The listener must not block; hand the update to the UI thread instead.
+     */
+    public Subscription subscribe(String username, Consumer<Update> listener) {
+        return register(new Subscription(username, listener));
+    }
+
+    private Subscription register(Subscription subscription) {
+        subscribers.computeIfAbsent(subscription.username, name -> ConcurrentHashMap.newKeySet()).add(subscription);
+        return subscription;
+    }
+
+    private void unregister(Subscription subscription) {
+        subscribers.computeIfPresent(subscription.username, (name, subscriptions) -> {
+            subscriptions.remove(subscription);
+            return subscriptions.isEmpty() ? null : subscriptions;
+        });
+    }
+
+    private void publish(String username, Change change) {
+        Set<Subscription> subscriptions = subscribers.get(username);
+        if (subscriptions == null) return;
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(change);
+        }
+    }
+
+    private void runWatcher(MongoDatabase database, BiConsumer<String, Integer> onUnread) {
+        // Only new notifications; reads and deletes arrive as counter changes
+        List<Bson> pipeline = Collections.singletonList(Aggregates.match(Filters.or(
+            Filters.and(Filters.eq("ns.coll", "notifications"), Filters.eq("operationType", "insert")),
+            Filters.and(Filters.eq("ns.coll", NotificationInbox.COUNTERS),
+                Filters.in("operationType", Arrays.asList("insert", "update", "replace"))))));
+        BsonDocument resumeToken = null;
+        while (true) {
+            ChangeStreamIterable<Document> stream = database.watch(pipeline).fullDocument(FullDocument.UPDATE_LOOKUP);
+            if (resumeToken != null) {
+                stream = stream.resumeAfter(resumeToken);
+            }
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor()) {
+                System.out.println("[FEED] Watching notifications for changes");
+                live = true;
+                // Anything could have happened while the stream was down
+                resyncAll();
+                while (true) {
+                    ChangeStreamDocument<Document> change = cursor.next();
+                    resumeToken = change.getResumeToken();
+                    applyChange(change, onUnread);
+                }
+            } catch (MongoCommandException e) {
+                if (e.getErrorCode() == CHANGE_STREAM_NOT_SUPPORTED) {
+                    System.err.println("[FEED WARNING] Change streams need a replica set; "
+                        + "notifications are not pushed, screens refresh on demand");
+                    return;
+                }
+                System.err.println("[FEED ERROR] Change stream failed: " + e.getMessage());
+                // Reopen from now instead; the reopened stream resyncs every screen
+                if (e.getErrorCode() == CHANGE_STREAM_HISTORY_LOST) resumeToken = null;
+            } catch (MongoException e) {
+                System.err.println("[FEED ERROR] Change stream interrupted: " + e.getMessage());
+                if (e.getCode() == CHANGE_STREAM_HISTORY_LOST) resumeToken = null;
+            }
+            live = false;
+            try {
+                Thread.sleep(RETRY_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void applyChange(ChangeStreamDocument<Document> change, BiConsumer<String, Integer> onUnread) {
+        Document fullDocument = change.getFullDocument();
+        if (fullDocument == null || change.getNamespace() == null) return;
+        if (NotificationInbox.COUNTERS.equals(change.getNamespace().getCollectionName())) {
+            String username = fullDocument.getString("_id");
+            int unread = Math.max(0, fullDocument.getInteger("unread", 0));
+            onUnread.accept(username, unread);
+            publish(username, Change.unread(unread));
+        } else {
+            publish(fullDocument.getString("username"), Change.added(fullDocument.getString("message")));
+        }
+    }
+
+    private void resyncAll() {
+        for (Set<Subscription> subscriptions : subscribers.values()) {
+            for (Subscription subscription : subscriptions) {
+                subscription.overflow();
+            }
+        }
+    }
+
+    // ==========================================================
+    // == SUBSCRIPTIONS ==
+    // ==========================================================
+
+    /**
+     * One watcher of one user's inbox. Close it when the screen or
+     * connection goes away.
+     */
+    public class Subscription implements AutoCloseable {
+        private final String username;
+        private final Consumer<Update> listener;
+        private final BlockingQueue<Change> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final AtomicBoolean overflowed = new AtomicBoolean();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private Subscription(String username, Consumer<Update> listener) {
+            this.username = username;
+            this.listener = listener;
+        }
+
+        private void offer(Change change) {
+            if (!queue.offer(change)) overflow();
+            else signal();
+        }
+
+        private void overflow() {
+            overflowed.set(true);
+            queue.clear();
+            // Wake a poller blocked on an empty queue
+            queue.offer(Change.RESYNC);
+            signal();
+        }
+
+        private void signal() {
+            if (listener != null && scheduled.compareAndSet(false, true)) {
+                dispatcher.execute(() -> {
+                    scheduled.set(false);
+                    Update update = drain(null);
+                    if (update != null) listener.accept(update);
+                });
+            }
+        }
+
+        /**
+         * Wait up to timeout for changes
+         * @return everything queued, coalesced into one update, or null on timeout
+         */
+        public Update poll(long timeout, TimeUnit unit) throws InterruptedException {
+            Change first = queue.poll(timeout, unit);
+            return first == null ? null : drain(first);
+        }
+
+        private Update drain(Change first) {
+            List<Change> changes = new ArrayList<>();
+            if (first != null) changes.add(first);
+            queue.drainTo(changes);
+            boolean resync = overflowed.getAndSet(false);
+            if (changes.isEmpty() && !resync) return null;
+            Update update = new Update(resync);
+            for (Change change : changes) {
+                update.merge(change);
+            }
+            return update;
+        }
+
+        @Override
+        public void close() {
+            unregister(this);
+        }
+    }
+
+    private static final class Change {
+        static final Change RESYNC = new Change(null, null);
+
+        final String message;
+        final Integer unread;
+
+        private Change(String message, Integer unread) {
+            this.message = message;
+            this.unread = unread;
+        }
+
+        static Change added(String message) { return new Change(message, null); }
+        static Change unread(int unread) { return new Change(null, unread); }
+    }
+
+    /**
+     * What changed in an inbox since the subscriber last looked
+     */
+    public static final class Update {
+        private final boolean resync;
+        private int added;
+        private Integer unread;
+        private final List<String> latestMessages = new ArrayList<>();
+
+        private Update(boolean resync) {
+            this.resync = resync;
+        }
+
+        private void merge(Change change) {
+            if (change.unread != null) unread = change.unread;
+            if (change.message != null) {
+                added++;
+                latestMessages.add(change.message);
+                if (latestMessages.size() > MAX_MESSAGES) latestMessages.remove(0);
+            }
+        }
+
+        /**
+         * True if changes were lost (slow subscriber or stream restart);
+         * reload the inbox instead of applying the update
+         */
+        public boolean isResync() { return resync; }
+        public int getAdded() { return added; }
+        /** The latest unread count, or null if it did not change */
+        public Integer getUnread() { return unread; }
+        /** Up to the last MAX_MESSAGES new messages, oldest first */
+        public List<String> getLatestMessages() { return latestMessages; }
+    }
+}
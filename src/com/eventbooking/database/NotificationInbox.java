@@ -0,0 +1,280 @@
+package com.eventbooking.database;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Notification Inbox - paged notifications and unread counters.
+ *
+ * Inboxes are read newest first in pages of keyset order on
+ * (username, type, _id): a page after the first starts below the last _id
+ * seen, so page 1,000 of a 50,000-notification inbox costs the same index
+ * range scan as page 1. ObjectIds are ascending by creation time, so no
+ * timestamp sort is needed, and rows are addressed by _id.
+ *
+ * Each user's unread count is a counter in notification_counters, moved with
+ * $inc by exactly the number of notifications a write inserted, read or
+ * deleted, and cached here for CACHE_MILLIS. Writes made through this process
+ * refresh the cache, as does NotificationFeed for writes by other instances;
+ * without a change stream those show up within CACHE_MILLIS.
+ *
+ * Old notifications are moved to notifications_archive (or deleted) by
+ * prune(), which keeps the counters right; a TTL index on notifications
+ * itself would delete unread ones behind the counters' back.
+ */
+class NotificationInbox {
+    static final String COUNTERS = "notification_counters";
+    static final String ARCHIVE = "notifications_archive";
+    static final String USER = "user";
+    static final String ADMIN = "admin";
+    private static final long CACHE_MILLIS = 30_000;
+
+    private final MongoCollection<Document> notificationsCollection;
+    private final MongoCollection<Document> countersCollection;
+    private final MongoCollection<Document> archiveCollection;
+    private final Map<String, CachedCount> unread = new ConcurrentHashMap<>();
+    private NotificationWriter writer;
+
+    NotificationInbox(MongoCollection<Document> notificationsCollection, MongoCollection<Document> countersCollection,
+                      MongoCollection<Document> archiveCollection) {
+        this.notificationsCollection = notificationsCollection;
+        this.countersCollection = countersCollection;
+        this.archiveCollection = archiveCollection;
+    }
+
+    /**
+     * Send single notifications through a write-behind buffer (see
+     * NotificationWriter) instead of inserting each on the caller's thread
+     */
+    void startWriter(int batchSize, long flushMillis, int capacity, long offerTimeoutMillis) {
+        writer = new NotificationWriter(notificationsCollection, countersCollection,
+            usernames -> unread.keySet().removeAll(usernames), batchSize, flushMillis, capacity, offerTimeoutMillis);
+    }
+
+    void stopWriter(long drainMillis) {
+        if (writer != null) writer.shutdown(drainMillis);
+    }
+
+    static Document notification(String username, String type, String message) {
+        return new Document()
+            .append("_id", new ObjectId())
+            .append("username", username)
+            .append("message", message)
+            .append("timestamp", LocalDateTime.now().toString())
+            .append("read", false)
+            .append("type", type);
+    }
+
+    void deliver(String username, String type, String message) {
+        Document notification = notification(username, type, message);
+        if (writer != null) {
+            writer.submit(notification);
+            return;
+        }
+        notificationsCollection.insertOne(notification);
+        adjust(username, 1);
+    }
+
+    /**
+     * Insert notifications inside the caller's transaction and count them
+     * as unread. Cached counts for the recipients are dropped, since the
+     * transaction may still roll back.
+     */
+    void deliverAll(TransactionRunner.TransactionContext tx, List<Document> notifications) {
+        if (notifications.isEmpty()) return;
+        notificationsCollection.insertMany(tx.session(), notifications);
+        Map<String, Integer> perUser = new HashMap<>();
+        List<Object> ids = new ArrayList<>(notifications.size());
+        for (Document notification : notifications) {
+            perUser.merge(notification.getString("username"), 1, Integer::sum);
+            ids.add(notification.get("_id"));
+        }
+        countersCollection.bulkWrite(tx.session(), counterUpdates(perUser, 1), new BulkWriteOptions().ordered(false));
+        tx.onRollback(() -> {
+            notificationsCollection.deleteMany(tx.session(), Filters.in("_id", ids));
+            countersCollection.bulkWrite(tx.session(), counterUpdates(perUser, -1), new BulkWriteOptions().ordered(false));
+        });
+        unread.keySet().removeAll(perUser.keySet());
+    }
+
+    /**
+     * One page of an inbox, newest first
+     * @param before _id of the last row of the previous page, or null for the first page
+     */
+    List<Document> page(String username, String type, ObjectId before, int limit) {
+        Bson filter = Filters.and(Filters.eq("username", username), Filters.eq("type", type));
+        if (before != null) filter = Filters.and(filter, Filters.lt("_id", before));
+        return notificationsCollection.find(filter).sort(Sorts.descending("_id")).limit(limit)
+            .into(new ArrayList<>(limit));
+    }
+
+    int unreadCount(String username) {
+        CachedCount cached = unread.get(username);
+        if (cached != null && System.currentTimeMillis() - cached.loadedAt < CACHE_MILLIS) {
+            return cached.count;
+        }
+        Document counter = countersCollection.find(Filters.eq("_id", username)).first();
+        int count = counter == null ? 0 : Math.max(0, counter.getInteger("unread", 0));
+        unread.put(username, new CachedCount(count));
+        return count;
+    }
+
+    /**
+     * Take an unread count seen elsewhere (see NotificationFeed)
+     */
+    void cacheUnread(String username, int count) {
+        unread.put(username, new CachedCount(count));
+    }
+
+    boolean markRead(String username, ObjectId id) {
+        boolean changed = notificationsCollection.updateOne(
+            Filters.and(Filters.eq("_id", id), Filters.eq("username", username), Filters.eq("read", false)),
+            Updates.set("read", true)).getModifiedCount() > 0;
+        if (changed) adjust(username, -1);
+        return changed;
+    }
+
+    void markAllRead(String username) {
+        long changed = notificationsCollection.updateMany(
+            Filters.and(Filters.eq("username", username), Filters.eq("read", false)),
+            Updates.set("read", true)).getModifiedCount();
+        if (changed > 0) adjust(username, (int) -changed);
+    }
+
+    boolean delete(String username, ObjectId id) {
+        Document deleted = notificationsCollection.findOneAndDelete(
+            Filters.and(Filters.eq("_id", id), Filters.eq("username", username)));
+        if (deleted == null) return false;
+        if (!deleted.getBoolean("read", false)) adjust(username, -1);
+        return true;
+    }
+
+    // ==========================================================
+    // == RETENTION ==
+    // ==========================================================
+
+    /**
+     * Remove notifications created before cutoff, oldest first, batchSize at
+     * a time, copying them to the archive first if archive is set. Unread
+     * ones come off their owners' counters: they are deleted per user with
+     * read:false in the filter, so the decrement is exactly what was deleted
+     * even if the user reads one at the same moment.
+     * @return how many notifications were removed
+     */
+    long prune(Date cutoff, boolean archive, int batchSize) {
+        ObjectId bound = idAt(cutoff);
+        long removed = 0;
+        while (true) {
+            List<Document> batch = notificationsCollection.find(Filters.lt("_id", bound))
+                .sort(Sorts.ascending("_id")).limit(batchSize).into(new ArrayList<>(batchSize));
+            if (batch.isEmpty()) break;
+            if (archive) copyToArchive(batch);
+
+            List<Object> ids = new ArrayList<>(batch.size());
+            Map<String, List<Object>> unreadIds = new HashMap<>();
+            for (Document notification : batch) {
+                ids.add(notification.get("_id"));
+                if (!notification.getBoolean("read", false)) {
+                    unreadIds.computeIfAbsent(notification.getString("username"), name -> new ArrayList<>())
+                        .add(notification.get("_id"));
+                }
+            }
+            for (Map.Entry<String, List<Object>> entry : unreadIds.entrySet()) {
+                long deleted = notificationsCollection.deleteMany(Filters.and(
+                    Filters.in("_id", entry.getValue()), Filters.eq("read", false))).getDeletedCount();
+                if (deleted > 0) adjust(entry.getKey(), (int) -deleted);
+                removed += deleted;
+            }
+            removed += notificationsCollection.deleteMany(Filters.in("_id", ids)).getDeletedCount();
+            if (batch.size() < batchSize) break;
+        }
+        return removed;
+    }
+
+    private void copyToArchive(List<Document> batch) {
+        Date archivedAt = new Date();
+        List<Document> copies = new ArrayList<>(batch.size());
+        for (Document notification : batch) {
+            copies.add(new Document(notification).append("archivedAt", archivedAt));
+        }
+        try {
+            archiveCollection.insertMany(copies, new InsertManyOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            // Copies left by an interrupted earlier run are fine; anything else is not
+            for (BulkWriteError error : e.getWriteErrors()) {
+                if (error.getCategory() != ErrorCategory.DUPLICATE_KEY) throw e;
+            }
+        }
+    }
+
+    /**
+     * The smallest ObjectId that could have been created at time
+     */
+    private static ObjectId idAt(Date time) {
+        return new ObjectId(String.format("%08x%016x", time.getTime() / 1000, 0));
+    }
+
+    private void adjust(String username, int delta) {
+        Document counter = countersCollection.findOneAndUpdate(Filters.eq("_id", username), Updates.inc("unread", delta),
+            new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER));
+        unread.put(username, new CachedCount(Math.max(0, counter.getInteger("unread", 0))));
+    }
+
+    private static List<WriteModel<Document>> counterUpdates(Map<String, Integer> perUser, int sign) {
+        List<WriteModel<Document>> updates = new ArrayList<>(perUser.size());
+        for (Map.Entry<String, Integer> entry : perUser.entrySet()) {
+            updates.add(new UpdateOneModel<>(Filters.eq("_id", entry.getKey()),
+                Updates.inc("unread", sign * entry.getValue()), new UpdateOptions().upsert(true)));
+        }
+        return updates;
+    }
+
+    /**
+     * Recount every user's unread notifications from scratch. Run while
+     * nothing else is writing notifications (at startup, by migration).
+     */
+    static void rebuildCounters(MongoDatabase db) {
+        db.getCollection(COUNTERS).deleteMany(new Document());
+        db.getCollection("notifications").aggregate(Arrays.asList(
+            new Document("$match", new Document("read", false)),
+            new Document("$group", new Document("_id", "$username").append("unread", new Document("$sum", 1))),
+            new Document("$merge", new Document("into", COUNTERS)
+                .append("whenMatched", "replace")
+                .append("whenNotMatched", "insert"))
+        )).toCollection();
+    }
+
+    private static final class CachedCount {
+        final int count;
+        final long loadedAt = System.currentTimeMillis();
+
+        CachedCount(int count) {
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.eventbooking.database;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Notification Writer - write-behind buffer for single notifications.
+ *
+ * submit() only queues the notification. One writer thread takes up to
+ * batchSize of them, waiting at most flushMillis after the first, and stores
+ * them with one insertMany and one bulkWrite of unread counter $incs, so a
+ * booking or cancellation never waits for a notification insert.
+ *
+ * If MongoDB is unreachable the batch is retried with exponential backoff
+ * while new notifications keep queuing, up to capacity; past that, submit()
+ * waits up to offerTimeoutMillis and then drops the notification (logged and
+ * counted). Notification _ids are assigned up front, so a retry after a
+ * half-applied insert skips the copies already stored instead of
+ * duplicating them, and each one is counted as unread exactly once.
+ */
+class NotificationWriter {
+    private static final long BASE_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private final MongoCollection<Document> notificationsCollection;
+    private final MongoCollection<Document> countersCollection;
+    private final Consumer<Set<String>> onWritten;
+    private final BlockingQueue<Document> queue;
+    private final int batchSize;
+    private final long flushMillis;
+    private final long offerTimeoutMillis;
+    private final Thread writer;
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private volatile boolean running = true;
+    private volatile long giveUpAt = Long.MAX_VALUE;
+
+    /**
+     * @param onWritten told which users' unread counters a batch moved
+     */
+    NotificationWriter(MongoCollection<Document> notificationsCollection, MongoCollection<Document> countersCollection,
+                       Consumer<Set<String>> onWritten, int batchSize, long flushMillis, int capacity,
+                       long offerTimeoutMillis) {
+        this.notificationsCollection = notificationsCollection;
+        this.countersCollection = countersCollection;
+        this.onWritten = onWritten;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushMillis = flushMillis;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.writer = new Thread(this::run, "notification-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queue a notification (with its _id already set) for the next batch
+     * @return false if the buffer stayed full and the notification was dropped
+     */
+    boolean submit(Document notification) {
+        try {
+            if (running && queue.offer(notification, offerTimeoutMillis, TimeUnit.MILLISECONDS)) return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        droppedCount.incrementAndGet();
+        System.err.println("[DB ERROR] Notification buffer full, dropped notification for "
+            + notification.getString("username"));
+        return false;
+    }
+
+    /**
+     * Stop accepting notifications and write out what is queued, giving up
+     * on the rest after drainMillis
+     */
+    void shutdown(long drainMillis) {
+        running = false;
+        giveUpAt = System.currentTimeMillis() + drainMillis;
+        try {
+            writer.join(drainMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int unwritten = queue.size();
+        System.out.println("[DB] Notification writer stopped: " + writtenCount.get() + " written, "
+            + (droppedCount.get() + unwritten) + " dropped");
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            try {
+                Document first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                List<Document> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                long flushAt = System.currentTimeMillis() + flushMillis;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long wait = flushAt - System.currentTimeMillis();
+                    if (batch.size() == batchSize || wait <= 0 || !running) break;
+                    Document next = queue.poll(wait, TimeUnit.MILLISECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("[DB ERROR] Notification writer: " + e.getMessage());
+            }
+        }
+    }
+
+    private void write(List<Document> batch) throws InterruptedException {
+        Map<String, Integer> unreadByUser = new HashMap<>();
+        List<Document> pending = batch;
+        long backoff = BASE_BACKOFF_MILLIS;
+        while (!pending.isEmpty()) {
+            try {
+                notificationsCollection.insertMany(pending, new InsertManyOptions().ordered(false));
+                countUnread(pending, unreadByUser);
+                pending = List.of();
+            } catch (MongoBulkWriteException e) {
+                // Per-document errors: a duplicate was stored by an earlier attempt,
+                // anything else would fail again and is dropped
+                Set<Integer> rejected = new HashSet<>();
+                for (BulkWriteError error : e.getWriteErrors()) {
+                    if (error.getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                        rejected.add(error.getIndex());
+                        System.err.println("[DB ERROR] Notification rejected: " + error.getMessage());
+                    }
+                }
+                List<Document> stored = new ArrayList<>();
+                for (int i = 0; i < pending.size(); i++) {
+                    if (!rejected.contains(i)) stored.add(pending.get(i));
+                }
+                countUnread(stored, unreadByUser);
+                droppedCount.addAndGet(rejected.size());
+                pending = List.of();
+            } catch (MongoException e) {
+                if (!backOff(e, backoff, pending.size())) return;
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+        for (int stored : unreadByUser.values()) writtenCount.addAndGet(stored);
+
+        List<WriteModel<Document>> increments = new ArrayList<>(unreadByUser.size());
+        for (Map.Entry<String, Integer> entry : unreadByUser.entrySet()) {
+            increments.add(new UpdateOneModel<>(Filters.eq("_id", entry.getKey()),
+                Updates.inc("unread", entry.getValue()), new UpdateOptions().upsert(true)));
+        }
+        backoff = BASE_BACKOFF_MILLIS;
+        while (!increments.isEmpty()) {
+            try {
+                countersCollection.bulkWrite(increments, new BulkWriteOptions().ordered(false));
+                break;
+            } catch (MongoException e) {
+                // A lost counter update only skews the badge; rebuildUnreadCounters repairs it
+                if (!backOff(e, backoff, 0)) return;
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+        onWritten.accept(unreadByUser.keySet());
+    }
+
+    /**
+     * Wait before retrying, unless shutting down past the drain deadline
+     * @return false to give up on the batch
+     */
+    private boolean backOff(MongoException e, long backoff, int unwritten) throws InterruptedException {
+        if (System.currentTimeMillis() + backoff > giveUpAt) {
+            droppedCount.addAndGet(unwritten);
+            System.err.println("[DB ERROR] Notification writer giving up at shutdown: " + e.getMessage());
+            return false;
+        }
+        System.err.println("[DB ERROR] Notification batch not written, retrying in " + backoff + "ms: "
+            + e.getMessage());
+        Thread.sleep(backoff);
+        return true;
+    }
+
+    private static void countUnread(List<Document> notifications, Map<String, Integer> unreadByUser) {
+        for (Document notification : notifications) {
+            unreadByUser.merge(notification.getString("username"), 1, Integer::sum);
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package com.eventbooking.database;
+
+import com.eventbooking.AppConfig;
+import com.eventbooking.database.codecs.BsonDates;
+import com.eventbooking.database.codecs.ModelCodecs;
+import com.eventbooking.models.SeatMap;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Schema Manager - index bootstrap and one-time data migrations.
+ *
+ * Indexes are declared here together with the queries they serve and are
+ * created (or verified) on every startup; createIndex is a no-op when an
+ * identical index already exists. Migrations run once each and are recorded
+ * in the "schema_migrations" collection.
+ */
+public class SchemaManager {
+    private static final int MIGRATION_BATCH_SIZE = 1000;
+    private static final int INDEX_OPTIONS_CONFLICT = 85;
+
+    private final MongoDatabase database;
+    private final List<IndexSpec> indexes = new ArrayList<>();
+    private final Map<String, Migration> migrations = new LinkedHashMap<>();
+
+    public SchemaManager(MongoDatabase database) {
+        this.database = database;
+        declareIndexes();
+        declareMigrations();
+    }
+
+    /**
+     * Create/verify all indexes, then apply pending migrations.
+     */
+    public void bootstrap() {
+        System.out.println("[SCHEMA] Verifying indexes...");
+        for (IndexSpec spec : indexes) {
+            ensureIndex(spec);
+        }
+        runMigrations();
+        System.out.println("[SCHEMA] Schema is up to date.");
+    }
+
+    private void declareIndexes() {
+        // users
+        index("users", Indexes.ascending("username"), true,
+            "registerUser, authenticateUser, getUserDetails, every per-user $inc");
+        index("users", Indexes.ascending("email"), false,
+            "isEmailInUse");
+        index("users", Indexes.compoundIndex(Indexes.ascending("role"), Indexes.descending("ticketsBought")), false,
+            "all-time leaderboard load (role filter + ticketsBought sort)");
+
+        // events
+        index("events", Indexes.ascending("id"), true,
+            "getEventById, updateEvent, deleteEvent, ID seeding");
+        index("events", Indexes.ascending("type"), false,
+            "getUniqueEventTypes");
+
+        // bookings
+        index("bookings", Indexes.ascending("id"), true,
+            "getBookingById, cancelBooking, partiallyCancelBooking, ID seeding");
+        index("bookings", Indexes.ascending("username"), false,
+            "getUserBookings, calculateTotalSpent");
+        index("bookings", Indexes.compoundIndex(Indexes.ascending("eventId"), Indexes.ascending("username"),
+                Indexes.ascending("cancelled")), false,
+            "getBookingsForEvent, getBookedSeatsForUser");
+        index("bookings", Indexes.compoundIndex(Indexes.ascending("eventDate"), Indexes.ascending("cancelled")), false,
+            "getBookingsForEventsOnDate, claimRemindersForDate, streamReminderTargets (event-day reminders)");
+        index("bookings", Indexes.ascending("timestamp"), false,
+            "daily and monthly leaderboard loads");
+        index("bookings", Indexes.compoundIndex(Indexes.ascending("eventId"), Indexes.ascending("id")), false,
+            "getBookingsPage (bulk event job keyset pages)");
+
+        // seatmaps
+        index("seatmaps", Indexes.ascending("eventId"), true,
+            "getSeatMapForEvent, seat claims and releases");
+        index("seat_holds", Indexes.ascending("expiresAt"), false,
+            "SeatHoldManager sweep of expired holds");
+        index("seat_holds", Indexes.ascending("eventId"), false,
+            "getActiveHoldCount");
+
+        // notifications
+        index("notifications", Indexes.compoundIndex(Indexes.ascending("username"), Indexes.ascending("type"),
+                Indexes.descending("_id")), false,
+            "getUserNotifications, getAdminNotifications (keyset pages, newest first)");
+        index("notifications", Indexes.compoundIndex(Indexes.ascending("username"), Indexes.ascending("read")), false,
+            "markAllNotificationsAsRead");
+        int archiveDays = AppConfig.getInstance().getInt("notifications.archiveDays", 365);
+        if (archiveDays > 0) {
+            ttlIndex(NotificationInbox.ARCHIVE, "archivedAt", TimeUnit.DAYS.toSeconds(archiveDays),
+                "notifications.archiveDays retention of archived notifications");
+        }
+
+        // analytics
+        index("analytics_events", Indexes.descending("revenue"), false,
+            "getTopEventsByRevenue");
+
+        // jobs
+        index("jobs", Indexes.ascending("status"), false,
+            "getUnfinishedJobs (resume on startup)");
+
+        // credit ledger
+        index("credit_transactions", Indexes.ascending("idempotencyKey"), true,
+            "post (duplicate postings fail), opening-balance $merge");
+        index("credit_transactions", Indexes.compoundIndex(Indexes.ascending("username"),
+                Indexes.descending("timestamp")), false,
+            "getCreditHistory, rebuildCreditBalances");
+
+        // credit awards
+        index("credit_award_runs", Indexes.ascending("status"), false,
+            "getUnfinishedAwardRuns (resume on startup)");
+        index("credit_award_entries", Indexes.compoundIndex(Indexes.ascending("runId"), Indexes.ascending("rank")), true,
+            "getAwardEntries (award chunks in rank order)");
+    }
+
+    private void declareMigrations() {
+        migrations.put("001-backfill-booking-event-date", this::backfillBookingEventDate);
+        migrations.put("002-native-bson-dates", this::convertDateStringsToBsonDates);
+        migrations.put("003-backfill-sales-analytics", this::backfillSalesAnalytics);
+        migrations.put("004-backfill-user-total-spent", this::backfillUserTotalSpent);
+        migrations.put("005-open-credit-ledger", this::openCreditLedger);
+        migrations.put("006-compact-seat-maps", this::compactSeatMaps);
+        migrations.put("007-notification-unread-counters", this::countUnreadNotifications);
+    }
+
+    private void index(String collection, Bson keys, boolean unique, String serves) {
+        indexes.add(new IndexSpec(collection, keys, unique, null, serves));
+    }
+
+    /**
+     * A TTL index: documents are deleted ttlSeconds after the date in field
+     */
+    private void ttlIndex(String collection, String field, long ttlSeconds, String serves) {
+        indexes.add(new IndexSpec(collection, Indexes.ascending(field), false, ttlSeconds, serves));
+    }
+
+    private void ensureIndex(IndexSpec spec) {
+        try {
+            IndexOptions options = new IndexOptions().unique(spec.unique);
+            if (spec.ttlSeconds != null) options.expireAfter(spec.ttlSeconds, TimeUnit.SECONDS);
+            String name = database.getCollection(spec.collection).createIndex(spec.keys, options);
+            System.out.println("[SCHEMA] " + spec.collection + "." + name + (spec.unique ? " (unique)" : "")
+                + (spec.ttlSeconds != null ? " (ttl " + spec.ttlSeconds + "s)" : "")
+                + " -> serves: " + spec.serves);
+        } catch (MongoCommandException e) {
+            if (e.getErrorCode() == INDEX_OPTIONS_CONFLICT && spec.ttlSeconds != null) {
+                // The retention setting changed since the index was built
+                database.runCommand(new Document("collMod", spec.collection)
+                    .append("index", new Document("keyPattern", spec.keys.toBsonDocument())
+                        .append("expireAfterSeconds", spec.ttlSeconds)));
+                System.out.println("[SCHEMA] " + spec.collection + " TTL changed to " + spec.ttlSeconds + "s");
+                return;
+            }
+            System.err.println("[SCHEMA WARNING] Could not create index on " + spec.collection + " "
+                + spec.keys.toBsonDocument().toJson() + ": " + e.getMessage());
+        } catch (MongoException e) {
+            // Usually duplicate values blocking a unique index; the app still works, just slower.
+            System.err.println("[SCHEMA WARNING] Could not create index on " + spec.collection + " "
+                + spec.keys.toBsonDocument().toJson() + ": " + e.getMessage());
+        }
+    }
+
+    private void runMigrations() {
+        MongoCollection<Document> applied = database.getCollection("schema_migrations");
+        for (Map.Entry<String, Migration> entry : migrations.entrySet()) {
+            String id = entry.getKey();
+            if (applied.find(Filters.eq("_id", id)).first() != null) continue;
+
+            System.out.println("[SCHEMA] Applying migration " + id + "...");
+            try {
+                entry.getValue().apply(database);
+                applied.insertOne(new Document("_id", id).append("appliedAt", new Date()));
+                System.out.println("[SCHEMA] Migration " + id + " applied.");
+            } catch (Exception e) {
+                System.err.println("[SCHEMA ERROR] Migration " + id + " failed, will retry on next startup: " + e.getMessage());
+                return; // later migrations may depend on this one
+            }
+        }
+    }
+
+    // ==========================================================
+    // == MIGRATIONS ==
+    // ==========================================================
+
+    /**
+     * Older bookings were saved without eventDate, so the event-day reminder
+     * index cannot find them. Copy the date over from the event.
+     */
+    private void backfillBookingEventDate(MongoDatabase db) {
+        MongoCollection<Document> bookings = db.getCollection("bookings");
+        MongoCollection<Document> events = db.getCollection("events");
+        List<Integer> eventIds = bookings.distinct("eventId", Filters.exists("eventDate", false), Integer.class)
+            .into(new ArrayList<>());
+        for (Integer eventId : eventIds) {
+            Document event = events.find(Filters.eq("id", eventId)).first();
+            if (event == null || event.get("date") == null) continue;
+            bookings.updateMany(Filters.and(Filters.eq("eventId", eventId), Filters.exists("eventDate", false)),
+                Updates.set("eventDate", event.get("date")));
+        }
+    }
+
+    /**
+     * Dates used to be stored as ISO strings and re-parsed on every read.
+     * Rewrite them as native BSON dates, in batches, so the codecs and
+     * range queries can use them directly.
+     */
+    private void convertDateStringsToBsonDates(MongoDatabase db) {
+        Function<Object, Object> calendarDate = value -> BsonDates.fromLocalDate(BsonDates.toLocalDate(value));
+        Function<Object, Object> timestamp = value -> BsonDates.fromLocalDateTime(BsonDates.toLocalDateTime(value));
+
+        convertStringField(db.getCollection("events"), "date", calendarDate);
+        convertStringField(db.getCollection("events"), "originalDate", calendarDate);
+        convertStringField(db.getCollection("bookings"), "eventDate", calendarDate);
+        convertStringField(db.getCollection("bookings"), "timestamp", timestamp);
+        convertStringField(db.getCollection("bookings"), "refundDate", timestamp);
+    }
+
+    /**
+     * Sales reports now read materialised counters. Build them once from
+     * the existing bookings; the write paths keep them current from here on.
+     */
+    private void backfillSalesAnalytics(MongoDatabase db) {
+        new AnalyticsStore(db).rebuild();
+    }
+
+    /**
+     * The all-time leaderboard reads totalSpent from the user instead of
+     * summing the user's bookings. Compute it once for existing users.
+     */
+    private void backfillUserTotalSpent(MongoDatabase db) {
+        db.getCollection("bookings").aggregate(Arrays.asList(
+            new Document("$match", new Document("cancelled", new Document("$ne", true))),
+            new Document("$group", new Document("_id", "$username")
+                .append("totalSpent", new Document("$sum", "$totalPrice"))),
+            new Document("$project", new Document("_id", 0).append("username", "$_id").append("totalSpent", 1)),
+            new Document("$merge", new Document("into", "users")
+                .append("on", "username")
+                .append("whenMatched", "merge")
+                .append("whenNotMatched", "discard"))
+        )).toCollection();
+        db.getCollection("users").updateMany(Filters.exists("totalSpent", false), Updates.set("totalSpent", 0.0));
+    }
+
+    /**
+     * Balances now live in the credit ledger. Carry each existing balance
+     * over as an opening entry so the ledger sums to what users hold.
+     */
+    private void openCreditLedger(MongoDatabase db) {
+        CreditLedger.open(db);
+    }
+
+    /**
+     * Seat maps used to hold one sub-document per seat. Rewrite them as
+     * bitsets; SeatMapCodec still reads the old form, so this is a one-pass
+     * decode and re-encode of every map that has a "seats" array.
+     */
+    private void compactSeatMaps(MongoDatabase db) {
+        MongoCollection<SeatMap> seatMaps = db.withCodecRegistry(ModelCodecs.registry())
+            .getCollection("seatmaps", SeatMap.class);
+        MongoCollection<Document> rawSeatMaps = db.getCollection("seatmaps");
+        List<WriteModel<SeatMap>> batch = new ArrayList<>();
+        int converted = 0;
+        try (MongoCursor<Document> ids = rawSeatMaps.find(Filters.exists("seats"))
+                .projection(Projections.include("_id")).batchSize(MIGRATION_BATCH_SIZE).iterator()) {
+            while (ids.hasNext()) {
+                Object id = ids.next().get("_id");
+                SeatMap seatMap = seatMaps.find(Filters.eq("_id", id)).first();
+                if (seatMap == null) continue;
+                batch.add(new ReplaceOneModel<>(Filters.eq("_id", id), seatMap));
+                if (batch.size() == MIGRATION_BATCH_SIZE) {
+                    seatMaps.bulkWrite(batch);
+                    converted += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            seatMaps.bulkWrite(batch);
+            converted += batch.size();
+        }
+        System.out.println("[SCHEMA] seatmaps: compacted " + converted + " seat map(s) to bitsets");
+    }
+
+    /**
+     * Unread counts are now kept as counters instead of being counted on
+     * every refresh. Count the existing unread notifications once.
+     */
+    private void countUnreadNotifications(MongoDatabase db) {
+        NotificationInbox.rebuildCounters(db);
+    }
+
+    private void convertStringField(MongoCollection<Document> collection, String field,
+                                    Function<Object, Object> converter) {
+        Bson filter = Filters.type(field, "string");
+        List<WriteModel<Document>> batch = new ArrayList<>();
+        int converted = 0;
+        try (MongoCursor<Document> cursor = collection.find(filter)
+                .projection(Projections.include(field)).batchSize(MIGRATION_BATCH_SIZE).iterator()) {
+            while (cursor.hasNext()) {
+                Document doc = cursor.next();
+                batch.add(new UpdateOneModel<>(Filters.eq("_id", doc.get("_id")),
+                    Updates.set(field, converter.apply(doc.get(field)))));
+                if (batch.size() == MIGRATION_BATCH_SIZE) {
+                    collection.bulkWrite(batch);
+                    converted += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            collection.bulkWrite(batch);
+            converted += batch.size();
+        }
+        System.out.println("[SCHEMA] " + collection.getNamespace().getCollectionName() + "." + field
+            + ": converted " + converted + " value(s) to BSON dates");
+    }
+
+    /**
+     * A single data migration step
+     */
+    @FunctionalInterface
+    interface Migration {
+        void apply(MongoDatabase database);
+    }
+
+    private static class IndexSpec {
+        final String collection;
+        final Bson keys;
+        final boolean unique;
+        final Long ttlSeconds;
+        final String serves;
+
+        IndexSpec(String collection, Bson keys, boolean unique, Long ttlSeconds, String serves) {
+            this.collection = collection;
+            this.keys = keys;
+            this.unique = unique;
+            this.ttlSeconds = ttlSeconds;
+            this.serves = serves;
+        }
+    }
+}
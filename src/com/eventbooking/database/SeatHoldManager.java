@@ -0,0 +1,203 @@
+package com.eventbooking.database;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Seat Hold Manager - short holds on seats while the buyer pays.
+ *
+ * A hold takes its seats out of the pool (held bits on the seat map and
+ * seatsAvailable) and is recorded in seat_holds with its expiry. A paid hold
+ * is converted into a booking in the same transaction that inserts the
+ * booking; a failed, abandoned or expired one is released. Whoever deletes
+ * the hold document does the conversion or release, so each hold ends
+ * exactly once however many threads or instances race for it.
+ *
+ * Expiry runs on a timing wheel of WHEEL_SLOTS one-second slots; a hold more
+ * than one turn away waits out the extra rounds in its slot, and each tick
+ * only looks at one slot. A sweep of seat_holds by expiresAt every
+ * SWEEP_SECONDS releases holds left behind by a crashed or another instance.
+ */
+class SeatHoldManager {
+    static final String COLLECTION = "seat_holds";
+    private static final int WHEEL_SLOTS = 512;
+    private static final int SWEEP_SECONDS = 60;
+
+    private final MongoCollection<Document> holdsCollection;
+    private final SeatReservationEngine engine;
+    private final TransactionRunner transactionRunner;
+    private final long ttlMillis;
+    private final List<Queue<Expiry>> wheel = new ArrayList<>(WHEEL_SLOTS);
+    private final AtomicLong currentTick = new AtomicLong();
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "seat-hold-wheel");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    SeatHoldManager(MongoCollection<Document> holdsCollection, SeatReservationEngine engine,
+                    TransactionRunner transactionRunner, int ttlSeconds) {
+        this.holdsCollection = holdsCollection;
+        this.engine = engine;
+        this.transactionRunner = transactionRunner;
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        for (int i = 0; i < WHEEL_SLOTS; i++) {
+            wheel.add(new ConcurrentLinkedQueue<>());
+        }
+        ticker.scheduleAtFixedRate(this::tick, 1, 1, TimeUnit.SECONDS);
+        ticker.scheduleWithFixedDelay(this::sweep, 5, SWEEP_SECONDS, TimeUnit.SECONDS);
+    }
+
+    long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    /**
+     * Hold all of seatIds for username, or none of them.
+     * @return the hold document, or null if any seat is taken or held
+     */
+    Document place(String username, int eventId, List<String> seatIds) {
+        String holdId = UUID.randomUUID().toString();
+        Date expiresAt = new Date(System.currentTimeMillis() + ttlMillis);
+        Document hold = transactionRunner.run("hold " + holdId, tx -> {
+            SeatReservationEngine.SeatClaimResult result = engine.holdSeats(tx.session(), eventId, seatIds);
+            if (!result.isSuccess()) {
+                throw tx.abort("Seat hold failed: " + result.getMessage() + " " + result.getConflictingSeats());
+            }
+            List<String> held = result.getClaimedSeats();
+            tx.onRollback(() -> engine.releaseHeldSeats(tx.session(), eventId, held));
+            Document doc = new Document("_id", holdId)
+                .append("eventId", eventId)
+                .append("username", username)
+                .append("seatIds", held)
+                .append("createdAt", new Date())
+                .append("expiresAt", expiresAt);
+            holdsCollection.insertOne(tx.session(), doc);
+            return doc;
+        });
+        if (hold != null) {
+            schedule(holdId, expiresAt.getTime());
+            System.out.println("[HOLD] " + username + " holds " + seatIds + " for event " + eventId
+                + " until " + expiresAt);
+        }
+        return hold;
+    }
+
+    Document get(String holdId) {
+        return holdsCollection.find(Filters.eq("_id", holdId)).first();
+    }
+
+    /**
+     * Take the hold for a conversion. Joins the caller's transaction.
+     * @return false if the hold has already been released or converted
+     */
+    boolean consume(TransactionRunner.TransactionContext tx, Document hold) {
+        if (holdsCollection.deleteOne(tx.session(), Filters.eq("_id", hold.get("_id"))).getDeletedCount() == 0) {
+            return false;
+        }
+        tx.onRollback(() -> holdsCollection.insertOne(tx.session(), hold));
+        return true;
+    }
+
+    /**
+     * Put a hold's seats back in the pool
+     * @return false if the hold had already ended
+     */
+    boolean release(String holdId, String reason) {
+        Document released = transactionRunner.run("release hold " + holdId, tx -> {
+            Document hold = holdsCollection.findOneAndDelete(tx.session(), Filters.eq("_id", holdId));
+            if (hold == null) return null;
+            tx.onRollback(() -> holdsCollection.insertOne(tx.session(), hold));
+            engine.releaseHeldSeats(tx.session(), hold.getInteger("eventId"), hold.getList("seatIds", String.class));
+            return hold;
+        });
+        if (released == null) return false;
+        EventCache.getInstance().invalidateSeats(released.getInteger("eventId"));
+        System.out.println("[HOLD] Released " + released.get("seatIds") + " for event "
+            + released.get("eventId") + " (" + reason + ")");
+        return true;
+    }
+
+    /**
+     * Holds not yet converted or released, i.e. checkouts in progress
+     */
+    long activeHolds(int eventId) {
+        return holdsCollection.countDocuments(Filters.eq("eventId", eventId));
+    }
+
+    // ==========================================================
+    // == TIMING WHEEL ==
+    // ==========================================================
+
+    private void schedule(String holdId, long expiresAtMillis) {
+        long ticks = Math.max(1, (expiresAtMillis - System.currentTimeMillis() + 999) / 1000);
+        long now = currentTick.get();
+        wheel.get((int) ((now + ticks) % WHEEL_SLOTS)).add(new Expiry(holdId, expiresAtMillis, (ticks - 1) / WHEEL_SLOTS));
+    }
+
+    private void tick() {
+        Queue<Expiry> slot = wheel.get((int) (currentTick.incrementAndGet() % WHEEL_SLOTS));
+        List<Expiry> due = new ArrayList<>();
+        List<Expiry> later = new ArrayList<>();
+        for (Expiry expiry; (expiry = slot.poll()) != null; ) {
+            if (expiry.rounds > 0) {
+                expiry.rounds--;
+                later.add(expiry);
+            } else {
+                due.add(expiry);
+            }
+        }
+        slot.addAll(later);
+        for (Expiry expiry : due) {
+            try {
+                if (expiry.expiresAtMillis > System.currentTimeMillis()) {
+                    schedule(expiry.holdId, expiry.expiresAtMillis);
+                } else {
+                    release(expiry.holdId, "expired");
+                }
+            } catch (Exception e) {
+                System.err.println("[HOLD ERROR] Could not expire hold " + expiry.holdId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Release expired holds this process has no wheel entry for
+     */
+    private void sweep() {
+        try (MongoCursor<Document> expired = holdsCollection.find(Filters.lt("expiresAt", new Date()))
+                .projection(Projections.include("_id")).iterator()) {
+            while (expired.hasNext()) {
+                release(expired.next().getString("_id"), "expired, found by sweep");
+            }
+        } catch (Exception e) {
+            System.err.println("[HOLD ERROR] Hold sweep failed: " + e.getMessage());
+        }
+    }
+
+    private static final class Expiry {
+        final String holdId;
+        final long expiresAtMillis;
+        long rounds;
+
+        Expiry(String holdId, long expiresAtMillis, long rounds) {
+            this.holdId = holdId;
+            this.expiresAtMillis = expiresAtMillis;
+            this.rounds = rounds;
+        }
+    }
+}
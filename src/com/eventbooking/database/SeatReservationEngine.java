@@ -0,0 +1,356 @@
+package com.eventbooking.database;
+
+import com.eventbooking.models.SeatMap;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Seat Reservation Engine - atomic, all-or-nothing seat claims.
+ *
+ * A seat map stores its booked and held seats as bitsets of int64 words
+ * (see SeatMapCodec). A claim or hold is a single conditional update on the
+ * event's seat map document: $bitsAllClear on every word it touches, so it
+ * only matches while all requested seats are free, and $bit to set them, so
+ * two buyers racing for the same seat can never both succeed. The event's
+ * seatsAvailable counter is adjusted with a guarded $inc instead of a
+ * read-modify-write of the whole event.
+ *
+ * Seat ids are turned into bit positions with the map's layout (rows and
+ * seats per row), which never changes after the map is created and is
+ * cached per event. The map does not record who booked a seat; the
+ * booking's seatIds do.
+ *
+ * Every operation takes the caller's ClientSession so it can join a
+ * booking or cancellation transaction.
+ */
+public class SeatReservationEngine {
+    private final MongoCollection<Document> seatMapsCollection;
+    private final MongoCollection<Document> eventsCollection;
+    private final MongoCollection<Document> bookingsCollection;
+    private final Map<Integer, SeatMap> layouts = new ConcurrentHashMap<>();
+
+    public SeatReservationEngine(MongoCollection<Document> seatMapsCollection,
+                                 MongoCollection<Document> eventsCollection,
+                                 MongoCollection<Document> bookingsCollection) {
+        this.seatMapsCollection = seatMapsCollection;
+        this.eventsCollection = eventsCollection;
+        this.bookingsCollection = bookingsCollection;
+    }
+
+    /**
+     * Claim every seat in seatIds for username, or none of them.
+     * @return the outcome, including the exact seats that conflicted on failure
+     */
+    public SeatClaimResult claimSeats(ClientSession session, int eventId, String username, List<String> seatIds) {
+        return take(session, eventId, username, seatIds);
+    }
+
+    /**
+     * Hold every seat in seatIds, or none of them, during checkout: the
+     * seats leave the pool (map and seatsAvailable) but have no owner yet.
+     */
+    public SeatClaimResult holdSeats(ClientSession session, int eventId, List<String> seatIds) {
+        return take(session, eventId, null, seatIds);
+    }
+
+    /**
+     * Turn held seats into booked seats. Fails if any of them is no longer
+     * held; seatsAvailable was already taken by the hold.
+     */
+    public boolean convertHold(ClientSession session, int eventId, List<String> seatIds) {
+        SeatMap layout = layout(session, eventId);
+        if (layout == null) return false;
+        List<Integer> indices = indicesOf(layout, seatIds, new ArrayList<>());
+        List<Bson> filters = new ArrayList<>();
+        List<Bson> updates = new ArrayList<>();
+        filters.add(Filters.eq("eventId", eventId));
+        for (Map.Entry<Integer, Long> word : wordMasks(indices).entrySet()) {
+            filters.add(bitsAll("$bitsAllSet", "held." + word.getKey(), word.getValue()));
+            filters.add(bitsAll("$bitsAllClear", "booked." + word.getKey(), word.getValue()));
+            updates.add(Updates.bitwiseAnd("held." + word.getKey(), ~word.getValue()));
+            updates.add(Updates.bitwiseOr("booked." + word.getKey(), word.getValue()));
+        }
+        return seatMapsCollection.updateOne(session, Filters.and(filters), Updates.combine(updates))
+            .getMatchedCount() > 0;
+    }
+
+    /**
+     * Undo convertHold. Compensating write only.
+     */
+    public void revertToHold(ClientSession session, int eventId, List<String> seatIds) {
+        SeatMap layout = layout(session, eventId);
+        if (layout == null) return;
+        List<Integer> indices = indicesOf(layout, seatIds, new ArrayList<>());
+        List<Bson> updates = new ArrayList<>();
+        for (Map.Entry<Integer, Long> word : wordMasks(indices).entrySet()) {
+            updates.add(Updates.bitwiseOr("held." + word.getKey(), word.getValue()));
+            updates.add(Updates.bitwiseAnd("booked." + word.getKey(), ~word.getValue()));
+        }
+        seatMapsCollection.updateOne(session, Filters.eq("eventId", eventId), Updates.combine(updates));
+    }
+
+    /**
+     * Put held seats back in the pool. The caller must own the hold (see
+     * SeatHoldManager), since held bits carry no owner.
+     */
+    public void releaseHeldSeats(ClientSession session, int eventId, List<String> seatIds) {
+        SeatMap layout = layout(session, eventId);
+        if (layout == null) return;
+        List<Integer> indices = indicesOf(layout, seatIds, new ArrayList<>());
+        if (indices.isEmpty()) return;
+        clearHeldBits(session, eventId, indices);
+        releaseSeatCount(session, eventId, indices.size());
+    }
+
+    /**
+     * Set the booked bits or, with a null username, the held bits of every
+     * requested seat, provided none is booked or held, then take the seats
+     * off seatsAvailable.
+     */
+    private SeatClaimResult take(ClientSession session, int eventId, String username, List<String> seatIds) {
+        List<String> requested = new ArrayList<>(new LinkedHashSet<>(seatIds));
+        if (requested.isEmpty()) {
+            return SeatClaimResult.failed(Collections.emptyList(), "No seats requested");
+        }
+        SeatMap layout = layout(session, eventId);
+        if (layout == null) {
+            return SeatClaimResult.failed(requested, "Event has no seat map");
+        }
+        List<String> unknown = new ArrayList<>();
+        List<Integer> indices = indicesOf(layout, requested, unknown);
+        if (!unknown.isEmpty()) {
+            return SeatClaimResult.failed(unknown, "No such seats");
+        }
+
+        boolean hold = username == null;
+        Map<Integer, Long> masks = wordMasks(indices);
+        List<Bson> filters = new ArrayList<>();
+        List<Bson> updates = new ArrayList<>();
+        filters.add(Filters.eq("eventId", eventId));
+        for (Map.Entry<Integer, Long> word : masks.entrySet()) {
+            filters.add(bitsAll("$bitsAllClear", "booked." + word.getKey(), word.getValue()));
+            filters.add(bitsAll("$bitsAllClear", "held." + word.getKey(), word.getValue()));
+            updates.add(Updates.bitwiseOr((hold ? "held." : "booked.") + word.getKey(), word.getValue()));
+        }
+
+        UpdateResult result = seatMapsCollection.updateOne(session, Filters.and(filters), Updates.combine(updates));
+        if (result.getMatchedCount() == 0) {
+            List<String> conflicts = findConflicts(session, eventId, layout, indices);
+            System.err.println("[SEATS] " + (hold ? "Hold" : "Claim") + " rejected for event " + eventId
+                + " - conflicting seats: " + conflicts);
+            return SeatClaimResult.failed(conflicts, "Seats no longer available");
+        }
+
+        if (!reserveSeatCount(session, eventId, requested.size())) {
+            if (hold) {
+                clearHeldBits(session, eventId, indices);
+            } else {
+                releaseSeatsInMap(session, eventId, username, requested);
+            }
+            System.err.println("[SEATS] " + (hold ? "Hold" : "Claim") + " rolled back for event " + eventId
+                + " - not enough seats left");
+            return SeatClaimResult.failed(Collections.emptyList(), "Event is sold out");
+        }
+        return SeatClaimResult.claimed(requested);
+    }
+
+    /**
+     * Return previously claimed seats to the pool. Only seats still booked by
+     * username are released, so a stale request cannot free someone else's seat.
+     */
+    public void releaseSeats(ClientSession session, int eventId, String username, List<String> seatIds) {
+        if (seatIds == null || seatIds.isEmpty()) return;
+        releaseSeatsInMap(session, eventId, username, seatIds);
+        releaseSeatCount(session, eventId, seatIds.size());
+    }
+
+    /**
+     * Return a booking's seats: the specific seats in the map (if it has
+     * any) and seatCount on the event counter. username may be null to
+     * release regardless of who holds the seats.
+     */
+    public void releaseBookedSeats(ClientSession session, int eventId, String username,
+                                   List<String> seatIds, int seatCount) {
+        if (seatIds != null && !seatIds.isEmpty()) {
+            releaseSeatsInMap(session, eventId, username, seatIds);
+        }
+        if (seatCount > 0) {
+            releaseSeatCount(session, eventId, seatCount);
+        }
+    }
+
+    /**
+     * Decrement seatsAvailable only if enough seats remain.
+     */
+    public boolean reserveSeatCount(ClientSession session, int eventId, int seats) {
+        UpdateResult result = eventsCollection.updateOne(session,
+            Filters.and(Filters.eq("id", eventId), Filters.gte("seatsAvailable", seats)),
+            Updates.inc("seatsAvailable", -seats));
+        return result.getModifiedCount() > 0;
+    }
+
+    /**
+     * Increment seatsAvailable, never past totalSeats.
+     */
+    public void releaseSeatCount(ClientSession session, int eventId, int seats) {
+        eventsCollection.updateOne(session, Filters.eq("id", eventId), Arrays.asList(
+            new Document("$set", new Document("seatsAvailable", new Document("$min", Arrays.asList(
+                new Document("$add", Arrays.asList("$seatsAvailable", seats)),
+                "$totalSeats"))))));
+    }
+
+    /**
+     * Drop the cached layout of a deleted event
+     */
+    public void forget(int eventId) {
+        layouts.remove(eventId);
+    }
+
+    private void releaseSeatsInMap(ClientSession session, int eventId, String username, List<String> seatIds) {
+        SeatMap layout = layout(session, eventId);
+        if (layout == null) return;
+        List<Integer> indices = indicesOf(layout, seatIds, new ArrayList<>());
+        if (username != null) {
+            // Skip seats another attendee's active booking holds: they changed hands
+            Set<String> othersSeats = new HashSet<>();
+            for (Document other : bookingsCollection.find(session, Filters.and(Filters.eq("eventId", eventId),
+                    Filters.ne("cancelled", true), Filters.ne("username", username), Filters.in("seatIds", seatIds)))
+                    .projection(Projections.include("seatIds"))) {
+                othersSeats.addAll(other.getList("seatIds", String.class));
+            }
+            List<Integer> mine = new ArrayList<>();
+            for (int index : indices) {
+                if (!othersSeats.contains(layout.seatIdAt(index))) mine.add(index);
+            }
+            indices = mine;
+        }
+        if (indices.isEmpty()) {
+            System.err.println("[SEATS] Release skipped for event " + eventId + " - seats changed hands: " + seatIds);
+            return;
+        }
+
+        List<Bson> updates = new ArrayList<>();
+        for (Map.Entry<Integer, Long> word : wordMasks(indices).entrySet()) {
+            updates.add(Updates.bitwiseAnd("booked." + word.getKey(), ~word.getValue()));
+        }
+        seatMapsCollection.updateOne(session, Filters.eq("eventId", eventId), Updates.combine(updates));
+    }
+
+    private void clearHeldBits(ClientSession session, int eventId, List<Integer> indices) {
+        List<Bson> updates = new ArrayList<>();
+        for (Map.Entry<Integer, Long> word : wordMasks(indices).entrySet()) {
+            updates.add(Updates.bitwiseAnd("held." + word.getKey(), ~word.getValue()));
+        }
+        seatMapsCollection.updateOne(session, Filters.eq("eventId", eventId), Updates.combine(updates));
+    }
+
+    private List<String> findConflicts(ClientSession session, int eventId, SeatMap layout, List<Integer> indices) {
+        Document doc = seatMapsCollection.find(session, Filters.eq("eventId", eventId))
+            .projection(Projections.include("booked", "held")).first();
+        List<String> conflicts = new ArrayList<>();
+        List<Long> booked = doc == null ? null : doc.getList("booked", Long.class);
+        List<Long> held = doc == null ? null : doc.getList("held", Long.class);
+        for (int index : indices) {
+            int word = index >>> 6;
+            if (booked == null || word >= booked.size() || (booked.get(word) & (1L << index)) != 0
+                    || (held != null && word < held.size() && (held.get(word) & (1L << index)) != 0)) {
+                conflicts.add(layout.seatIdAt(index));
+            }
+        }
+        return conflicts;
+    }
+
+    private SeatMap layout(ClientSession session, int eventId) {
+        SeatMap layout = layouts.get(eventId);
+        if (layout != null) return layout;
+        Document doc = seatMapsCollection.find(session, Filters.eq("eventId", eventId))
+            .projection(Projections.include("rows", "seatsPerRow", "capacity")).first();
+        if (doc == null) return null;
+        List<String> rows = doc.getList("rows", String.class);
+        int seatsPerRow = doc.getInteger("seatsPerRow", 0);
+        layout = new SeatMap(eventId, rows, seatsPerRow, doc.getInteger("capacity", rows.size() * seatsPerRow));
+        layouts.put(eventId, layout);
+        return layout;
+    }
+
+    private static List<Integer> indicesOf(SeatMap layout, List<String> seatIds, List<String> unknown) {
+        List<Integer> indices = new ArrayList<>(seatIds.size());
+        for (String seatId : seatIds) {
+            int index = layout.indexOf(seatId);
+            if (index < 0) unknown.add(seatId);
+            else indices.add(index);
+        }
+        return indices;
+    }
+
+    /**
+     * word number -> bits of the given seats in that word
+     */
+    private static Map<Integer, Long> wordMasks(List<Integer> indices) {
+        Map<Integer, Long> masks = new TreeMap<>();
+        for (int index : indices) {
+            masks.merge(index >>> 6, 1L << index, (a, b) -> a | b);
+        }
+        return masks;
+    }
+
+    /**
+     * $bitsAllClear / $bitsAllSet with a position list, which (unlike a
+     * numeric mask) can name bit 63
+     */
+    private static Bson bitsAll(String operator, String field, long mask) {
+        List<Integer> positions = new ArrayList<>(Long.bitCount(mask));
+        for (long bits = mask; bits != 0; bits &= bits - 1) {
+            positions.add(Long.numberOfTrailingZeros(bits));
+        }
+        return new Document(field, new Document(operator, positions));
+    }
+
+    /**
+     * Outcome of a seat claim
+     */
+    public static class SeatClaimResult {
+        private final boolean success;
+        private final List<String> claimedSeats;
+        private final List<String> conflictingSeats;
+        private final String message;
+
+        private SeatClaimResult(boolean success, List<String> claimedSeats,
+                                List<String> conflictingSeats, String message) {
+            this.success = success;
+            this.claimedSeats = claimedSeats;
+            this.conflictingSeats = conflictingSeats;
+            this.message = message;
+        }
+
+        static SeatClaimResult claimed(List<String> seats) {
+            return new SeatClaimResult(true, seats, Collections.emptyList(), "Seats claimed");
+        }
+
+        static SeatClaimResult failed(List<String> conflicts, String message) {
+            return new SeatClaimResult(false, Collections.emptyList(), conflicts, message);
+        }
+
+        public boolean isSuccess() { return success; }
+        public List<String> getClaimedSeats() { return claimedSeats; }
+        public List<String> getConflictingSeats() { return conflictingSeats; }
+        public String getMessage() { return message; }
+    }
+}
@@ -0,0 +1,179 @@
+package com.eventbooking.database;
+
+import com.mongodb.ReadConcern;
+import com.mongodb.ReadPreference;
+import com.mongodb.TransactionOptions;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoClient;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs multi-document write flows inside a ClientSession transaction.
+ *
+ * withTransaction retries the whole unit on TransientTransactionError and
+ * retries the commit on UnknownTransactionCommitResult, so a flow either
+ * lands completely or not at all. Work units must therefore be free of side
+ * effects other than database writes (no emails, no refunds): do those after
+ * run() returns, or register them with onCommit().
+ *
+ * Transactions need a replica set or sharded cluster. On a standalone server
+ * the unit still runs in a session, without a transaction, and the rollback
+ * actions it registered are run if it fails.
+ */
+public class TransactionRunner {
+    private static final TransactionOptions TRANSACTION_OPTIONS = TransactionOptions.builder()
+        .readPreference(ReadPreference.primary())
+        .readConcern(ReadConcern.SNAPSHOT)
+        .writeConcern(WriteConcern.MAJORITY)
+        .build();
+
+    private final MongoClient client;
+    private volatile Boolean transactionsSupported;
+
+    public TransactionRunner(MongoClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Run a unit of work atomically.
+     * @return the unit's result, or null if it called abort()
+     */
+    public <T> T run(String name, UnitOfWork<T> work) {
+        try (ClientSession session = client.startSession()) {
+            if (supportsTransactions()) {
+                // Only the attempt that committed runs its commit actions
+                List<TransactionContext> attempts = new ArrayList<>(1);
+                try {
+                    T result = session.withTransaction(() -> {
+                        TransactionContext attempt = new TransactionContext(session, true);
+                        attempts.add(attempt);
+                        return work.execute(attempt);
+                    }, TRANSACTION_OPTIONS);
+                    attempts.get(attempts.size() - 1).committed(name);
+                    return result;
+                } catch (AbortException e) {
+                    System.err.println("[TX] " + name + " rolled back: " + e.getMessage());
+                    return null;
+                }
+            }
+
+            TransactionContext context = new TransactionContext(session, false);
+            T result;
+            try {
+                result = work.execute(context);
+            } catch (AbortException e) {
+                System.err.println("[TX] " + name + " aborted: " + e.getMessage());
+                context.compensate(name);
+                return null;
+            } catch (RuntimeException e) {
+                context.compensate(name);
+                throw e;
+            }
+            context.committed(name);
+            return result;
+        }
+    }
+
+    public boolean supportsTransactions() {
+        if (transactionsSupported == null) {
+            try {
+                Document hello = client.getDatabase("admin").runCommand(new Document("hello", 1));
+                transactionsSupported = hello.containsKey("setName") || "isdbgrid".equals(hello.getString("msg"));
+            } catch (Exception e) {
+                transactionsSupported = false;
+            }
+            if (!transactionsSupported) {
+                System.err.println("[TX WARNING] Server is standalone; multi-document flows run without "
+                    + "transactions and rely on compensating writes. Use a replica set for atomic bookings.");
+            }
+        }
+        return transactionsSupported;
+    }
+
+    /**
+     * A unit of work. May be executed more than once when a transaction is
+     * retried.
+     */
+    @FunctionalInterface
+    public interface UnitOfWork<T> {
+        T execute(TransactionContext tx);
+    }
+
+    /**
+     * Per-attempt state handed to a unit of work
+     */
+    public static class TransactionContext {
+        private final ClientSession session;
+        private final boolean transactional;
+        private final List<Runnable> rollbackActions = new ArrayList<>();
+        private final List<Runnable> commitActions = new ArrayList<>();
+
+        TransactionContext(ClientSession session, boolean transactional) {
+            this.session = session;
+            this.transactional = transactional;
+        }
+
+        public ClientSession session() { return session; }
+        public boolean isTransactional() { return transactional; }
+
+        /**
+         * Register a compensating write. Only used without a transaction;
+         * inside one the server discards the writes instead.
+         */
+        public void onRollback(Runnable action) {
+            if (!transactional) rollbackActions.add(0, action);
+        }
+
+        /**
+         * Run an action once the unit has committed, outside the transaction.
+         * For writes that must not take part in it, e.g. counters shared by
+         * every booking, which would make concurrent transactions conflict.
+         * Lost if the process dies right after the commit.
+         */
+        public void onCommit(Runnable action) {
+            commitActions.add(action);
+        }
+
+        /**
+         * Roll back the unit. Use as: throw tx.abort("reason");
+         */
+        public AbortException abort(String reason) {
+            return new AbortException(reason);
+        }
+
+        private void committed(String name) {
+            for (Runnable action : commitActions) {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    System.err.println("[TX ERROR] After-commit action for " + name + " failed: " + e.getMessage());
+                }
+            }
+        }
+
+        private void compensate(String name) {
+            for (Runnable action : rollbackActions) {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    System.err.println("[TX ERROR] Compensation for " + name + " failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Thrown by a unit of work to roll back without treating it as an error
+     */
+    public static class AbortException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        AbortException(String reason) {
+            super(reason);
+        }
+    }
+}
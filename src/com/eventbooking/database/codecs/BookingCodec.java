@@ -0,0 +1,94 @@
+package com.eventbooking.database.codecs;
+
+import com.eventbooking.models.Booking;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Reads and writes Booking documents directly from/to BSON.
+ * Refund bookkeeping fields are set with targeted updates and are not part of the model.
+ */
+public class BookingCodec implements Codec<Booking> {
+
+    @Override
+    public Booking decode(BsonReader reader, DecoderContext decoderContext) {
+        int id = 0, eventId = 0, seatsBooked = 0;
+        String username = null, eventName = null;
+        String paymentMethod = null, transactionId = null, paymentStatus = null;
+        double totalPrice = 0.0;
+        LocalDateTime timestamp = null;
+        LocalDate eventDate = null;
+        boolean cancelled = false;
+        List<String> seatIds = null;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "id": id = CodecSupport.readInt(reader); break;
+                case "username": username = CodecSupport.readString(reader); break;
+                case "eventId": eventId = CodecSupport.readInt(reader); break;
+                case "eventName": eventName = CodecSupport.readString(reader); break;
+                case "seatsBooked": seatsBooked = CodecSupport.readInt(reader); break;
+                case "totalPrice": totalPrice = CodecSupport.readDouble(reader); break;
+                case "timestamp": timestamp = CodecSupport.readLocalDateTime(reader); break;
+                case "cancelled": cancelled = CodecSupport.readBoolean(reader); break;
+                case "paymentMethod": paymentMethod = CodecSupport.readString(reader); break;
+                case "transactionId": transactionId = CodecSupport.readString(reader); break;
+                case "paymentStatus": paymentStatus = CodecSupport.readString(reader); break;
+                case "eventDate": eventDate = CodecSupport.readLocalDate(reader); break;
+                case "seatIds": seatIds = CodecSupport.readStringList(reader); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        Booking booking = new Booking(id, username, eventId, eventName, seatsBooked, totalPrice,
+            timestamp != null ? timestamp : LocalDateTime.now());
+        if (cancelled) booking.cancel();
+        if (paymentMethod != null) booking.setPaymentMethod(paymentMethod);
+        if (transactionId != null) booking.setTransactionId(transactionId);
+        booking.setPaymentStatus(paymentStatus);
+        booking.setEventDate(eventDate);
+        booking.setSeatIds(seatIds);
+        return booking;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, Booking booking, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writer.writeInt32("id", booking.getId());
+        CodecSupport.writeString(writer, "username", booking.getUsername());
+        writer.writeInt32("eventId", booking.getEventId());
+        CodecSupport.writeString(writer, "eventName", booking.getEventName());
+        writer.writeInt32("seatsBooked", booking.getSeatsBooked());
+        writer.writeDouble("totalPrice", booking.getTotalPrice());
+        CodecSupport.writeLocalDateTime(writer, "timestamp", booking.getTimestamp());
+        writer.writeBoolean("cancelled", booking.isCancelled());
+        CodecSupport.writeString(writer, "status", booking.getStatus());
+        CodecSupport.writeString(writer, "paymentMethod", booking.getPaymentMethod());
+        CodecSupport.writeString(writer, "transactionId", booking.getTransactionId());
+        if (booking.getPaymentStatus() != null) {
+            writer.writeString("paymentStatus", booking.getPaymentStatus());
+        }
+        if (booking.getEventDate() != null) {
+            CodecSupport.writeLocalDate(writer, "eventDate", booking.getEventDate());
+        }
+        if (!booking.getSeatIds().isEmpty()) {
+            CodecSupport.writeStringList(writer, "seatIds", booking.getSeatIds());
+        }
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<Booking> getEncoderClass() {
+        return Booking.class;
+    }
+}
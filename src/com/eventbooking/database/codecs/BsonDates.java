@@ -0,0 +1,55 @@
+package com.eventbooking.database.codecs;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+/**
+ * Conversions between java.time values and native BSON dates.
+ *
+ * Calendar dates (event dates) are stored as midnight UTC so they never
+ * shift with the server's time zone; timestamps use the system zone, which
+ * is how the app has always interpreted them. Legacy ISO strings are still
+ * accepted when reading so documents written before the date migration
+ * keep working.
+ */
+public final class BsonDates {
+
+    private BsonDates() {}
+
+    public static Date fromLocalDate(LocalDate date) {
+        return date == null ? null : Date.from(date.atStartOfDay(ZoneOffset.UTC).toInstant());
+    }
+
+    public static Date fromLocalDateTime(LocalDateTime dateTime) {
+        return dateTime == null ? null : Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    public static LocalDate toLocalDate(long epochMillis) {
+        return new Date(epochMillis).toInstant().atZone(ZoneOffset.UTC).toLocalDate();
+    }
+
+    public static LocalDateTime toLocalDateTime(long epochMillis) {
+        return new Date(epochMillis).toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime();
+    }
+
+    /**
+     * Read a calendar date stored either as a BSON date or a legacy "yyyy-MM-dd" string
+     */
+    public static LocalDate toLocalDate(Object value) {
+        if (value instanceof Date) return toLocalDate(((Date) value).getTime());
+        if (value instanceof String) return LocalDate.parse((String) value);
+        return null;
+    }
+
+    /**
+     * Read a timestamp stored either as a BSON date or a legacy ISO string
+     */
+    public static LocalDateTime toLocalDateTime(Object value) {
+        if (value instanceof Date) return toLocalDateTime(((Date) value).getTime());
+        if (value instanceof String) return LocalDateTime.parse((String) value);
+        return null;
+    }
+}
@@ -0,0 +1,113 @@
+package com.eventbooking.database.codecs;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lenient field readers shared by the model codecs. Numbers are accepted in
+ * any BSON numeric type and dates as either BSON dates or legacy strings.
+ */
+final class CodecSupport {
+
+    private CodecSupport() {}
+
+    static int readInt(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case INT32: return reader.readInt32();
+            case INT64: return (int) reader.readInt64();
+            case DOUBLE: return (int) reader.readDouble();
+            default: reader.skipValue(); return 0;
+        }
+    }
+
+    static double readDouble(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case DOUBLE: return reader.readDouble();
+            case INT32: return reader.readInt32();
+            case INT64: return reader.readInt64();
+            case DECIMAL128: return reader.readDecimal128().doubleValue();
+            default: reader.skipValue(); return 0.0;
+        }
+    }
+
+    static boolean readBoolean(BsonReader reader) {
+        if (reader.getCurrentBsonType() == BsonType.BOOLEAN) return reader.readBoolean();
+        reader.skipValue();
+        return false;
+    }
+
+    static String readString(BsonReader reader) {
+        if (reader.getCurrentBsonType() == BsonType.STRING) return reader.readString();
+        reader.skipValue();
+        return null;
+    }
+
+    static LocalDate readLocalDate(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case DATE_TIME: return BsonDates.toLocalDate(reader.readDateTime());
+            case STRING: return LocalDate.parse(reader.readString());
+            default: reader.skipValue(); return null;
+        }
+    }
+
+    static LocalDateTime readLocalDateTime(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case DATE_TIME: return BsonDates.toLocalDateTime(reader.readDateTime());
+            case STRING: return LocalDateTime.parse(reader.readString());
+            default: reader.skipValue(); return null;
+        }
+    }
+
+    static List<String> readStringList(BsonReader reader) {
+        List<String> values = new ArrayList<>();
+        if (reader.getCurrentBsonType() != BsonType.ARRAY) {
+            reader.skipValue();
+            return values;
+        }
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String value = readString(reader);
+            if (value != null) values.add(value);
+        }
+        reader.readEndArray();
+        return values;
+    }
+
+    static void writeString(BsonWriter writer, String name, String value) {
+        if (value == null) {
+            writer.writeNull(name);
+        } else {
+            writer.writeString(name, value);
+        }
+    }
+
+    static void writeLocalDate(BsonWriter writer, String name, LocalDate value) {
+        if (value == null) {
+            writer.writeNull(name);
+        } else {
+            writer.writeDateTime(name, BsonDates.fromLocalDate(value).getTime());
+        }
+    }
+
+    static void writeLocalDateTime(BsonWriter writer, String name, LocalDateTime value) {
+        if (value == null) {
+            writer.writeNull(name);
+        } else {
+            writer.writeDateTime(name, BsonDates.fromLocalDateTime(value).getTime());
+        }
+    }
+
+    static void writeStringList(BsonWriter writer, String name, List<String> values) {
+        writer.writeStartArray(name);
+        for (String value : values) {
+            writer.writeString(value);
+        }
+        writer.writeEndArray();
+    }
+}
@@ -0,0 +1,79 @@
+package com.eventbooking.database.codecs;
+
+import com.eventbooking.models.Event;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import java.time.LocalDate;
+
+/**
+ * Reads and writes Event documents directly from/to BSON
+ */
+public class EventCodec implements Codec<Event> {
+
+    @Override
+    public Event decode(BsonReader reader, DecoderContext decoderContext) {
+        int id = 0;
+        String name = null, type = null, venue = null, status = null, cancellationReason = null;
+        LocalDate date = null, originalDate = null;
+        int totalSeats = 0;
+        Integer seatsAvailable = null;
+        double price = 0.0;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "id": id = CodecSupport.readInt(reader); break;
+                case "name": name = CodecSupport.readString(reader); break;
+                case "type": type = CodecSupport.readString(reader); break;
+                case "date": date = CodecSupport.readLocalDate(reader); break;
+                case "venue": venue = CodecSupport.readString(reader); break;
+                case "totalSeats": totalSeats = CodecSupport.readInt(reader); break;
+                case "seatsAvailable": seatsAvailable = CodecSupport.readInt(reader); break;
+                case "price": price = CodecSupport.readDouble(reader); break;
+                case "status": status = CodecSupport.readString(reader); break;
+                case "cancellationReason": cancellationReason = CodecSupport.readString(reader); break;
+                case "originalDate": originalDate = CodecSupport.readLocalDate(reader); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        Event event = new Event(id, name, type, date, venue, totalSeats, price);
+        if (seatsAvailable != null) event.setSeatsAvailable(seatsAvailable);
+        if (status != null) event.setStatus(status);
+        if (cancellationReason != null) event.setCancellationReason(cancellationReason);
+        if (originalDate != null) event.setOriginalDate(originalDate);
+        return event;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, Event event, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writer.writeInt32("id", event.getId());
+        CodecSupport.writeString(writer, "name", event.getName());
+        CodecSupport.writeString(writer, "type", event.getType());
+        CodecSupport.writeLocalDate(writer, "date", event.getDate());
+        CodecSupport.writeString(writer, "venue", event.getVenue());
+        writer.writeInt32("totalSeats", event.getTotalSeats());
+        writer.writeInt32("seatsAvailable", event.getSeatsAvailable());
+        writer.writeDouble("price", event.getPrice());
+        CodecSupport.writeString(writer, "status", event.getStatus());
+        if (event.getCancellationReason() != null) {
+            writer.writeString("cancellationReason", event.getCancellationReason());
+        }
+        if (event.getOriginalDate() != null) {
+            CodecSupport.writeLocalDate(writer, "originalDate", event.getOriginalDate());
+        }
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<Event> getEncoderClass() {
+        return Event.class;
+    }
+}
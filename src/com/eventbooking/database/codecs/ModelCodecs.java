@@ -0,0 +1,44 @@
+package com.eventbooking.database.codecs;
+
+import com.eventbooking.models.Admin;
+import com.eventbooking.models.Attendee;
+import com.eventbooking.models.Booking;
+import com.eventbooking.models.Event;
+import com.eventbooking.models.SeatMap;
+import com.eventbooking.models.User;
+import com.mongodb.MongoClientSettings;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+
+/**
+ * Codec registry for the domain models, layered over the driver defaults
+ */
+public final class ModelCodecs {
+    private static final UserCodec USER_CODEC = new UserCodec();
+
+    private static final CodecProvider MODEL_PROVIDER = new CodecProvider() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
+            if (clazz == Event.class) return (Codec<T>) new EventCodec();
+            if (clazz == Booking.class) return (Codec<T>) new BookingCodec();
+            if (clazz == SeatMap.class) return (Codec<T>) new SeatMapCodec();
+            if (clazz == User.class || clazz == Admin.class || clazz == Attendee.class) {
+                return (Codec<T>) USER_CODEC;
+            }
+            return null;
+        }
+    };
+
+    private static final CodecRegistry REGISTRY = CodecRegistries.fromRegistries(
+        CodecRegistries.fromProviders(MODEL_PROVIDER),
+        MongoClientSettings.getDefaultCodecRegistry());
+
+    private ModelCodecs() {}
+
+    public static CodecRegistry registry() {
+        return REGISTRY;
+    }
+}
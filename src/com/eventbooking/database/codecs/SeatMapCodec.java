@@ -0,0 +1,133 @@
+package com.eventbooking.database.codecs;
+
+import com.eventbooking.models.SeatMap;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads and writes seat map documents directly from/to BSON.
+ *
+ * Stored form: booked and held are arrays of int64 words (bit i of word w is
+ * seat 64w + i), so a claim can test them with $bitsAllClear and set them
+ * with $bit. A 20,000 seat map is two arrays of 313 words, about 9 KB. Who
+ * booked a seat is kept on the booking (seatIds), not per seat here; an
+ * "owners" sub-document written by earlier versions is ignored. The older
+ * form, one sub-document per seat in "seats", is still read.
+ */
+public class SeatMapCodec implements Codec<SeatMap> {
+    private static final String STATUS_BOOKED = "BOOKED";
+
+    @Override
+    public SeatMap decode(BsonReader reader, DecoderContext decoderContext) {
+        int eventId = 0, seatsPerRow = 0, capacity = -1;
+        List<String> rows = new ArrayList<>();
+        long[] booked = new long[0];
+        long[] held = new long[0];
+        List<String[]> legacySeats = new ArrayList<>(); // {seatId, bookedBy}
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "eventId": eventId = CodecSupport.readInt(reader); break;
+                case "rows": rows = CodecSupport.readStringList(reader); break;
+                case "seatsPerRow": seatsPerRow = CodecSupport.readInt(reader); break;
+                case "capacity": capacity = CodecSupport.readInt(reader); break;
+                case "booked": booked = readWords(reader); break;
+                case "held": held = readWords(reader); break;
+                case "seats": readLegacySeats(reader, legacySeats); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        SeatMap seatMap = capacity < 0
+            ? new SeatMap(eventId, rows, seatsPerRow)
+            : new SeatMap(eventId, rows, seatsPerRow, capacity);
+        seatMap.loadWords(booked, held);
+        for (String[] seat : legacySeats) {
+            int index = seatMap.indexOf(seat[0]);
+            if (index >= 0) seatMap.book(index, seat[1]);
+        }
+        return seatMap;
+    }
+
+    private static long[] readWords(BsonReader reader) {
+        if (reader.getCurrentBsonType() != BsonType.ARRAY) {
+            reader.skipValue();
+            return new long[0];
+        }
+        long[] words = new long[16];
+        int count = 0;
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            long word;
+            switch (reader.getCurrentBsonType()) {
+                case INT64: word = reader.readInt64(); break;
+                case INT32: word = reader.readInt32() & 0xFFFFFFFFL; break;
+                default: reader.skipValue(); word = 0L;
+            }
+            if (count == words.length) words = Arrays.copyOf(words, count * 2);
+            words[count++] = word;
+        }
+        reader.readEndArray();
+        return Arrays.copyOf(words, count);
+    }
+
+    private static void readLegacySeats(BsonReader reader, List<String[]> bookedSeats) {
+        if (reader.getCurrentBsonType() != BsonType.ARRAY) {
+            reader.skipValue();
+            return;
+        }
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String seatId = null, status = null, bookedBy = null;
+            reader.readStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                switch (reader.readName()) {
+                    case "seatId": seatId = CodecSupport.readString(reader); break;
+                    case "status": status = CodecSupport.readString(reader); break;
+                    case "bookedBy": bookedBy = CodecSupport.readString(reader); break;
+                    default: reader.skipValue();
+                }
+            }
+            reader.readEndDocument();
+            if (seatId != null && STATUS_BOOKED.equals(status)) {
+                bookedSeats.add(new String[]{seatId, bookedBy});
+            }
+        }
+        reader.readEndArray();
+    }
+
+    @Override
+    public void encode(BsonWriter writer, SeatMap seatMap, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writer.writeInt32("eventId", seatMap.getEventId());
+        CodecSupport.writeStringList(writer, "rows", seatMap.getRows());
+        writer.writeInt32("seatsPerRow", seatMap.getSeatsPerRow());
+        writer.writeInt32("capacity", seatMap.getCapacity());
+        writeWords(writer, "booked", seatMap.getBookedWords());
+        writeWords(writer, "held", seatMap.getHeldWords());
+        writer.writeEndDocument();
+    }
+
+    private static void writeWords(BsonWriter writer, String name, long[] words) {
+        writer.writeStartArray(name);
+        for (long word : words) {
+            writer.writeInt64(word);
+        }
+        writer.writeEndArray();
+    }
+
+    @Override
+    public Class<SeatMap> getEncoderClass() {
+        return SeatMap.class;
+    }
+}
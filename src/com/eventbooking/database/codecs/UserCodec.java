@@ -0,0 +1,72 @@
+package com.eventbooking.database.codecs;
+
+import com.eventbooking.models.Admin;
+import com.eventbooking.models.Attendee;
+import com.eventbooking.models.User;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+/**
+ * Reads users as Admin or Attendee based on their role.
+ * The password field holds the stored hash, never the plain text.
+ */
+public class UserCodec implements Codec<User> {
+
+    @Override
+    public User decode(BsonReader reader, DecoderContext decoderContext) {
+        String username = null, password = null, email = null, phone = null, role = null;
+        int ticketsBought = 0, eventsAttended = 0;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "username": username = CodecSupport.readString(reader); break;
+                case "password": password = CodecSupport.readString(reader); break;
+                case "email": email = CodecSupport.readString(reader); break;
+                case "phone": phone = CodecSupport.readString(reader); break;
+                case "role": role = CodecSupport.readString(reader); break;
+                case "ticketsBought": ticketsBought = CodecSupport.readInt(reader); break;
+                case "eventsAttended": eventsAttended = CodecSupport.readInt(reader); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        if ("Admin".equals(role)) {
+            return new Admin(username, password, email, phone);
+        }
+        Attendee attendee = new Attendee(username, password, email, phone);
+        attendee.setTicketsBought(ticketsBought);
+        attendee.setEventsAttended(eventsAttended);
+        return attendee;
+    }
+
+    /**
+     * Writes the identity fields only. Counters such as creditPoints are
+     * maintained with $inc updates, so never use this to replace a user.
+     */
+    @Override
+    public void encode(BsonWriter writer, User user, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        CodecSupport.writeString(writer, "username", user.getUsername());
+        CodecSupport.writeString(writer, "password", user.getPassword());
+        CodecSupport.writeString(writer, "email", user.getEmail());
+        CodecSupport.writeString(writer, "phone", user.getPhone());
+        writer.writeString("role", user.getRole());
+        if (user instanceof Attendee) {
+            Attendee attendee = (Attendee) user;
+            writer.writeInt32("ticketsBought", attendee.getTicketsBought());
+            writer.writeInt32("eventsAttended", attendee.getEventsAttended());
+        }
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<User> getEncoderClass() {
+        return User.class;
+    }
+}
@@ -1,6 +1,9 @@
 package com.eventbooking.models;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Booking {
     private int id;
@@ -14,6 +17,9 @@ public class Booking {
     private String status;
     private String paymentMethod;
     private String transactionId;
+    private String paymentStatus;
+    private LocalDate eventDate;
+    private List<String> seatIds = new ArrayList<>();
 
     public Booking(int id, String username, int eventId, String eventName,
                    int seatsBooked, double totalPrice, LocalDateTime timestamp) {
@@ -41,6 +47,9 @@ public class Booking {
     public String getStatus() { return status; }
     public String getPaymentMethod() { return paymentMethod; }
     public String getTransactionId() { return transactionId; }
+    public String getPaymentStatus() { return paymentStatus; }
+    public LocalDate getEventDate() { return eventDate; }
+    public List<String> getSeatIds() { return seatIds; }
 
     // Setters for payment details
     public void setPaymentMethod(String paymentMethod) {
@@ -51,6 +60,19 @@ public class Booking {
         this.transactionId = transactionId;
     }
 
+    public void setPaymentStatus(String paymentStatus) {
+        this.paymentStatus = paymentStatus;
+    }
+
+    // Setters for event/seat details
+    public void setEventDate(LocalDate eventDate) {
+        this.eventDate = eventDate;
+    }
+
+    public void setSeatIds(List<String> seatIds) {
+        this.seatIds = seatIds != null ? seatIds : new ArrayList<>();
+    }
+
     public void cancel() { 
         this.cancelled = true; 
         updateStatus();
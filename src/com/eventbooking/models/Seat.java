@@ -6,6 +6,7 @@ public class Seat {
     private int number;
     private boolean isBooked;
     private String bookedBy;
+    private boolean isHeld;
 
     public Seat(String row, int number) {
         this.row = row;
@@ -15,11 +16,21 @@ public class Seat {
     }
 
     public String getSeatId() { return seatId; }
+    public String getRow() { return row; }
+    public String getBookedBy() { return bookedBy; }
     public int getNumber() { return number; }
     public boolean isBooked() { return isBooked; }
+    public boolean isHeld() { return isHeld; }
 
     public void book(String username) {
         this.isBooked = true;
         this.bookedBy = username;
     }
+
+    /**
+     * Held for someone else's checkout in progress
+     */
+    public void hold() {
+        this.isHeld = true;
+    }
 }
\ No newline at end of file
@@ -1,29 +1,221 @@
 package com.eventbooking.models;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Seat map of one event, kept as bitsets.
+ *
+ * Seat number n of row r has index r * seatsPerRow + (n - 1). Booked and held
+ * seats are bits in long[] words, so an arena of 20,000 seats takes a few
+ * kilobytes and Seat objects are only created when one is asked for. A
+ * booked seat may also point into a table of interned usernames; stored
+ * maps do not carry owners, only the legacy per-seat form does.
+ */
 public class SeatMap {
+    private static final int MIN_SEATS_PER_ROW = 10;
+    private static final int MAX_SEATS_PER_ROW = 100;
+
     private int eventId;
     private List<String> rows;
     private int seatsPerRow;
-    private Map<String, Seat> seats;
+    private int capacity;
+    private Map<String, Integer> rowIndex;
+    private long[] booked;
+    private long[] held;
+    private List<String> owners = new ArrayList<>();
+    private Map<String, Integer> ownerIds = new HashMap<>();
+    private int[] ownerOf; // 1-based index into owners, 0 = none; allocated on first booking
 
     public SeatMap(int eventId, List<String> rows, int seatsPerRow) {
+        this(eventId, rows, seatsPerRow, rows.size() * seatsPerRow);
+    }
+
+    public SeatMap(int eventId, List<String> rows, int seatsPerRow, int capacity) {
         this.eventId = eventId;
         this.rows = rows;
         this.seatsPerRow = seatsPerRow;
-        this.seats = new HashMap<>();
-        for (String row : rows) {
-            for (int i = 1; i <= seatsPerRow; i++) {
-                seats.put(row + i, new Seat(row, i));
-            }
+        this.capacity = Math.min(capacity, rows.size() * seatsPerRow);
+        this.rowIndex = new HashMap<>();
+        for (int r = 0; r < rows.size(); r++) {
+            rowIndex.put(rows.get(r), r);
+        }
+        this.booked = new long[wordsFor(this.capacity)];
+        this.held = new long[wordsFor(this.capacity)];
+    }
+
+    /**
+     * A roughly square layout with exactly totalSeats seats; the last row
+     * may be short.
+     */
+    public static SeatMap forCapacity(int eventId, int totalSeats) {
+        int seatsPerRow = (int) Math.ceil(Math.sqrt(Math.max(totalSeats, 1)));
+        seatsPerRow = Math.max(MIN_SEATS_PER_ROW, Math.min(MAX_SEATS_PER_ROW, seatsPerRow));
+        int rowCount = Math.max(1, (totalSeats + seatsPerRow - 1) / seatsPerRow);
+        List<String> rows = new ArrayList<>(rowCount);
+        for (int r = 0; r < rowCount; r++) {
+            rows.add(rowLabel(r));
         }
+        return new SeatMap(eventId, rows, seatsPerRow, Math.max(totalSeats, 1));
     }
 
+    /**
+     * A, B, ... Z, AA, AB, ...
+     */
+    public static String rowLabel(int row) {
+        StringBuilder label = new StringBuilder();
+        for (int n = row + 1; n > 0; n = (n - 1) / 26) {
+            label.insert(0, (char) ('A' + (n - 1) % 26));
+        }
+        return label.toString();
+    }
+
+    public static int wordsFor(int seats) {
+        return (seats + 63) >>> 6;
+    }
+
+    public int getEventId() { return eventId; }
     public List<String> getRows() { return rows; }
     public int getSeatsPerRow() { return seatsPerRow; }
-    public Seat getSeat(String seatId) { return seats.get(seatId); }
-}
\ No newline at end of file
+    public int getCapacity() { return capacity; }
+
+    /**
+     * Index of a seat id such as "C12", or -1 if the map has no such seat
+     */
+    public int indexOf(String seatId) {
+        if (seatId == null) return -1;
+        int split = 0;
+        while (split < seatId.length() && !Character.isDigit(seatId.charAt(split))) split++;
+        if (split == 0 || split == seatId.length()) return -1;
+        Integer row = rowIndex.get(seatId.substring(0, split));
+        if (row == null) return -1;
+        int number;
+        try {
+            number = Integer.parseInt(seatId.substring(split));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        if (number < 1 || number > seatsPerRow) return -1;
+        int index = row * seatsPerRow + number - 1;
+        return index < capacity ? index : -1;
+    }
+
+    public String seatIdAt(int index) {
+        return rows.get(index / seatsPerRow) + (index % seatsPerRow + 1);
+    }
+
+    public Seat getSeat(String seatId) {
+        int index = indexOf(seatId);
+        if (index < 0) return null;
+        Seat seat = new Seat(rows.get(index / seatsPerRow), index % seatsPerRow + 1);
+        if (isBooked(index)) seat.book(getBookedBy(index));
+        else if (isHeld(index)) seat.hold();
+        return seat;
+    }
+
+    public boolean isBooked(int index) {
+        return (booked[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public boolean isHeld(int index) {
+        return (held[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public boolean isAvailable(int index) {
+        return ((booked[index >>> 6] | held[index >>> 6]) & (1L << index)) == 0;
+    }
+
+    public String getBookedBy(int index) {
+        if (ownerOf == null || ownerOf[index] == 0) return null;
+        return owners.get(ownerOf[index] - 1);
+    }
+
+    public void book(int index, String username) {
+        booked[index >>> 6] |= 1L << index;
+        if (username == null) return;
+        if (ownerOf == null) ownerOf = new int[capacity];
+        ownerOf[index] = ownerIds.computeIfAbsent(username, name -> {
+            owners.add(name);
+            return owners.size();
+        });
+    }
+
+    public void hold(int index) {
+        held[index >>> 6] |= 1L << index;
+    }
+
+    /**
+     * First seat at or after from that is neither booked nor held, or
+     * capacity if there is none. Skips 64 taken seats per step.
+     */
+    public int nextAvailable(int from) {
+        if (from >= capacity) return capacity;
+        int w = from >>> 6;
+        long free = ~(booked[w] | held[w]) & (-1L << from);
+        while (free == 0) {
+            if (++w == booked.length) return capacity;
+            free = ~(booked[w] | held[w]);
+        }
+        return Math.min(capacity, (w << 6) + Long.numberOfTrailingZeros(free));
+    }
+
+    /**
+     * First booked or held seat at or after from, or capacity if there is none
+     */
+    public int nextUnavailable(int from) {
+        if (from >= capacity) return capacity;
+        int w = from >>> 6;
+        long taken = (booked[w] | held[w]) & (-1L << from);
+        while (taken == 0) {
+            if (++w == booked.length) return capacity;
+            taken = booked[w] | held[w];
+        }
+        return Math.min(capacity, (w << 6) + Long.numberOfTrailingZeros(taken));
+    }
+
+    public int countBooked() {
+        int count = 0;
+        for (long word : booked) count += Long.bitCount(word);
+        return count;
+    }
+
+    public int countHeld() {
+        int count = 0;
+        for (long word : held) count += Long.bitCount(word);
+        return count;
+    }
+
+    /**
+     * Seats neither booked nor held, counted a word (64 seats) at a time
+     */
+    public int countAvailable() {
+        int taken = 0;
+        for (int w = 0; w < booked.length; w++) {
+            taken += Long.bitCount(booked[w] | held[w]);
+        }
+        return capacity - taken;
+    }
+
+    /**
+     * The booked bitset, one long per 64 seats. Not a copy.
+     */
+    public long[] getBookedWords() { return booked; }
+
+    /**
+     * The held bitset, one long per 64 seats. Not a copy.
+     */
+    public long[] getHeldWords() { return held; }
+
+    /**
+     * Replace the bitsets with stored words; missing words stay clear
+     */
+    public void loadWords(long[] bookedWords, long[] heldWords) {
+        Arrays.fill(booked, 0L);
+        Arrays.fill(held, 0L);
+        System.arraycopy(bookedWords, 0, booked, 0, Math.min(bookedWords.length, booked.length));
+        System.arraycopy(heldWords, 0, held, 0, Math.min(heldWords.length, held.length));
+    }
+}
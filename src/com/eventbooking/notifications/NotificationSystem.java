@@ -2,7 +2,10 @@
 
 package com.eventbooking.notifications;
 
+import com.eventbooking.database.NotificationFeed;
+
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -48,6 +51,16 @@ public class NotificationSystem {
         }
     }
 
+    /**
+     * Push changes to a user's inbox to an observer, on the Swing event
+     * thread, so the screen need not poll for them. Close the returned
+     * subscription when the screen closes.
+     */
+    public NotificationFeed.Subscription subscribeInbox(String username, InboxObserver observer) {
+        return NotificationFeed.getInstance().subscribe(username,
+            update -> SwingUtilities.invokeLater(() -> observer.inboxChanged(update)));
+    }
+
     /**
      * Send booking confirmation notification
      */
@@ -115,6 +128,13 @@ public class NotificationSystem {
         JOptionPane.showMessageDialog(null, message, title, messageType);
     }
 
+    /**
+     * Observer of one user's stored notifications
+     */
+    public interface InboxObserver {
+        void inboxChanged(NotificationFeed.Update update);
+    }
+
     /**
      * Notification types
      */
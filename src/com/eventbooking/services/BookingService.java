@@ -0,0 +1,167 @@
+package com.eventbooking.services;
+
+import com.eventbooking.database.DatabaseManager;
+import com.eventbooking.models.Booking;
+import com.eventbooking.models.Event;
+import com.eventbooking.models.SeatMap;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Booking Service - headless entry point for the attendee flows.
+ *
+ * Does what the Swing screens do (search, seat selection, payment, booking,
+ * cancellation) without touching any UI, so the API server and load tests
+ * can drive the core directly. Returns null/false on failure, like
+ * DatabaseManager.
+ */
+public class BookingService {
+    private static BookingService instance;
+    private final DatabaseManager dbManager;
+    private final PaymentService paymentService;
+    private final RefundService refundService;
+
+    private BookingService() {
+        this.dbManager = DatabaseManager.getInstance();
+        this.paymentService = PaymentService.getInstance();
+        this.refundService = RefundService.getInstance();
+    }
+
+    public static synchronized BookingService getInstance() {
+        if (instance == null) {
+            instance = new BookingService();
+        }
+        return instance;
+    }
+
+    public List<Event> searchEvents(String text, String category, Double minPrice, Double maxPrice) {
+        return searchEvents(text, category, minPrice, maxPrice, null, null, null);
+    }
+
+    public List<Event> searchEvents(String text, String category, Double minPrice, Double maxPrice,
+                                    LocalDate from, LocalDate to, String status) {
+        if ((text == null || text.isEmpty()) && category == null && minPrice == null && maxPrice == null
+                && from == null && to == null && status == null) {
+            return dbManager.getAllEvents();
+        }
+        return dbManager.searchEvents(text, category, minPrice, maxPrice, from, to, status);
+    }
+
+    public Event getEvent(int eventId) {
+        return dbManager.getEventById(eventId);
+    }
+
+    public SeatMap getSeatMap(int eventId) {
+        return dbManager.getEventById(eventId) == null ? null : dbManager.getSeatMapForEvent(eventId);
+    }
+
+    /**
+     * Pay for and book specific seats
+     */
+    public Booking bookSeats(String username, int eventId, List<String> seatIds, String paymentMethod) {
+        Event event = dbManager.getEventById(eventId);
+        if (event == null || !event.isBookable() || seatIds == null || seatIds.isEmpty()) return null;
+
+        // Hold first, so a taken seat fails before the card is charged
+        String holdId = dbManager.holdSeats(username, eventId, seatIds);
+        if (holdId == null) return null;
+
+        double amount = seatIds.size() * event.getPrice();
+        String transactionId = pay(username, amount, paymentMethod);
+        if (transactionId == null) {
+            dbManager.releaseSeatHold(holdId);
+            return null;
+        }
+
+        Booking booking = dbManager.createBookingFromHold(holdId, paymentMethod, transactionId);
+        if (booking == null) {
+            // Only if the hold expired while the gateway was still working
+            refundService.processRefund(username, 0, amount, paymentMethod);
+        }
+        return booking;
+    }
+
+    /**
+     * Pay for and book a number of tickets on the best available seats
+     */
+    public Booking bookTickets(String username, int eventId, int quantity, String paymentMethod) {
+        Event event = dbManager.getEventById(eventId);
+        if (event == null || !event.isBookable() || quantity <= 0) return null;
+
+        double amount = quantity * event.getPrice();
+        String transactionId = pay(username, amount, paymentMethod);
+        if (transactionId == null) return null;
+
+        Booking booking = dbManager.createBestAvailableBooking(username, eventId, quantity, paymentMethod, transactionId);
+        if (booking == null) {
+            refundService.processRefund(username, 0, amount, paymentMethod);
+        }
+        return booking;
+    }
+
+    /**
+     * Authorise through the gateway. Blocking here is fine: API requests
+     * each have their own thread.
+     * @return the transaction ID, or null if the payment was not approved
+     */
+    private String pay(String username, double amount, String paymentMethod) {
+        try {
+            PaymentGateway.PaymentResult result = paymentService.authorize(username, amount, paymentMethod).join();
+            if (!result.isApproved()) {
+                System.err.println("[PAYMENT] Declined for " + username + ": " + result.getMessage());
+                return null;
+            }
+            return result.getTransactionId();
+        } catch (CompletionException e) {
+            System.err.println("[PAYMENT ERROR] Gateway failure: " + e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Cancel some or all seats of one of the user's bookings.
+     * @param seats number of seats to cancel, or 0 for the whole booking
+     */
+    public boolean cancelBooking(String username, int bookingId, int seats) {
+        Booking booking = dbManager.getBookingById(bookingId);
+        if (booking == null || !booking.getUsername().equals(username)) return false;
+        if (seats <= 0 || seats >= booking.getSeatsBooked()) {
+            return dbManager.cancelBooking(bookingId);
+        }
+        return dbManager.partiallyCancelBooking(bookingId, seats);
+    }
+
+    public List<Booking> getBookings(String username) {
+        return dbManager.getUserBookings(username);
+    }
+
+    public int getUnreadCount(String username) {
+        return dbManager.getUnreadNotificationCount(username);
+    }
+
+    /**
+     * @param before id of the last notification of the previous page, or null for the newest
+     */
+    public List<Document> getNotifications(String username, ObjectId before, int limit) {
+        return dbManager.getUserNotifications(username, before, limit);
+    }
+
+    /**
+     * @param period "daily", "monthly" or anything else for all-time
+     */
+    public List<Document> getLeaderboard(String period, int limit) {
+        switch (period == null ? "" : period) {
+            case "daily":
+                List<Document> daily = dbManager.getDailyTopAttendees();
+                return daily.size() > limit ? daily.subList(0, limit) : daily;
+            case "monthly":
+                return dbManager.getMonthlyTopAttendees(limit);
+            default:
+                return dbManager.getTopAttendees(limit);
+        }
+    }
+}
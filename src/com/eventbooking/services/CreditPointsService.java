@@ -1,9 +1,19 @@
 package com.eventbooking.services;
 
+import com.eventbooking.AppConfig;
 import com.eventbooking.database.DatabaseManager;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Updates;
 import org.bson.Document;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 public class CreditPointsService {
     private static CreditPointsService instance;
@@ -13,9 +23,13 @@ public class CreditPointsService {
     private static final int[] RANK_POINTS = {
         1000, 750, 500, 400, 350, 300, 250, 200, 150, 100, 75, 50, 25
     };
+    private static final String DAILY = "DAILY";
+    private static final String MONTHLY = "MONTHLY";
+    private static final int MONTHLY_AWARD_LIMIT = 100;
+    private final int batchSize = AppConfig.getInstance().getInt("credits.batchSize", 1000);
 
     private CreditPointsService() {
-        this.dbManager = new DatabaseManager();
+        this.dbManager = DatabaseManager.getInstance();
         this.emailService = EmailService.getInstance();
     }
 
@@ -37,78 +51,160 @@ public class CreditPointsService {
     }
 
     /**
-     * NEW: Award daily credit points to top attendees of the day.
+     * Award yesterday's top attendees, i.e. the last complete day. Today
+     * cannot be awarded early: its run would be marked done and the
+     * midnight run would then skip the bookings made after it.
      */
     public void awardDailyCredits() {
-        System.out.println("\nDistributing daily credit points...");
-        List<Document> topAttendees = dbManager.getDailyTopAttendees();
-        if (topAttendees.isEmpty()) {
-            System.out.println("No bookings today. No points awarded.");
-            return;
+        awardDailyCredits(LocalDate.now().minusDays(1));
+    }
+
+    /**
+     * Award the attendees who bought the most tickets on the given day.
+     * Running it again for the same day resumes or does nothing.
+     */
+    public void awardDailyCredits(LocalDate day) {
+        System.out.println("\nDistributing daily credit points for " + day + "...");
+        int awarded = runAward(DAILY, day.toString(), day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+        System.out.println(awarded == 0 ? "No new daily awards for " + day + "."
+            : "\nDaily credit point distribution complete: " + awarded + " users awarded.");
+    }
+
+    /**
+     * Award last month's top attendees, the last complete month
+     */
+    public void awardMonthlyCredits() {
+        awardMonthlyCredits(YearMonth.now().minusMonths(1));
+    }
+
+    /**
+     * Award the month's top attendees, email them, then reset the users'
+     * monthly stats if that month is the one that just ended. Running it
+     * again for the same month resumes or does nothing.
+     */
+    public void awardMonthlyCredits(YearMonth month) {
+        System.out.println("\n--- MONTHLY CREDIT POINTS DISTRIBUTION (" + month + ") ---");
+        int awarded = runAward(MONTHLY, month.toString(), month.atDay(1).atStartOfDay(),
+            month.plusMonths(1).atDay(1).atStartOfDay());
+        System.out.println("\nTotal Users Awarded: " + awarded);
+    }
+
+    /**
+     * Finish award runs a crash or shutdown interrupted. Called once at startup.
+     */
+    public void resumeUnfinishedAwards() {
+        for (Document run : dbManager.getUnfinishedAwardRuns()) {
+            System.out.println("[CREDITS] Resuming award run " + run.getString("_id") + " after rank " + run.get("lastRank"));
+            String period = run.getString("period");
+            try {
+                if (MONTHLY.equals(run.getString("type"))) {
+                    awardMonthlyCredits(YearMonth.parse(period));
+                } else {
+                    awardDailyCredits(LocalDate.parse(period));
+                }
+            } catch (Exception e) {
+                System.err.println("[CREDITS ERROR] Could not resume " + run.getString("_id") + ": " + e.getMessage());
+            }
         }
-        
-        int rank = 1;
-        for (Document attendee : topAttendees) {
-            String username = attendee.getString("username");
-            int tickets = attendee.getInteger("dailyTickets", 0);
-            int points = calculatePointsForRank(rank);
-            
-            if (dbManager.addCreditPoints(username, points)) {
-                String notificationMessage = String.format(
-                    "Daily Reward! You ranked #%d today and earned %d credit points!", rank, points
-                );
-                dbManager.addUserNotification(username, notificationMessage);
-                System.out.printf(
-                    "Rank #%d: Awarded %d points to '%s' for purchasing %d tickets.\n", rank, points, username, tickets
-                );
+    }
+
+    // ==========================================================
+    // == AWARD PIPELINE ==
+    // ==========================================================
+
+    /**
+     * Rank once, then award chunk by chunk. The ranking is stored with the
+     * run so a resumed run awards exactly the ranks it had not reached.
+     * @return the number of users awarded by this call
+     */
+    private synchronized int runAward(String type, String period, LocalDateTime from, LocalDateTime to) {
+        String runId = "award-" + type.toLowerCase() + "-" + period;
+        Document run = dbManager.startOrResumeAwardRun(runId, type, period);
+        if ("DONE".equals(run.getString("status"))) {
+            return 0;
+        }
+        if ("RANKING".equals(run.getString("status"))) {
+            int ranked = snapshotRanking(runId, type, from, to);
+            dbManager.updateAwardRun(runId, Updates.combine(Updates.set("status", "AWARDING"),
+                Updates.set("ranked", ranked)));
+        }
+
+        boolean monthly = MONTHLY.equals(type);
+        String awardField = monthly ? "lastMonthlyAward" : "lastDailyAward";
+        int lastRank = run.getInteger("lastRank", 0);
+        int awardedTotal = 0;
+        List<Document> chunk;
+        while (!(chunk = dbManager.getAwardEntries(runId, lastRank, batchSize)).isEmpty()) {
+            Map<String, String> messages = new HashMap<>();
+            for (Document entry : chunk) {
+                messages.put(entry.getString("username"), monthly
+                    ? String.format("Monthly Rewards! You ranked #%d and earned %d credit points!",
+                        entry.getInteger("rank"), entry.getInteger("points"))
+                    : String.format("Daily Reward! You ranked #%d today and earned %d credit points!",
+                        entry.getInteger("rank"), entry.getInteger("points")));
+            }
+            List<String> awarded = dbManager.commitAwardBatch(runId, awardField, period, chunk, messages);
+            if (awarded == null) {
+                throw new IllegalStateException("Award run " + runId + " stopped at rank " + lastRank);
             }
-            rank++;
+            lastRank = chunk.get(chunk.size() - 1).getInteger("rank");
+            awardedTotal += awarded.size();
+            if (monthly && !awarded.isEmpty()) {
+                sendMonthlyEmails(chunk, awarded, YearMonth.parse(period));
+            }
+            System.out.println("[CREDITS] " + runId + ": awarded through rank " + lastRank);
+        }
+
+        // The users' monthly stats count the current month: only a run for the
+        // month that just ended may clear them, not a late resume of an older one
+        if (monthly && YearMonth.parse(period).equals(YearMonth.now().minusMonths(1))) {
+            dbManager.resetMonthlyStats();
         }
-        System.out.println("\nDaily credit point distribution complete.");
+        dbManager.updateAwardRun(runId, Updates.combine(Updates.set("status", "DONE"),
+            Updates.set("finishedAt", new Date())));
+        return awardedTotal;
     }
 
-    public void awardMonthlyCredits() {
-        System.out.println("\n--- MONTHLY CREDIT POINTS DISTRIBUTION ---");
-        List<Document> topAttendees = dbManager.getMonthlyTopAttendees(100);
-        
-        int rank = 1;
-        int usersAwarded = 0;
-        
-        for (Document attendee : topAttendees) {
-            String username = attendee.getString("username");
-            int monthlyTickets = attendee.getInteger("monthlyTickets", 0);
-            
-            if (monthlyTickets == 0) continue;
-            
-            int creditPoints = calculatePointsForRank(rank);
-            
-            if (dbManager.addCreditPoints(username, creditPoints)) {
-                usersAwarded++;
-                
-                Document userDoc = dbManager.getUserDetails(username);
-                String email = userDoc != null ? userDoc.getString("email") : null;
-                
-                if (email != null && !email.isEmpty()) {
-                    emailService.sendCreditPointsNotification(email, username, rank, creditPoints, monthlyTickets);
+    private int snapshotRanking(String runId, String type, LocalDateTime from, LocalDateTime to) {
+        int limit = MONTHLY.equals(type) ? MONTHLY_AWARD_LIMIT : Integer.MAX_VALUE;
+        dbManager.clearAwardEntries(runId);
+        List<Document> entries = new ArrayList<>();
+        int rank = 0;
+        try (MongoCursor<Document> ranking = dbManager.streamAttendeeRanking(from, to, batchSize)) {
+            while (ranking.hasNext() && rank < limit) {
+                Document row = ranking.next();
+                rank++;
+                entries.add(new Document("runId", runId)
+                    .append("rank", rank)
+                    .append("username", row.getString("_id"))
+                    .append("tickets", ((Number) row.get("tickets")).intValue())
+                    .append("points", calculatePointsForRank(rank)));
+                if (entries.size() == batchSize) {
+                    dbManager.insertAwardEntries(entries);
+                    entries.clear();
                 }
-                
-                dbManager.addUserNotification(
-                    username,
-                    String.format("Monthly Rewards! You ranked #%d and earned %d credit points!", rank, creditPoints)
-                );
-                
-                System.out.printf("Rank #%d: %s - %d points awarded (Tickets: %d)\n", rank, username, creditPoints, monthlyTickets);
             }
-            
-            rank++;
         }
-        
-        System.out.println("\nTotal Users Awarded: " + usersAwarded);
-        dbManager.resetMonthlyStats();
+        dbManager.insertAwardEntries(entries);
+        return rank;
+    }
+
+    /**
+     * One $in lookup for the chunk's addresses; the emails are queued, not sent inline
+     */
+    private void sendMonthlyEmails(List<Document> chunk, List<String> awarded, YearMonth month) {
+        Map<String, String> emails = dbManager.getEmailsForUsers(awarded);
+        for (Document entry : chunk) {
+            String email = emails.get(entry.getString("username"));
+            if (email != null && awarded.contains(entry.getString("username"))) {
+                emailService.sendCreditPointsNotification(email, entry.getString("username"),
+                    entry.getInteger("rank"), entry.getInteger("points"), entry.getInteger("tickets"), month);
+            }
+        }
     }
 
     public boolean awardPoints(String username, int points, String reason) {
-        boolean success = dbManager.addCreditPoints(username, points);
+        boolean success = dbManager.addCreditPoints(username, points, reason, "manual:" + UUID.randomUUID());
         
         if (success) {
             dbManager.addUserNotification(
@@ -121,15 +217,24 @@ public class CreditPointsService {
         return success;
     }
 
+    /**
+     * A fresh idempotency key for one checkout's redemption
+     */
+    public String newRedemptionKey(String username) {
+        return "redeem:" + username + ":" + UUID.randomUUID();
+    }
+
     public boolean redeemPoints(String username, int points) {
-        int currentPoints = dbManager.getUserCreditPoints(username);
-        
-        if (currentPoints < points) {
-            System.err.println("Insufficient points for " + username);
-            return false;
-        }
-        
-        boolean success = dbManager.deductCreditPoints(username, points);
+        return redeemPoints(username, points, newRedemptionKey(username));
+    }
+
+    /**
+     * Take points for a discount in one conditional update; fails, without
+     * touching the balance, if the user no longer has enough. Retrying with
+     * the same key never charges twice.
+     */
+    public boolean redeemPoints(String username, int points, String redemptionKey) {
+        boolean success = dbManager.redeemCreditPoints(username, points, redemptionKey);
         
         if (success) {
             dbManager.addUserNotification(
@@ -137,11 +242,31 @@ public class CreditPointsService {
                 String.format("You redeemed %d credit points for a discount!", points)
             );
             System.out.printf("%s redeemed %d points\n", username, points);
+        } else {
+            System.err.println("Insufficient points for " + username);
         }
         
         return success;
     }
 
+    /**
+     * Give back a redemption whose payment failed. Safe to call more than once.
+     */
+    public boolean refundRedemption(String username, int points, String redemptionKey) {
+        return dbManager.refundCreditRedemption(username, points, redemptionKey);
+    }
+
+    public List<Document> getPointsHistory(String username, int limit) {
+        return dbManager.getCreditHistory(username, limit);
+    }
+
+    /**
+     * Recompute every cached balance from the credit ledger
+     */
+    public void rebuildBalances() {
+        dbManager.rebuildCreditBalances();
+    }
+
     public double calculateDiscount(int points) {
         return points * 0.10;
     }
@@ -1,9 +1,13 @@
 package com.eventbooking.services;
 
+import com.eventbooking.AppConfig;
+import com.eventbooking.database.DatabaseManager;
+
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.YearMonth;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -12,17 +16,24 @@ public class DailyTaskScheduler {
 
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
     private final CreditPointsService creditService = CreditPointsService.getInstance();
+    private final ReminderService reminderService = ReminderService.getInstance();
 
     public void start() {
         // Define the task to be executed
         Runnable dailyTask = () -> {
             try {
                 System.out.println("SCHEDULER: Executing daily tasks at " + LocalDateTime.now());
-                creditService.awardDailyCredits();
+                // Runs just after midnight, so the day (and month) being awarded is the one that just ended
+                LocalDate yesterday = LocalDate.now().minusDays(1);
+                creditService.awardDailyCredits(yesterday);
+                if (LocalDate.now().getDayOfMonth() == 1) {
+                    creditService.awardMonthlyCredits(YearMonth.from(yesterday));
+                }
             } catch (Exception e) {
                 System.err.println("SCHEDULER: An error occurred during the daily scheduled task.");
                 e.printStackTrace();
             }
+            DatabaseManager.getInstance().pruneNotifications();
         };
 
         // Calculate the initial delay until the next midnight
@@ -33,10 +44,40 @@ public class DailyTaskScheduler {
         // Schedule the task to run at midnight, and then every 24 hours
         scheduler.scheduleAtFixedRate(dailyTask, initialDelay, TimeUnit.DAYS.toSeconds(1), TimeUnit.SECONDS);
 
+        scheduleReminders();
+
         System.out.println("Daily Task Scheduler Initialized.");
         System.out.println("Next automatic credit point distribution will be at: " + nextRun);
     }
 
+    /**
+     * Event-day reminders go out daily at reminders.sendAtHour (8). If the
+     * application starts later than that, today's reminders are sent straight
+     * away; reminders already sent are never repeated.
+     */
+    private void scheduleReminders() {
+        int sendAtHour = AppConfig.getInstance().getInt("reminders.sendAtHour", 8);
+        Runnable reminderTask = () -> {
+            try {
+                System.out.println("SCHEDULER: Sending event-day reminders at " + LocalDateTime.now());
+                reminderService.sendEventDayReminders(LocalDate.now());
+            } catch (Exception e) {
+                System.err.println("SCHEDULER: An error occurred while sending event-day reminders.");
+                e.printStackTrace();
+            }
+        };
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime nextRun = now.toLocalDate().atTime(sendAtHour, 0);
+        if (!nextRun.isAfter(now)) {
+            scheduler.execute(reminderTask);
+            nextRun = nextRun.plusDays(1);
+        }
+        long initialDelay = Duration.between(now, nextRun).getSeconds();
+        scheduler.scheduleAtFixedRate(reminderTask, initialDelay, TimeUnit.DAYS.toSeconds(1), TimeUnit.SECONDS);
+        System.out.println("Next automatic event-day reminders will be at: " + nextRun);
+    }
+
     public void stop() {
         scheduler.shutdown();
         try {
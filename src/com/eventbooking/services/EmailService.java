@@ -1,9 +1,12 @@
 package com.eventbooking.services;
 
+import com.eventbooking.AppConfig;
 import com.eventbooking.models.Event; // Added import for Event model
 import jakarta.mail.*;
 import jakarta.mail.internet.*;
+import java.io.UnsupportedEncodingException;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.Properties;
 
@@ -11,36 +14,90 @@ public class EmailService {
     private static EmailService instance;
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("MMM dd, yyyy HH:mm:ss");
     
-    // Toggle between real emails and simulation
-    private static final boolean ENABLE_REAL_EMAILS = true; // SET TO true FOR REAL EMAILS
-    
+    private final AppConfig config = AppConfig.getInstance();
+
     // ========== EMAIL CONFIGURATION ==========
-    // IMPORTANT: Update these with your actual SMTP credentials
-    private static final String SMTP_HOST = "smtp.gmail.com";
-    private static final String SMTP_PORT = "587";
-    private static final String FROM_EMAIL = "arhi.24.2007@gmail.com"; // CHANGE THIS
-    private static final String EMAIL_PASSWORD = "hylookuhzsmxadgx"; // CHANGE THIS (use App Password for Gmail)
-    private static final String FROM_NAME = "Event Booking System";
+    // Set in eventbooking.properties (mail.*); credentials go in the git-ignored
+    // eventbooking.local.properties or -D properties. For local testing point
+    // mail.smtp.host/port at an SMTP stand-in (e.g. MailHog on localhost:1025)
+    // and set mail.smtp.auth=false, mail.smtp.starttls=false.
+    private final boolean enableRealEmails = config.getBoolean("mail.enabled", true);
+    private final String smtpHost = config.getString("mail.smtp.host", "smtp.gmail.com");
+    private final String smtpPort = config.getString("mail.smtp.port", "587");
+    private final boolean smtpAuth = config.getBoolean("mail.smtp.auth", true);
+    private final boolean smtpStartTls = config.getBoolean("mail.smtp.starttls", true);
+    private final String fromEmail = config.getString("mail.from.address", "");
+    private final String emailPassword = config.getString("mail.smtp.password", "");
+    private final String fromName = config.getString("mail.from.name", "Event Booking System");
+    private MailDispatcher dispatcher;
 
     private EmailService() {
-        if (ENABLE_REAL_EMAILS) {
+        if (enableRealEmails) {
             System.out.println("========================================");
             System.out.println("[EMAIL] Real Email Mode ENABLED");
-            System.out.println("[EMAIL] SMTP Host: " + SMTP_HOST);
-            System.out.println("[EMAIL] From: " + FROM_EMAIL);
+            System.out.println("[EMAIL] SMTP Host: " + smtpHost + ":" + smtpPort);
+            System.out.println("[EMAIL] From: " + fromEmail);
             System.out.println("========================================");
             
-            if (FROM_EMAIL.contains("your-email") || EMAIL_PASSWORD.contains("your-app-password") || EMAIL_PASSWORD.length() < 10) {
-                System.err.println("[WARNING] Email credentials not configured! Update FROM_EMAIL and EMAIL_PASSWORD in EmailService.java");
+            if (smtpAuth && (fromEmail.isEmpty() || emailPassword.length() < 10)) {
+                System.err.println("[WARNING] Email credentials not configured! Set mail.from.address and mail.smtp.password in eventbooking.local.properties or with -D");
             } else {
                 System.out.println("[SUCCESS] Email credentials configured!");
                 System.out.println("========================================");
             }
+            startDispatcher();
         } else {
             System.out.println("[EMAIL] Simulation Mode - Emails will be logged to the console only.");
         }
     }
 
+    private void startDispatcher() {
+        try {
+            dispatcher = new MailDispatcher(createSession(), new InternetAddress(fromEmail, fromName),
+                config.getInt("mail.workers", 4),
+                config.getInt("mail.queue.capacity", 10000),
+                config.getInt("mail.maxMessagesPerConnection", 100),
+                config.getInt("mail.maxAttempts", 5),
+                config.getLong("mail.retryBackoffMillis", 1000),
+                config.getLong("mail.queue.offerTimeoutMillis", 5000));
+            Runtime.getRuntime().addShutdownHook(new Thread(
+                () -> dispatcher.shutdown(config.getLong("mail.shutdownDrainMillis", 10000)), "mail-shutdown"));
+        } catch (UnsupportedEncodingException e) {
+            System.err.println("[EMAIL ERROR] Invalid sender name, emails will only be logged: " + e.getMessage());
+        }
+    }
+
+    private Session createSession() {
+        Properties props = new Properties();
+        props.put("mail.smtp.host", smtpHost);
+        props.put("mail.smtp.port", smtpPort);
+        props.put("mail.smtp.auth", String.valueOf(smtpAuth));
+        props.put("mail.smtp.starttls.enable", String.valueOf(smtpStartTls));
+        if (smtpStartTls) {
+            props.put("mail.smtp.ssl.protocols", "TLSv1.2");
+            props.put("mail.smtp.ssl.trust", smtpHost);
+        }
+        props.put("mail.smtp.connectiontimeout", config.getString("mail.smtp.connectTimeoutMillis", "10000"));
+        props.put("mail.smtp.timeout", config.getString("mail.smtp.timeoutMillis", "30000"));
+        if (!smtpAuth) {
+            return Session.getInstance(props);
+        }
+        String username = config.getString("mail.smtp.username", fromEmail);
+        return Session.getInstance(props, new Authenticator() {
+            @Override
+            protected PasswordAuthentication getPasswordAuthentication() {
+                return new PasswordAuthentication(username, emailPassword);
+            }
+        });
+    }
+
+    /**
+     * The outbound queue, or null in simulation mode
+     */
+    public MailDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
     public static synchronized EmailService getInstance() {
         if (instance == null) {
             instance = new EmailService();
@@ -167,6 +224,15 @@ public class EmailService {
     public boolean sendCreditPointsNotification(String toEmail, String username,
                                                int rank, int creditPoints, 
                                                int ticketsPurchased) {
+        return sendCreditPointsNotification(toEmail, username, rank, creditPoints, ticketsPurchased, YearMonth.now());
+    }
+
+    /**
+     * Send monthly credit points notification for the given month
+     */
+    public boolean sendCreditPointsNotification(String toEmail, String username,
+                                               int rank, int creditPoints,
+                                               int ticketsPurchased, YearMonth month) {
         String subject = "Monthly Credit Points Awarded - Rank #" + rank;
         String body = String.format(
             "Dear %s,\n\n" +
@@ -183,7 +249,7 @@ public class EmailService {
             "Best regards,\n" +
             "Event Booking Team",
             username, rank, creditPoints, ticketsPurchased,
-            LocalDateTime.now().format(DateTimeFormatter.ofPattern("MMMM yyyy"))
+            month.format(DateTimeFormatter.ofPattern("MMMM yyyy"))
         );
         
         return sendEmail(toEmail, subject, body);
@@ -212,66 +278,17 @@ public class EmailService {
     }
 
     /**
-     * Core email sending method - REAL IMPLEMENTATION
+     * Core email sending method. Queues the message for the dispatcher and
+     * returns straight away.
+     * @return true if the message was accepted for delivery
      */
     private boolean sendEmail(String toEmail, String subject, String body) {
-        if (!ENABLE_REAL_EMAILS) {
+        if (!enableRealEmails || dispatcher == null) {
             // Simulation mode - just log to console
             return logEmailToConsole(toEmail, subject, body);
         }
-        
-        try {
-            Properties props = new Properties();
-            props.put("mail.smtp.host", SMTP_HOST);
-            props.put("mail.smtp.port", SMTP_PORT);
-            props.put("mail.smtp.auth", "true");
-            props.put("mail.smtp.starttls.enable", "true");
-            props.put("mail.smtp.ssl.protocols", "TLSv1.2");
-            props.put("mail.smtp.ssl.trust", SMTP_HOST);
-            
-            Authenticator auth = new Authenticator() {
-                @Override
-                protected PasswordAuthentication getPasswordAuthentication() {
-                    return new PasswordAuthentication(FROM_EMAIL, EMAIL_PASSWORD);
-                }
-            };
-            
-            Session session = Session.getInstance(props, auth);
-            
-            Message message = new MimeMessage(session);
-            message.setFrom(new InternetAddress(FROM_EMAIL, FROM_NAME));
-            message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(toEmail));
-            message.setSubject(subject);
-            message.setText(body);
-            message.setSentDate(new java.util.Date());
-            
-            Transport.send(message);
-            
-            System.out.println("[EMAIL SUCCESS] Email sent to: " + toEmail);
-            System.out.println("[EMAIL] Subject: " + subject);
-            return true;
-            
-        } catch (AuthenticationFailedException e) {
-            System.err.println("[EMAIL FATAL ERROR] Authentication failed. This is the most common error.");
-            System.err.println("--> Please verify your FROM_EMAIL and EMAIL_PASSWORD in EmailService.java.");
-            System.err.println("--> If using Gmail, you MUST enable 2-Factor Authentication and generate an 'App Password'.");
-            System.err.println("--> Your regular Gmail password will NOT work.");
-            System.err.println("--> Guide: https://myaccount.google.com/apppasswords");
-            e.printStackTrace();
-            return false;
-            
-        } catch (MessagingException e) {
-            System.err.println("[EMAIL ERROR] Failed to send email. This could be a network issue.");
-            System.err.println("--> Check your internet connection and firewall settings.");
-            System.err.println("--> Ensure the SMTP_HOST and SMTP_PORT are correct.");
-            e.printStackTrace();
-            return false;
-            
-        } catch (Exception e) {
-            System.err.println("[EMAIL UNEXPECTED ERROR] An unexpected error occurred: " + e.getMessage());
-            e.printStackTrace();
-            return false;
-        }
+        MailDispatcher.OutboundEmail email = dispatcher.submit(toEmail, subject, body);
+        return email.getStatus() != MailDispatcher.MailStatus.REJECTED;
     }
 
     /**
@@ -283,7 +300,7 @@ public class EmailService {
             System.out.println("[EMAIL] EMAIL NOTIFICATION (SIMULATION MODE)");
             System.out.println("======================================================================");
             System.out.println("To: " + toEmail);
-            System.out.println("From: " + FROM_EMAIL);
+            System.out.println("From: " + fromEmail);
             System.out.println("Subject: " + subject);
             System.out.println("----------------------------------------------------------------------");
             System.out.println(body);
@@ -313,34 +330,20 @@ public class EmailService {
         System.out.println("\n========================================");
         System.out.println("[EMAIL] Testing Email Configuration");
         System.out.println("========================================");
-        System.out.println("Mode: " + (ENABLE_REAL_EMAILS ? "REAL EMAILS" : "SIMULATION"));
-        System.out.println("SMTP Host: " + SMTP_HOST);
-        System.out.println("SMTP Port: " + SMTP_PORT);
-        System.out.println("From Email: " + FROM_EMAIL);
+        System.out.println("Mode: " + (enableRealEmails ? "REAL EMAILS" : "SIMULATION"));
+        System.out.println("SMTP Host: " + smtpHost);
+        System.out.println("SMTP Port: " + smtpPort);
+        System.out.println("From Email: " + fromEmail);
         System.out.println("========================================");
         
-        if (!ENABLE_REAL_EMAILS) {
+        if (!enableRealEmails) {
             System.out.println("[EMAIL] Simulation mode - no actual test performed. Logging is active.");
             return true;
         }
         
         try {
-            Properties props = new Properties();
-            props.put("mail.smtp.host", SMTP_HOST);
-            props.put("mail.smtp.port", SMTP_PORT);
-            props.put("mail.smtp.auth", "true");
-            props.put("mail.smtp.starttls.enable", "true");
-            props.put("mail.smtp.ssl.protocols", "TLSv1.2");
-            
-            Session session = Session.getInstance(props, new Authenticator() {
-                @Override
-                protected PasswordAuthentication getPasswordAuthentication() {
-                    return new PasswordAuthentication(FROM_EMAIL, EMAIL_PASSWORD);
-                }
-            });
-            
-            Transport transport = session.getTransport("smtp");
-            transport.connect(SMTP_HOST, FROM_EMAIL, EMAIL_PASSWORD);
+            Transport transport = createSession().getTransport("smtp");
+            transport.connect();
             transport.close();
             
             System.out.println("[SUCCESS] SMTP connection successful!");
@@ -0,0 +1,182 @@
+package com.eventbooking.services;
+
+import com.eventbooking.AppConfig;
+import com.eventbooking.database.DatabaseManager;
+import com.eventbooking.models.Booking;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Event Change Job - notifies every attendee of a cancelled or postponed event.
+ *
+ * A cancellation marks all active bookings as refunded with one updateMany,
+ * then walks the affected bookings in id order, one batch at a time: one $in
+ * query for the emails, one transaction for the user and sales stats, the
+ * notifications (insertMany) and the checkpoint, then the emails are handed
+ * to the mail dispatcher's queue. Progress lives in the "jobs" collection, so
+ * an interrupted job continues from its last committed batch when the
+ * application next starts (see resumeUnfinished).
+ *
+ * Batch size is "jobs.batchSize" (500).
+ */
+public class EventChangeJob {
+    public static final String CANCEL = "CANCEL";
+    public static final String POSTPONE = "POSTPONE";
+    private static final String STATUS_DONE = "DONE";
+
+    /**
+     * Receives (processed, total) after every committed batch
+     */
+    public interface ProgressListener {
+        void onProgress(int processed, int total);
+    }
+
+    private final DatabaseManager dbManager = DatabaseManager.getInstance();
+    private final EmailService emailService = EmailService.getInstance();
+    private final int batchSize = AppConfig.getInstance().getInt("jobs.batchSize", 500);
+    private final String jobId;
+    private final Document spec;
+
+    private EventChangeJob(String jobId, Document spec) {
+        this.jobId = jobId;
+        this.spec = spec;
+    }
+
+    /**
+     * Refund and notify all attendees, then delete the event
+     */
+    public static EventChangeJob cancellation(int eventId, String eventName, String reason) {
+        return new EventChangeJob("cancel-event-" + eventId, new Document("type", CANCEL)
+            .append("eventId", eventId)
+            .append("eventName", eventName)
+            .append("reason", reason));
+    }
+
+    /**
+     * Move attendees' bookings to the new date and notify them
+     */
+    public static EventChangeJob postponement(int eventId, String eventName, LocalDate oldDate,
+                                              LocalDate newDate, String reason) {
+        return new EventChangeJob("postpone-event-" + eventId + "-" + System.currentTimeMillis(),
+            new Document("type", POSTPONE)
+                .append("eventId", eventId)
+                .append("eventName", eventName)
+                .append("oldDate", oldDate.toString())
+                .append("newDate", newDate.toString())
+                .append("reason", reason));
+    }
+
+    /**
+     * Finish every job a previous run left behind. Called once at startup.
+     */
+    public static void resumeUnfinished() {
+        for (Document job : DatabaseManager.getInstance().getUnfinishedJobs()) {
+            String jobId = job.getString("_id");
+            System.out.println("[JOB] Resuming " + jobId + " at booking " + job.get("lastBookingId"));
+            try {
+                new EventChangeJob(jobId, job).run(null);
+            } catch (Exception e) {
+                System.err.println("[JOB ERROR] Could not resume " + jobId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Run (or continue) the job on the calling thread.
+     * @return the number of bookings processed over the job's lifetime
+     */
+    public int run(ProgressListener listener) {
+        Document job = dbManager.startOrResumeJob(jobId, spec);
+        if (STATUS_DONE.equals(job.getString("status"))) {
+            return job.getInteger("processed", 0);
+        }
+        int eventId = job.getInteger("eventId");
+        boolean cancel = CANCEL.equals(job.getString("type"));
+        String reason = job.getString("reason");
+
+        // Both steps are idempotent, so repeating them on resume is harmless
+        if (cancel) {
+            dbManager.cancelActiveBookingsForEvent(eventId, reason, jobId);
+        } else {
+            dbManager.updateBookingEventDates(eventId, LocalDate.parse(job.getString("newDate")));
+        }
+
+        String bookingFilterJob = cancel ? jobId : null;
+        int lastBookingId = job.getInteger("lastBookingId", 0);
+        int processed = job.getInteger("processed", 0);
+        Integer storedTotal = job.getInteger("total");
+        int total;
+        if (storedTotal == null) {
+            total = (int) dbManager.countBookings(eventId, bookingFilterJob);
+            dbManager.updateJob(jobId, Updates.set("total", total));
+        } else {
+            total = storedTotal;
+        }
+        System.out.println("[JOB] " + jobId + ": " + processed + "/" + total + " bookings processed");
+        if (listener != null) listener.onProgress(processed, total);
+
+        List<Booking> page;
+        while (!(page = dbManager.getBookingsPage(eventId, bookingFilterJob, lastBookingId, batchSize)).isEmpty()) {
+            Set<String> usernames = new LinkedHashSet<>();
+            Map<String, List<String>> notifications = new HashMap<>();
+            for (Booking booking : page) {
+                usernames.add(booking.getUsername());
+                notifications.computeIfAbsent(booking.getUsername(), u -> new ArrayList<>())
+                    .add(notificationFor(job, booking));
+            }
+            Map<String, String> emails = dbManager.getEmailsForUsers(usernames);
+
+            lastBookingId = page.get(page.size() - 1).getId();
+            dbManager.commitJobBatch(jobId, eventId, lastBookingId, page.size(),
+                cancel ? page : Collections.emptyList(), notifications);
+            processed += page.size();
+
+            // Emails go out only after the batch is committed, so a resumed job
+            // never mails the same attendee twice
+            for (Booking booking : page) {
+                String email = emails.get(booking.getUsername());
+                if (email != null) sendEmail(job, booking, email);
+            }
+            if (listener != null) listener.onProgress(processed, Math.max(total, processed));
+        }
+
+        if (cancel) {
+            dbManager.deleteEvent(eventId);
+        }
+        dbManager.updateJob(jobId, Updates.combine(
+            Updates.set("status", STATUS_DONE),
+            Updates.set("finishedAt", new Date())));
+        System.out.println("[JOB] " + jobId + " finished: " + processed + " bookings");
+        return processed;
+    }
+
+    private static String notificationFor(Document job, Booking booking) {
+        if (CANCEL.equals(job.getString("type"))) {
+            return String.format("❌ Event '%s' has been cancelled. Full refund of $%.2f processed.",
+                job.getString("eventName"), booking.getTotalPrice());
+        }
+        return String.format("📅 Event '%s' has been rescheduled from %s to %s.",
+            job.getString("eventName"), job.getString("oldDate"), job.getString("newDate"));
+    }
+
+    private void sendEmail(Document job, Booking booking, String email) {
+        if (CANCEL.equals(job.getString("type"))) {
+            emailService.sendEventCancellationNotification(email, booking.getUsername(),
+                job.getString("eventName"), booking.getTotalPrice(), job.getString("reason"));
+        } else {
+            emailService.sendEventPostponementNotification(email, booking.getUsername(),
+                job.getString("eventName"), job.getString("oldDate"), job.getString("newDate"),
+                job.getString("reason"));
+        }
+    }
+}
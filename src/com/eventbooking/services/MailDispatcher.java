@@ -0,0 +1,284 @@
+package com.eventbooking.services;
+
+import jakarta.mail.Address;
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mail Dispatcher - bounded outbound queue drained by a pool of SMTP workers.
+ *
+ * Each worker keeps its own connected Transport and sends many messages over
+ * it, reconnecting only when the connection drops or has carried
+ * maxMessagesPerConnection messages. Callers never wait for SMTP: submit()
+ * only blocks (up to offerTimeoutMillis) when the queue is full, which is the
+ * backpressure signal. Transient failures are retried with exponential
+ * backoff; every message's status can be looked up by its ID.
+ */
+public class MailDispatcher {
+    private static final int STATUS_HISTORY = 10_000;
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+
+    private final Session session;
+    private final InternetAddress from;
+    private final BlockingQueue<OutboundEmail> queue;
+    private final int maxMessagesPerConnection;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long offerTimeoutMillis;
+    private final Thread[] workers;
+    private final ScheduledExecutorService retryScheduler;
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final Map<Long, OutboundEmail> recent = new LinkedHashMap<Long, OutboundEmail>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, OutboundEmail> eldest) {
+            return size() > STATUS_HISTORY;
+        }
+    };
+    private volatile boolean running = true;
+
+    public MailDispatcher(Session session, InternetAddress from, int workerCount, int queueCapacity,
+                          int maxMessagesPerConnection, int maxAttempts, long baseBackoffMillis,
+                          long offerTimeoutMillis) {
+        this.session = session;
+        this.from = from;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "mail-retry");
+            t.setDaemon(true);
+            return t;
+        });
+        this.workers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Thread(this::runWorker, "mail-worker-" + (i + 1));
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        System.out.println("[EMAIL] Dispatcher started: " + workerCount + " workers, queue capacity " + queueCapacity);
+    }
+
+    /**
+     * Queue a message. Blocks only while the queue is full.
+     * @return the tracked message; its status is REJECTED if the queue stayed full
+     */
+    public OutboundEmail submit(String to, String subject, String body) {
+        OutboundEmail email = new OutboundEmail(nextId.incrementAndGet(), to, subject, body);
+        track(email);
+        try {
+            if (running && queue.offer(email, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return email;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        email.status = MailStatus.REJECTED;
+        email.lastError = "Mail queue full";
+        System.err.println("[EMAIL ERROR] Queue full, rejected email to " + to);
+        return email;
+    }
+
+    public MailStatus getStatus(long id) {
+        synchronized (recent) {
+            OutboundEmail email = recent.get(id);
+            return email == null ? null : email.status;
+        }
+    }
+
+    public int getQueueDepth() { return queue.size(); }
+    public long getSentCount() { return sentCount.get(); }
+    public long getFailedCount() { return failedCount.get(); }
+    public long getRetryCount() { return retryCount.get(); }
+
+    /**
+     * Stop accepting mail and give the workers up to timeoutMillis to drain
+     * the queue.
+     */
+    public void shutdown(long timeoutMillis) {
+        running = false;
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!queue.isEmpty() && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        retryScheduler.shutdownNow();
+        for (Thread worker : workers) worker.interrupt();
+        System.out.println("[EMAIL] Dispatcher stopped: sent=" + sentCount + ", failed=" + failedCount
+            + ", still queued=" + queue.size());
+    }
+
+    private void track(OutboundEmail email) {
+        synchronized (recent) {
+            recent.put(email.id, email);
+        }
+    }
+
+    // ==========================================================
+    // == WORKERS ==
+    // ==========================================================
+
+    private void runWorker() {
+        Transport transport = null;
+        int sentOnConnection = 0;
+        while (running || !queue.isEmpty()) {
+            OutboundEmail email;
+            try {
+                email = queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (email == null) {
+                // Idle: drop the connection rather than let the server time it out mid-send
+                transport = close(transport);
+                continue;
+            }
+
+            email.status = MailStatus.SENDING;
+            email.attempts++;
+            try {
+                // No isConnected() probe here: it costs a NOOP round trip per message.
+                // A dropped connection surfaces as an exception and is retried.
+                if (transport == null || sentOnConnection >= maxMessagesPerConnection) {
+                    close(transport);
+                    transport = session.getTransport("smtp");
+                    transport.connect();
+                    sentOnConnection = 0;
+                }
+                Message message = buildMessage(email);
+                transport.sendMessage(message, message.getAllRecipients());
+                sentOnConnection++;
+                email.status = MailStatus.SENT;
+                sentCount.incrementAndGet();
+                System.out.println("[EMAIL SUCCESS] Email sent to: " + email.to + " (" + email.subject + ")");
+            } catch (MessagingException | RuntimeException e) {
+                transport = close(transport);
+                handleFailure(email, e);
+            }
+        }
+        close(transport);
+    }
+
+    private Message buildMessage(OutboundEmail email) throws MessagingException {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(from);
+        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(email.to));
+        message.setSubject(email.subject);
+        message.setText(email.body);
+        message.setSentDate(new Date());
+        return message;
+    }
+
+    private void handleFailure(OutboundEmail email, Exception e) {
+        email.lastError = e.getMessage();
+        if (isPermanent(e) || email.attempts >= maxAttempts) {
+            email.status = MailStatus.FAILED;
+            failedCount.incrementAndGet();
+            System.err.println("[EMAIL ERROR] Giving up on email to " + email.to + " after "
+                + email.attempts + " attempt(s): " + e.getMessage());
+            if (e instanceof AuthenticationFailedException) {
+                System.err.println("--> Check mail.smtp.username / mail.smtp.password (Gmail needs an App Password).");
+            }
+            return;
+        }
+        long backoff = Math.min(MAX_BACKOFF_MILLIS, baseBackoffMillis << (email.attempts - 1));
+        email.status = MailStatus.RETRYING;
+        retryCount.incrementAndGet();
+        System.err.println("[EMAIL] Send to " + email.to + " failed (" + e.getMessage() + "), retrying in "
+            + backoff + "ms");
+        try {
+            retryScheduler.schedule(() -> requeue(email), backoff, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException rejected) {
+            email.status = MailStatus.FAILED;
+            failedCount.incrementAndGet();
+        }
+    }
+
+    private void requeue(OutboundEmail email) {
+        email.status = MailStatus.QUEUED;
+        if (!queue.offer(email)) {
+            // Queue is full right now; try again later rather than blocking the scheduler
+            retryScheduler.schedule(() -> requeue(email), baseBackoffMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Bad addresses and bad credentials will not fix themselves
+     */
+    private static boolean isPermanent(Exception e) {
+        if (e instanceof AuthenticationFailedException) return true;
+        if (e instanceof SendFailedException) {
+            Address[] invalid = ((SendFailedException) e).getInvalidAddresses();
+            return invalid != null && invalid.length > 0;
+        }
+        return e instanceof AddressException;
+    }
+
+    private static Transport close(Transport transport) {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException ignored) {
+                // already broken
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Delivery state of a queued message
+     */
+    public enum MailStatus { QUEUED, SENDING, RETRYING, SENT, FAILED, REJECTED }
+
+    /**
+     * One queued message and its delivery state
+     */
+    public static class OutboundEmail {
+        private final long id;
+        private final String to;
+        private final String subject;
+        private final String body;
+        private volatile MailStatus status = MailStatus.QUEUED;
+        private volatile int attempts;
+        private volatile String lastError;
+
+        OutboundEmail(long id, String to, String subject, String body) {
+            this.id = id;
+            this.to = to;
+            this.subject = subject;
+            this.body = body;
+        }
+
+        public long getId() { return id; }
+        public String getTo() { return to; }
+        public String getSubject() { return subject; }
+        public MailStatus getStatus() { return status; }
+        public int getAttempts() { return attempts; }
+        public String getLastError() { return lastError; }
+    }
+}
@@ -0,0 +1,73 @@
+package com.eventbooking.services;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Payment Gateway SPI.
+ *
+ * Implementations authorise a payment without blocking the caller; the
+ * returned future completes with the gateway's decision. Which gateway is
+ * used is set by the "payment.gateway" config key (a class name with a
+ * public no-arg constructor).
+ */
+public interface PaymentGateway {
+
+    /**
+     * Authorise a payment. The future should complete normally with a
+     * declined result for business failures and exceptionally only for
+     * technical ones (gateway unreachable, etc.).
+     */
+    CompletableFuture<PaymentResult> authorize(PaymentRequest request);
+
+    String getName();
+
+    /**
+     * A payment to authorise. The transaction ID is assigned by the caller
+     * and doubles as the idempotency key.
+     */
+    final class PaymentRequest {
+        private final String transactionId;
+        private final String username;
+        private final double amount;
+        private final String method;
+
+        public PaymentRequest(String transactionId, String username, double amount, String method) {
+            this.transactionId = transactionId;
+            this.username = username;
+            this.amount = amount;
+            this.method = method;
+        }
+
+        public String getTransactionId() { return transactionId; }
+        public String getUsername() { return username; }
+        public double getAmount() { return amount; }
+        public String getMethod() { return method; }
+    }
+
+    /**
+     * Outcome of an authorisation
+     */
+    final class PaymentResult {
+        private final boolean approved;
+        private final String transactionId;
+        private final String message;
+
+        private PaymentResult(boolean approved, String transactionId, String message) {
+            this.approved = approved;
+            this.transactionId = transactionId;
+            this.message = message;
+        }
+
+        public static PaymentResult approved(String transactionId) {
+            return new PaymentResult(true, transactionId, "Approved");
+        }
+
+        public static PaymentResult declined(String transactionId, String reason) {
+            return new PaymentResult(false, transactionId, reason);
+        }
+
+        public boolean isApproved() { return approved; }
+        public String getTransactionId() { return transactionId; }
+        public String getMessage() { return message; }
+    }
+}
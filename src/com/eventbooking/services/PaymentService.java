@@ -1,17 +1,32 @@
 package com.eventbooking.services;
 
+import com.eventbooking.AppConfig;
+
 import javax.swing.*;
 import java.awt.*;
-import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Payment Service - Fixed to support all payment methods
+ *
+ * Authorisation goes through a pluggable PaymentGateway (see
+ * "payment.gateway"); the dialogs here only collect the payment details.
  */
 public class PaymentService {
     private static PaymentService instance;
-    private Random random = new Random();
+    // Per-process prefix so IDs from concurrent app instances never collide
+    private static final String NODE_ID = Long.toString(36L * 36 * 36 * 36 + ThreadLocalRandom.current()
+        .nextLong(35L * 36 * 36 * 36), 36);
+    private final AtomicLong transactionSequence = new AtomicLong();
+    private final PaymentGateway gateway;
 
-    private PaymentService() {}
+    private PaymentService() {
+        this.gateway = loadGateway(AppConfig.getInstance().getString("payment.gateway",
+            SimulatedPaymentGateway.class.getName()));
+    }
 
     public static synchronized PaymentService getInstance() {
         if (instance == null) {
@@ -20,6 +35,49 @@ public class PaymentService {
         return instance;
     }
 
+    private static PaymentGateway loadGateway(String className) {
+        try {
+            PaymentGateway gateway = (PaymentGateway) Class.forName(className).getDeclaredConstructor().newInstance();
+            System.out.println("[PAYMENT] Using gateway: " + gateway.getName());
+            return gateway;
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            System.err.println("[PAYMENT ERROR] Cannot load gateway " + className + ", using simulator: " + e.getMessage());
+            return new SimulatedPaymentGateway();
+        }
+    }
+
+    /**
+     * Authorise a payment without any UI. The future completes with the
+     * gateway's decision; nothing blocks while the gateway works.
+     */
+    public CompletableFuture<PaymentGateway.PaymentResult> authorize(String username, double amount, String method) {
+        String prefix = prefixFor(method);
+        if (prefix == null) {
+            return CompletableFuture.completedFuture(
+                PaymentGateway.PaymentResult.declined(null, "Unsupported payment method: " + method));
+        }
+        return gateway.authorize(new PaymentGateway.PaymentRequest(newTransactionId(prefix), username, amount, method));
+    }
+
+    /**
+     * Unique across threads and app instances: method prefix, time, node, sequence
+     */
+    private String newTransactionId(String prefix) {
+        return (prefix + "-" + Long.toString(System.currentTimeMillis(), 36) + "-" + NODE_ID
+            + "-" + Long.toString(transactionSequence.incrementAndGet(), 36)).toUpperCase();
+    }
+
+    private static String prefixFor(String method) {
+        switch (method == null ? "" : method) {
+            case "UPI": return "UPI";
+            case "Credit Card": return "CC";
+            case "Debit Card": return "DC";
+            case "PayPal": return "PP";
+            case "Net Banking": return "NB";
+            default: return null;
+        }
+    }
+
     /**
      * Process payment with proper dialogs for each payment method
      * @return Transaction ID on success, null on failure/cancellation
@@ -30,23 +88,22 @@ public class PaymentService {
         System.out.println("Amount: $" + String.format("%.2f", amount));
         System.out.println("Method: " + method);
         
-        String transactionId = null;
-        
+        String processingMessage;
         switch (method) {
             case "UPI":
-                transactionId = processUPI(username, amount);
+                processingMessage = collectUPI(username, amount);
                 break;
             case "Credit Card":
-                transactionId = processCreditCard(username, amount);
+                processingMessage = collectCreditCard(username, amount);
                 break;
             case "Debit Card":
-                transactionId = processDebitCard(username, amount);
+                processingMessage = collectDebitCard(username, amount);
                 break;
             case "PayPal":
-                transactionId = processPayPal(username, amount);
+                processingMessage = collectPayPal(username, amount);
                 break;
             case "Net Banking":
-                transactionId = processNetBanking(username, amount);
+                processingMessage = collectNetBanking(username, amount);
                 break;
             default:
                 JOptionPane.showMessageDialog(null,
@@ -56,6 +113,16 @@ public class PaymentService {
                 return null;
         }
         
+        String transactionId = null;
+        if (processingMessage != null) {
+            PaymentGateway.PaymentResult result = awaitWithProgress(authorize(username, amount, method), processingMessage);
+            if (result != null && result.isApproved()) {
+                transactionId = result.getTransactionId();
+            } else if (result != null) {
+                System.out.println("Payment declined: " + result.getMessage());
+            }
+        }
+        
         if (transactionId != null) {
             System.out.println("✓ Payment Successful - Transaction ID: " + transactionId);
         } else {
@@ -66,7 +133,9 @@ public class PaymentService {
         return transactionId;
     }
 
-    private String processUPI(String username, double amount) {
+    // The collect* dialogs gather the payment details and return the progress
+    // message to show while the gateway works, or null if the user cancelled.
+    private String collectUPI(String username, double amount) {
         JPanel panel = new JPanel(new GridLayout(3, 2, 10, 10));
         JTextField upiField = new JTextField(username.toLowerCase() + "@upi");
         JPasswordField pinField = new JPasswordField();
@@ -82,13 +151,12 @@ public class PaymentService {
                 JOptionPane.showMessageDialog(null, "UPI ID and PIN cannot be empty.", "Input Error", JOptionPane.ERROR_MESSAGE);
                 return null;
             }
-            simulateProcessing("Processing UPI Payment...");
-            return "UPI" + System.currentTimeMillis();
+            return "Processing UPI Payment...";
         }
         return null;
     }
 
-    private String processCreditCard(String username, double amount) {
+    private String collectCreditCard(String username, double amount) {
         JPanel panel = new JPanel(new GridLayout(5, 2, 10, 10));
         JTextField cardField = new JTextField("4532 1234 5678 9010");
         JTextField nameField = new JTextField(username);
@@ -104,13 +172,12 @@ public class PaymentService {
         int result = JOptionPane.showConfirmDialog(null, panel, "Credit Card Payment", JOptionPane.OK_CANCEL_OPTION);
         
         if (result == JOptionPane.OK_OPTION) {
-            simulateProcessing("Authorizing Credit Card...");
-            return "CC" + System.currentTimeMillis();
+            return "Authorizing Credit Card...";
         }
         return null;
     }
 
-    private String processDebitCard(String username, double amount) {
+    private String collectDebitCard(String username, double amount) {
         JPanel panel = new JPanel(new GridLayout(5, 2, 10, 10));
         JTextField cardField = new JTextField("5412 7534 8901 2345");
         JTextField nameField = new JTextField(username);
@@ -126,13 +193,12 @@ public class PaymentService {
         int result = JOptionPane.showConfirmDialog(null, panel, "Debit Card Payment", JOptionPane.OK_CANCEL_OPTION);
         
         if (result == JOptionPane.OK_OPTION) {
-            simulateProcessing("Processing Debit Card Payment...");
-            return "DC" + System.currentTimeMillis();
+            return "Processing Debit Card Payment...";
         }
         return null;
     }
 
-    private String processPayPal(String username, double amount) {
+    private String collectPayPal(String username, double amount) {
         JPanel panel = new JPanel(new GridLayout(3, 2, 10, 10));
         JTextField emailField = new JTextField(username + "@example.com");
         JPasswordField passwordField = new JPasswordField();
@@ -144,13 +210,12 @@ public class PaymentService {
         int result = JOptionPane.showConfirmDialog(null, panel, "PayPal Payment", JOptionPane.OK_CANCEL_OPTION);
         
         if (result == JOptionPane.OK_OPTION) {
-            simulateProcessing("Redirecting to PayPal...");
-            return "PP" + System.currentTimeMillis();
+            return "Redirecting to PayPal...";
         }
         return null;
     }
 
-    private String processNetBanking(String username, double amount) {
+    private String collectNetBanking(String username, double amount) {
         String[] banks = {"State Bank", "HDFC Bank", "ICICI Bank", "Axis Bank", "Kotak Bank"};
         JComboBox<String> bankCombo = new JComboBox<>(banks);
         
@@ -158,24 +223,39 @@ public class PaymentService {
         
         if (result == JOptionPane.OK_OPTION) {
             String bank = (String) bankCombo.getSelectedItem();
-            simulateProcessing("Connecting to " + bank + "...");
-            return "NB" + System.currentTimeMillis();
+            return "Connecting to " + bank + "...";
         }
         return null;
     }
 
-    private void simulateProcessing(String message) {
-        JDialog loadingDialog = new JDialog((Frame) null, "Processing...", true);
-        JLabel label = new JLabel(message, JLabel.CENTER);
-        label.setBorder(BorderFactory.createEmptyBorder(25, 25, 25, 25));
-        loadingDialog.add(label);
-        loadingDialog.pack();
-        loadingDialog.setLocationRelativeTo(null);
-        
-        Timer timer = new Timer(1500, e -> loadingDialog.dispose());
-        timer.setRepeats(false);
-        timer.start();
-        
-        loadingDialog.setVisible(true);
+    /**
+     * Show a "Processing..." dialog for exactly as long as the gateway takes.
+     * The modal dialog keeps the UI responsive while we wait.
+     * @return the gateway result, or null if authorisation failed technically
+     */
+    private PaymentGateway.PaymentResult awaitWithProgress(CompletableFuture<PaymentGateway.PaymentResult> future,
+                                                           String message) {
+        if (!future.isDone()) {
+            JDialog loadingDialog = new JDialog((Frame) null, "Processing...", true);
+            JLabel label = new JLabel(message, JLabel.CENTER);
+            label.setBorder(BorderFactory.createEmptyBorder(25, 25, 25, 25));
+            loadingDialog.add(label);
+            loadingDialog.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+            loadingDialog.pack();
+            loadingDialog.setLocationRelativeTo(null);
+            future.whenComplete((result, error) -> SwingUtilities.invokeLater(loadingDialog::dispose));
+            if (!future.isDone()) {
+                loadingDialog.setVisible(true);
+            }
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            System.err.println("[PAYMENT ERROR] Gateway failure: " + e.getCause().getMessage());
+            return null;
+        }
     }
 }
\ No newline at end of file
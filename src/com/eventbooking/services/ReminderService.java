@@ -0,0 +1,103 @@
+package com.eventbooking.services;
+
+import com.eventbooking.database.DatabaseManager;
+import com.eventbooking.models.Event;
+import com.mongodb.client.MongoCursor;
+import org.bson.Document;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reminder Service - event-day reminder emails.
+ *
+ * A run first claims all un-reminded bookings for the day with one
+ * updateMany, then streams the distinct (user, event) pairs, with each user's
+ * email joined in by a single $lookup aggregation. The day's events are read
+ * with one query. Emails go onto the mail dispatcher's queue, so a run only
+ * takes as long as the database work. Claims a run could not turn into a
+ * queued email are handed back before it returns.
+ */
+public class ReminderService {
+    private static final int BATCH_SIZE = 500;
+    private static ReminderService instance;
+
+    private final DatabaseManager dbManager = DatabaseManager.getInstance();
+    private final EmailService emailService = EmailService.getInstance();
+
+    private ReminderService() {}
+
+    public static synchronized ReminderService getInstance() {
+        if (instance == null) {
+            instance = new ReminderService();
+        }
+        return instance;
+    }
+
+    /**
+     * Remind everyone booked for an event on the given date who has not
+     * been reminded yet. Safe to call repeatedly: bookings whose reminder
+     * was not queued, because the mail queue refused it or the run failed
+     * part way, are released for the next run.
+     * @return the number of reminders queued
+     */
+    public synchronized int sendEventDayReminders(LocalDate date) {
+        String runId = "reminder-" + date + "-" + System.currentTimeMillis();
+        long claimed = dbManager.claimRemindersForDate(date, runId);
+        if (claimed == 0) {
+            System.out.println("[REMINDER] No bookings left to remind for " + date);
+            return 0;
+        }
+
+        // eventId -> usernames that were reminded or have nothing to remind
+        Map<Integer, Set<String>> handled = new HashMap<>();
+        int queued = 0;
+        int refused = 0;
+        boolean complete = false;
+        try {
+            Map<Integer, Event> events = new HashMap<>();
+            for (Event event : dbManager.getEventsOnDate(date)) {
+                events.put(event.getId(), event);
+            }
+
+            try (MongoCursor<Document> targets = dbManager.streamReminderTargets(date, runId, BATCH_SIZE)) {
+                while (targets.hasNext()) {
+                    Document target = targets.next();
+                    int eventId = target.getInteger("eventId");
+                    String username = target.getString("username");
+                    Event event = events.get(eventId);
+                    String email = target.getString("email");
+                    if (event != null && email != null && !email.isEmpty()) {
+                        if (!emailService.sendEventReminderEmail(email, username, event)) {
+                            refused++;
+                            continue;
+                        }
+                        queued++;
+                    }
+                    handled.computeIfAbsent(eventId, id -> new HashSet<>()).add(username);
+                }
+            }
+            complete = true;
+        } finally {
+            if (!complete || refused > 0) {
+                releaseUnsent(date, runId, handled);
+            }
+        }
+        System.out.println("[REMINDER] " + date + ": " + claimed + " bookings, " + queued + " reminders queued");
+        return queued;
+    }
+
+    private void releaseUnsent(LocalDate date, String runId, Map<Integer, Set<String>> handled) {
+        try {
+            long released = dbManager.releaseReminderClaims(date, runId, handled);
+            if (released > 0) {
+                System.out.println("[REMINDER] Released " + released + " unsent reminder claims for " + date);
+            }
+        } catch (Exception e) {
+            System.err.println("[REMINDER ERROR] Could not release claims of run " + runId + ": " + e.getMessage());
+        }
+    }
+}
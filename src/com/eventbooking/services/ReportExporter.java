@@ -0,0 +1,215 @@
+package com.eventbooking.services;
+
+import com.eventbooking.AppConfig;
+import com.eventbooking.database.DatabaseManager;
+import com.mongodb.client.MongoCursor;
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Report Exporter - streams the booking ledger to a file.
+ *
+ * Bookings are read through a cursor export.batchSize (1000) at a time and
+ * written row by row through a buffered writer on a FileChannel, optionally
+ * gzipped, so memory use does not grow with the number of bookings. Files go
+ * to export.directory (the working directory by default).
+ *
+ * Formats: CSV, JSON Lines, or the text layout of the sales report with the
+ * ledger appended as fixed-width rows.
+ */
+public class ReportExporter {
+    private static final int WRITE_BUFFER_CHARS = 64 * 1024;
+    private static final String BORDER = "================================================================\n";
+    private static final List<String> LEDGER_FIELDS = Arrays.asList("id", "timestamp", "username", "eventId",
+        "eventName", "seatsBooked", "totalPrice", "paymentMethod", "paymentStatus", "status", "cancelled",
+        "refundAmount");
+    private static final JsonWriterSettings JSON_SETTINGS = JsonWriterSettings.builder()
+        .outputMode(JsonMode.RELAXED)
+        .dateTimeConverter((millis, writer) -> writer.writeString(Instant.ofEpochMilli(millis).toString()))
+        .build();
+
+    public enum Format {
+        TEXT("Text report", "txt"),
+        CSV("CSV ledger", "csv"),
+        JSONL("JSON Lines ledger", "jsonl");
+
+        private final String label;
+        private final String extension;
+
+        Format(String label, String extension) {
+            this.label = label;
+            this.extension = extension;
+        }
+
+        public String getExtension() { return extension; }
+
+        @Override
+        public String toString() { return label; }
+    }
+
+    /**
+     * Receives (rowsWritten, estimatedTotal) after every batch
+     */
+    public interface ProgressListener {
+        void onProgress(long written, long total);
+    }
+
+    private final DatabaseManager dbManager = DatabaseManager.getInstance();
+    private final int batchSize;
+    private final Path directory;
+
+    public ReportExporter() {
+        AppConfig config = AppConfig.getInstance();
+        this.batchSize = Math.max(1, config.getInt("export.batchSize", 1000));
+        this.directory = Paths.get(config.getString("export.directory", "."));
+    }
+
+    /**
+     * Write the export and return its path. The partial file is removed if
+     * the export fails or the thread is interrupted.
+     * @param reportText sales report to put above the ledger (TEXT only), may be empty
+     */
+    public Path export(Format format, boolean gzip, String reportText, ProgressListener listener) throws IOException {
+        String filename = "EventBooking_Report_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"))
+            + "." + format.getExtension() + (gzip ? ".gz" : "");
+        Path target = directory.resolve(filename);
+        Files.createDirectories(directory);
+
+        long total = dbManager.estimateBookingCount();
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                 StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             Writer out = open(channel, gzip);
+             MongoCursor<Document> ledger = dbManager.streamBookingLedger(LEDGER_FIELDS, batchSize)) {
+            writeHeader(format, out, reportText);
+            while (ledger.hasNext()) {
+                writeRow(format, out, ledger.next());
+                if (++written % batchSize == 0) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("Export cancelled after " + written + " rows");
+                    }
+                    if (listener != null) listener.onProgress(written, Math.max(total, written));
+                }
+            }
+            writeFooter(format, out, written);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+        if (listener != null) listener.onProgress(written, written);
+        System.out.println("[EXPORT] Wrote " + written + " bookings to " + target.toAbsolutePath());
+        return target;
+    }
+
+    private static Writer open(FileChannel channel, boolean gzip) throws IOException {
+        OutputStream stream = Channels.newOutputStream(channel);
+        if (gzip) {
+            stream = new GZIPOutputStream(stream, WRITE_BUFFER_CHARS);
+        }
+        return new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), WRITE_BUFFER_CHARS);
+    }
+
+    // ==========================================================
+    // == FORMATS ==
+    // ==========================================================
+
+    private static void writeHeader(Format format, Writer out, String reportText) throws IOException {
+        switch (format) {
+            case CSV:
+                out.write(String.join(",", LEDGER_FIELDS));
+                out.write('\n');
+                break;
+            case TEXT:
+                out.write("EVENT BOOKING SYSTEM - SALES REPORT\n");
+                out.write("Generated on: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("MMMM dd, yyyy 'at' HH:mm:ss")) + "\n");
+                out.write(BORDER + "\n");
+                if (reportText != null && !reportText.isEmpty()) {
+                    out.write(reportText);
+                    out.write("\n\n");
+                }
+                out.write(BORDER + "BOOKING LEDGER:\n" + BORDER);
+                out.write(String.format("%-8s %-16s %-15s %-30s %5s %10s  %s\n",
+                    "ID", "Booked", "User", "Event", "Seats", "Total", "Status"));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void writeRow(Format format, Writer out, Document booking) throws IOException {
+        switch (format) {
+            case CSV:
+                for (int i = 0; i < LEDGER_FIELDS.size(); i++) {
+                    if (i > 0) out.write(',');
+                    out.write(csv(booking.get(LEDGER_FIELDS.get(i))));
+                }
+                out.write('\n');
+                break;
+            case JSONL:
+                out.write(booking.toJson(JSON_SETTINGS));
+                out.write('\n');
+                break;
+            case TEXT:
+                out.write(String.format("%-8s %-16s %-15.15s %-30.30s %5s %10.2f  %s\n",
+                    booking.get("id"), text(booking.get("timestamp")), booking.getString("username"),
+                    booking.getString("eventName"), booking.get("seatsBooked"), number(booking.get("totalPrice")),
+                    booking.getString("status")));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void writeFooter(Format format, Writer out, long written) throws IOException {
+        if (format == Format.TEXT) {
+            out.write("\nTotal bookings: " + written + "\n");
+            out.write("\n" + BORDER + "End of Report\n" + BORDER);
+        }
+    }
+
+    private static String csv(Object value) {
+        String text = value instanceof Date
+            ? LocalDateTime.ofInstant(((Date) value).toInstant(), ZoneId.systemDefault()).toString()
+            : text(value);
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+
+    private static String text(Object value) {
+        if (value == null) return "";
+        if (value instanceof Date) {
+            return LocalDateTime.ofInstant(((Date) value).toInstant(), ZoneId.systemDefault())
+                .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
+        }
+        return value.toString();
+    }
+
+    private static double number(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0.0;
+    }
+}
@@ -0,0 +1,62 @@
+package com.eventbooking.services;
+
+import com.eventbooking.AppConfig;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local payment simulator, the default gateway.
+ *
+ * Each authorisation completes after a configurable latency (plus jitter)
+ * and is declined with a configurable probability. Outcomes are drawn from
+ * a seeded generator per request number, so a run with the same seed and
+ * request order sees the same approvals, declines and delays.
+ *
+ *   payment.simulator.latencyMillis  (300)
+ *   payment.simulator.jitterMillis   (200)
+ *   payment.simulator.failureRate    (0.0, between 0 and 1)
+ *   payment.simulator.seed           (42)
+ */
+public class SimulatedPaymentGateway implements PaymentGateway {
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double failureRate;
+    private final long seed;
+    private final AtomicLong requestNumber = new AtomicLong();
+
+    public SimulatedPaymentGateway() {
+        AppConfig config = AppConfig.getInstance();
+        this.latencyMillis = config.getLong("payment.simulator.latencyMillis", 300);
+        this.jitterMillis = config.getLong("payment.simulator.jitterMillis", 200);
+        this.failureRate = Double.parseDouble(config.getString("payment.simulator.failureRate", "0.0"));
+        this.seed = config.getLong("payment.simulator.seed", 42);
+    }
+
+    public SimulatedPaymentGateway(long latencyMillis, long jitterMillis, double failureRate, long seed) {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.failureRate = failureRate;
+        this.seed = seed;
+    }
+
+    @Override
+    public CompletableFuture<PaymentResult> authorize(PaymentRequest request) {
+        SplittableRandom random = new SplittableRandom(seed + requestNumber.getAndIncrement());
+        long delay = latencyMillis + (jitterMillis > 0 ? random.nextLong(jitterMillis + 1) : 0);
+        boolean declined = random.nextDouble() < failureRate;
+
+        Executor delayed = CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS);
+        return CompletableFuture.supplyAsync(() -> declined
+            ? PaymentResult.declined(request.getTransactionId(), "Declined by issuer (simulated)")
+            : PaymentResult.approved(request.getTransactionId()), delayed);
+    }
+
+    @Override
+    public String getName() {
+        return "Simulator";
+    }
+}
@@ -1,10 +1,13 @@
 package com.eventbooking.ui;
 
 import com.eventbooking.database.DatabaseManager;
+import com.eventbooking.database.NotificationFeed;
 import com.eventbooking.models.Event;
-import com.eventbooking.models.Booking;
+import com.eventbooking.notifications.NotificationSystem;
 import com.eventbooking.services.CreditPointsService;
 import com.eventbooking.services.EmailService;
+import com.eventbooking.services.ReminderService;
+import com.eventbooking.services.ReportExporter;
 import com.eventbooking.ui.PieChartPanel;
 
 import javax.swing.*;
@@ -16,9 +19,11 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import org.bson.Document;
+import org.bson.types.ObjectId;
 
 public class AdminDashboard extends JFrame {
     private DatabaseManager dbManager;
@@ -42,10 +47,12 @@ public class AdminDashboard extends JFrame {
     private JProgressBar reportsLoadingBar;
     private JProgressBar leaderboardLoadingBar;
     private JProgressBar notificationsLoadingBar;
+    private final List<ObjectId> notificationIds = new ArrayList<>(); // per table row
+    private NotificationFeed.Subscription inboxSubscription;
 
     public AdminDashboard(String username) {
         this.username = username;
-        this.dbManager = new DatabaseManager();
+        this.dbManager = DatabaseManager.getInstance();
         this.emailService = EmailService.getInstance();
         initializeUI();
     }
@@ -115,6 +122,7 @@ public class AdminDashboard extends JFrame {
         
         loadEvents();
         updateNotificationCount();
+        inboxSubscription = NotificationSystem.getInstance().subscribeInbox(username, this::inboxChanged);
         
         setVisible(true);
     }
@@ -303,21 +311,7 @@ public class AdminDashboard extends JFrame {
         SwingWorker<Integer, Void> worker = new SwingWorker<>() {
             @Override
             protected Integer doInBackground() throws Exception {
-                List<Booking> todaysBookings = dbManager.getBookingsForEventsOnDate(LocalDate.now());
-                if (todaysBookings.isEmpty()) {
-                    return 0;
-                }
-
-                int count = 0;
-                for (Booking booking : todaysBookings) {
-                    Document userDoc = dbManager.getUserDetails(booking.getUsername());
-                    Event event = dbManager.getEventById(booking.getEventId());
-                    if (userDoc != null && event != null) {
-                        emailService.sendEventReminderEmail(userDoc.getString("email"), booking.getUsername(), event);
-                        count++;
-                    }
-                }
-                return count;
+                return ReminderService.getInstance().sendEventDayReminders(LocalDate.now());
             }
 
             @Override
@@ -326,12 +320,12 @@ public class AdminDashboard extends JFrame {
                     int count = get();
                     if (count > 0) {
                         JOptionPane.showMessageDialog(AdminDashboard.this,
-                            "Successfully sent " + count + " event-day reminders.",
+                            "Successfully queued " + count + " event-day reminders.",
                             "Reminders Sent",
                             JOptionPane.INFORMATION_MESSAGE);
                     } else {
                         JOptionPane.showMessageDialog(AdminDashboard.this,
-                            "No active bookings found for any events today. No reminders were sent.",
+                            "No attendees of today's events are waiting for a reminder. No reminders were sent.",
                             "No Bookings Today",
                             JOptionPane.INFORMATION_MESSAGE);
                     }
@@ -403,28 +397,57 @@ public class AdminDashboard extends JFrame {
     }
 
     private void exportReport() {
-        if (reportsArea.getText().isEmpty()) {
-            JOptionPane.showMessageDialog(this, "Please generate a report first!", "No Report", JOptionPane.WARNING_MESSAGE);
+        JComboBox<ReportExporter.Format> formatCombo = new JComboBox<>(ReportExporter.Format.values());
+        JCheckBox gzipBox = new JCheckBox("Compress (gzip)");
+        JPanel options = new JPanel(new GridLayout(3, 1, 5, 5));
+        options.add(new JLabel("Export the booking ledger as:"));
+        options.add(formatCombo);
+        options.add(gzipBox);
+        if (JOptionPane.showConfirmDialog(this, options, "Export Report", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) {
             return;
         }
+        ReportExporter.Format format = (ReportExporter.Format) formatCombo.getSelectedItem();
+        boolean gzip = gzipBox.isSelected();
+        String reportText = reportsArea.getText();
 
-        try {
-            String filename = "EventBooking_Report_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".txt";
-            java.io.FileWriter writer = new java.io.FileWriter(filename, java.nio.charset.StandardCharsets.UTF_8);
-            writer.write("EVENT BOOKING SYSTEM - SALES REPORT\n");
-            writer.write("Generated on: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("MMMM dd, yyyy 'at' HH:mm:ss")) + "\n");
-            writer.write("================================================================\n\n");
-            writer.write(reportsArea.getText());
-            writer.write("\n\n================================================================\nEnd of Report\n================================================================\n");
-            writer.close();
-            String absolutePath = new java.io.File(filename).getAbsolutePath();
-            JOptionPane.showMessageDialog(this, "Report exported successfully!\n\nFile: " + filename + "\nLocation: " + absolutePath, "Export Success", JOptionPane.INFORMATION_MESSAGE);
-            dbManager.addAdminNotification(username, "Report exported: " + filename);
-            updateNotificationCount();
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, "Failed to export report:\n" + ex.getMessage(), "Export Error", JOptionPane.ERROR_MESSAGE);
-            ex.printStackTrace();
-        }
+        ProgressMonitor monitor = new ProgressMonitor(this, "Exporting bookings...", "", 0, 100);
+        monitor.setMillisToDecideToPopup(300);
+        SwingWorker<java.nio.file.Path, Void> worker = new SwingWorker<>() {
+            @Override
+            protected java.nio.file.Path doInBackground() throws Exception {
+                return new ReportExporter().export(format, gzip, reportText, (written, total) ->
+                    SwingUtilities.invokeLater(() -> {
+                        if (monitor.isCanceled()) {
+                            cancel(true);
+                            return;
+                        }
+                        monitor.setProgress((int) (written * 100 / Math.max(total, 1)));
+                        monitor.setNote(written + " of ~" + total + " bookings");
+                    }));
+            }
+
+            @Override
+            protected void done() {
+                monitor.close();
+                if (isCancelled()) {
+                    return;
+                }
+                try {
+                    java.nio.file.Path file = get();
+                    String filename = file.getFileName().toString();
+                    JOptionPane.showMessageDialog(AdminDashboard.this, "Report exported successfully!\n\nFile: " + filename
+                        + "\nLocation: " + file.toAbsolutePath(), "Export Success", JOptionPane.INFORMATION_MESSAGE);
+                    dbManager.addAdminNotification(username, "Report exported: " + filename);
+                    updateNotificationCount();
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(AdminDashboard.this, "Failed to export report:\n" + cause.getMessage(),
+                        "Export Error", JOptionPane.ERROR_MESSAGE);
+                    cause.printStackTrace();
+                }
+            }
+        };
+        worker.execute();
     }
 
     private void generateReport() {
@@ -444,10 +467,8 @@ public class AdminDashboard extends JFrame {
                 report.append("Generated: ").append(LocalDateTime.now().format(DateTimeFormatter.ofPattern("MMM dd, yyyy HH:mm:ss"))).append("\n\n");
 
                 List<Event> events = dbManager.getAllEvents();
-                List<Booking> bookings = dbManager.getAllBookings();
                 double totalRevenue = 0;
                 int totalTicketsSold = 0;
-                int totalActiveBookings = 0;
 
                 report.append("EVENT PERFORMANCE:\n").append(separator);
                 for (Event event : events) {
@@ -461,12 +482,23 @@ public class AdminDashboard extends JFrame {
                 }
 
                 report.append(topBorder).append("BOOKING STATISTICS:\n").append(separator);
-                for (Booking booking : bookings) {
-                    if (!booking.isCancelled()) totalActiveBookings++;
+                Document totals = dbManager.getBookingTotals();
+                long activeBookings = totals.getLong("activeBookings");
+                long cancelledBookings = totals.getLong("cancelledBookings");
+                report.append(String.format("Total Bookings: %d\n", activeBookings + cancelledBookings));
+                report.append(String.format("Active Bookings: %d\n", activeBookings));
+                report.append(String.format("Cancelled Bookings: %d\n", cancelledBookings));
+
+                report.append("\n").append(topBorder).append("LAST 7 DAYS:\n").append(separator);
+                List<Document> days = dbManager.getDailySales(7);
+                if (days.isEmpty()) {
+                    report.append("No bookings or cancellations in the last 7 days.\n");
+                }
+                for (Document day : days) {
+                    report.append(String.format("%s  Booked: %d (%d tickets, $%.2f)  Cancelled: %d (refunds $%.2f)\n",
+                        day.getString("_id"), count(day, "bookings"), count(day, "ticketsSold"), amount(day, "revenue"),
+                        count(day, "cancellations"), amount(day, "refunds")));
                 }
-                report.append(String.format("Total Bookings: %d\n", bookings.size()));
-                report.append(String.format("Active Bookings: %d\n", totalActiveBookings));
-                report.append(String.format("Cancelled Bookings: %d\n", bookings.size() - totalActiveBookings));
 
                 report.append("\n").append(topBorder).append("FINANCIAL SUMMARY:\n").append(separator);
                 report.append(String.format("Total Tickets Sold: %d\n", totalTicketsSold));
@@ -493,6 +525,17 @@ public class AdminDashboard extends JFrame {
         worker.execute();
     }
 
+    // Counters are stored as whichever numeric type $inc produced
+    private static long count(Document doc, String field) {
+        Object value = doc.get(field);
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    private static double amount(Document doc, String field) {
+        Object value = doc.get(field);
+        return value instanceof Number ? ((Number) value).doubleValue() : 0.0;
+    }
+
     private void showRevenueAnalysis() {
         SwingWorker<String, Void> worker = new SwingWorker<>() {
             @Override
@@ -648,7 +691,7 @@ public class AdminDashboard extends JFrame {
 
     private void awardDailyCreditsManually() {
         int confirm = JOptionPane.showConfirmDialog(this,
-            "This will calculate today's top attendees and award them credit points.\nThis task also runs automatically at midnight.\n\nDo you want to proceed with a manual award now?",
+            "This will award yesterday's top attendees their credit points.\nThis task also runs automatically at midnight; if it already ran, nothing is awarded twice.\n\nDo you want to proceed with a manual award now?",
             "Confirm Manual Award",
             JOptionPane.YES_NO_OPTION,
             JOptionPane.QUESTION_MESSAGE);
@@ -838,6 +881,7 @@ public class AdminDashboard extends JFrame {
                 try {
                     List<Document> notifications = get();
                     notificationsModel.setRowCount(0);
+                    notificationIds.clear();
                     for (Document notif : notifications) {
                         Object timestampObj = notif.get("timestamp");
                         String timestampStr;
@@ -851,6 +895,7 @@ public class AdminDashboard extends JFrame {
                             timestampStr = timestampObj.toString();
                         }
 
+                        notificationIds.add(notif.getObjectId("_id"));
                         notificationsModel.addRow(new Object[]{
                             notif.getBoolean("read", false) ? "Read" : "New",
                             notif.getString("message"),
@@ -875,12 +920,12 @@ public class AdminDashboard extends JFrame {
             JOptionPane.showMessageDialog(this, "Please select a notification!", "No Selection", JOptionPane.WARNING_MESSAGE);
             return;
         }
-        String timestamp = (String) notificationsModel.getValueAt(row, 2);
+        ObjectId notificationId = notificationIds.get(row);
         
         SwingWorker<Void, Void> worker = new SwingWorker<>() {
             @Override
             protected Void doInBackground() throws Exception {
-                dbManager.markNotificationAsRead(username, timestamp);
+                dbManager.markNotificationAsRead(username, notificationId);
                 return null;
             }
             
@@ -916,12 +961,12 @@ public class AdminDashboard extends JFrame {
             JOptionPane.showMessageDialog(this, "Please select a notification to delete!", "No Selection", JOptionPane.WARNING_MESSAGE);
             return;
         }
-        String timestamp = (String) notificationsModel.getValueAt(row, 2);
+        ObjectId notificationId = notificationIds.get(row);
         
         SwingWorker<Void, Void> worker = new SwingWorker<>() {
             @Override
             protected Void doInBackground() throws Exception {
-                dbManager.deleteNotification(username, timestamp);
+                dbManager.deleteNotification(username, notificationId);
                 return null;
             }
             
@@ -944,8 +989,7 @@ public class AdminDashboard extends JFrame {
             @Override
             protected void done() {
                 try {
-                    int unreadCount = get();
-                    unreadCountLabel.setText(unreadCount + " New");
+                    showUnreadCount(get());
                 } catch (Exception e) {
                     System.err.println("Error updating notification count: " + e.getMessage());
                 }
@@ -954,6 +998,30 @@ public class AdminDashboard extends JFrame {
         worker.execute();
     }
 
+    private void showUnreadCount(int unreadCount) {
+        unreadCountLabel.setText(unreadCount + " New");
+    }
+
+    /**
+     * Pushed by NotificationFeed when this user's inbox changes
+     */
+    private void inboxChanged(NotificationFeed.Update update) {
+        if (update.getUnread() != null) {
+            showUnreadCount(update.getUnread());
+        } else if (update.isResync()) {
+            updateNotificationCount();
+        }
+        if (update.getAdded() > 0 || update.isResync()) {
+            loadNotifications();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (inboxSubscription != null) inboxSubscription.close();
+        super.dispose();
+    }
+
     private JButton createActionButton(String text, Color bgColor) {
         JButton button = new JButton(text);
         button.setFont(new Font("Segoe UI", Font.BOLD, 13));
@@ -1,12 +1,14 @@
 package com.eventbooking.ui;
 
 import com.eventbooking.database.DatabaseManager;
+import com.eventbooking.database.NotificationFeed;
 import com.eventbooking.models.Booking;
 import com.eventbooking.models.Event;
 import com.eventbooking.notifications.NotificationSystem;
 import com.eventbooking.services.RefundService;
 import com.eventbooking.services.EmailService;
 import org.bson.Document;
+import org.bson.types.ObjectId;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -16,6 +18,7 @@ import java.awt.*;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -42,10 +45,13 @@ public class AttendeeDashboard extends JFrame {
     private JProgressBar eventsLoadingBar;
     private JProgressBar bookingsLoadingBar;
     private JProgressBar notificationsLoadingBar;
+    private JButton loadMoreNotificationsBtn;
+    private final List<ObjectId> notificationIds = new ArrayList<>(); // per table row
+    private NotificationFeed.Subscription inboxSubscription;
 
     public AttendeeDashboard(String username) {
         this.username = username;
-        this.dbManager = new DatabaseManager();
+        this.dbManager = DatabaseManager.getInstance();
         this.notificationSystem = NotificationSystem.getInstance();
         this.refundService = RefundService.getInstance();
         this.emailService = EmailService.getInstance();
@@ -131,6 +137,7 @@ public class AttendeeDashboard extends JFrame {
         add(tabbedPane, BorderLayout.CENTER);
         
         updateNotificationCount();
+        inboxSubscription = notificationSystem.subscribeInbox(username, this::inboxChanged);
         setVisible(true);
     }
     
@@ -316,7 +323,7 @@ public class AttendeeDashboard extends JFrame {
         SwingWorker<Booking, Void> worker = new SwingWorker<>() {
             @Override
             protected Booking doInBackground() throws Exception {
-                return dbManager.createSimpleBooking(username, event.getId(), seatsToBook, "Online Payment", transactionId);
+                return dbManager.createBestAvailableBooking(username, event.getId(), seatsToBook, "Online Payment", transactionId);
             }
             
             @Override
@@ -329,7 +336,9 @@ public class AttendeeDashboard extends JFrame {
                         if(userDoc != null) {
                             emailService.sendBookingConfirmation(userDoc.getString("email"), username, event.getName(), seatsToBook, finalPrice, String.valueOf(booking.getId()));
                         }
-                        JOptionPane.showMessageDialog(AttendeeDashboard.this, "Booking Successful! Your booking ID is " + booking.getId(), "Booking Confirmed", JOptionPane.INFORMATION_MESSAGE);
+                        String seats = booking.getSeatIds() == null || booking.getSeatIds().isEmpty()
+                            ? "" : "\nYour seats: " + String.join(", ", booking.getSeatIds());
+                        JOptionPane.showMessageDialog(AttendeeDashboard.this, "Booking Successful! Your booking ID is " + booking.getId() + seats, "Booking Confirmed", JOptionPane.INFORMATION_MESSAGE);
                         eventSearchPanel.loadInitialData();
                         loadBookings();
                     } else {
@@ -535,10 +544,15 @@ public class AttendeeDashboard extends JFrame {
         deleteBtn.addActionListener(e -> deleteSelectedNotification());
         JButton refreshBtn = createActionButton("Refresh", new Color(127, 140, 141));
         refreshBtn.addActionListener(e -> loadNotifications());
+        loadMoreNotificationsBtn = createActionButton("Load More", new Color(127, 140, 141));
+        loadMoreNotificationsBtn.addActionListener(e ->
+            loadNotificationPage(notificationIds.get(notificationIds.size() - 1)));
+        loadMoreNotificationsBtn.setVisible(false);
 
         buttonPanel.add(markAllReadBtn);
         buttonPanel.add(deleteBtn);
         buttonPanel.add(refreshBtn);
+        buttonPanel.add(loadMoreNotificationsBtn);
         panel.add(buttonPanel, BorderLayout.SOUTH);
 
         loadNotifications();
@@ -546,6 +560,13 @@ public class AttendeeDashboard extends JFrame {
     }
     
     private void loadNotifications() {
+        loadNotificationPage(null);
+    }
+
+    /**
+     * @param before last notification already in the table, or null to reload from the newest
+     */
+    private void loadNotificationPage(ObjectId before) {
         SwingWorker<List<Document>, Void> worker = new SwingWorker<>() {
             @Override
             protected List<Document> doInBackground() throws Exception {
@@ -553,14 +574,18 @@ public class AttendeeDashboard extends JFrame {
                     notificationsLoadingBar.setVisible(true);
                     notificationsTable.setEnabled(false);
                 });
-                return dbManager.getUserNotifications(username);
+                return dbManager.getUserNotifications(username, before, DatabaseManager.NOTIFICATION_PAGE_SIZE);
             }
 
             @Override
             protected void done() {
                 try {
                     List<Document> notifications = get();
-                    notificationsTableModel.setRowCount(0);
+                    if (before == null) {
+                        notificationsTableModel.setRowCount(0);
+                        notificationIds.clear();
+                    }
+                    loadMoreNotificationsBtn.setVisible(notifications.size() == DatabaseManager.NOTIFICATION_PAGE_SIZE);
                     DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
                     for (Document notif : notifications) {
                         Object timestampObj = notif.get("timestamp");
@@ -575,6 +600,7 @@ public class AttendeeDashboard extends JFrame {
                             timestampStr = LocalDateTime.parse(timestampObj.toString()).format(formatter);
                         }
                         
+                        notificationIds.add(notif.getObjectId("_id"));
                         notificationsTableModel.addRow(new Object[]{
                             notif.getBoolean("read", false) ? "Read" : "UNREAD",
                             notif.getString("message"),
@@ -606,8 +632,7 @@ public class AttendeeDashboard extends JFrame {
             return;
         }
 
-        String timestampToDelete = dbManager.getUserNotifications(username).get(selectedRow).getString("timestamp");
-        dbManager.deleteNotification(username, timestampToDelete);
+        dbManager.deleteNotification(username, notificationIds.get(selectedRow));
         loadNotifications();
     }
     
@@ -621,9 +646,7 @@ public class AttendeeDashboard extends JFrame {
             @Override
             protected void done() {
                 try {
-                    int unreadCount = get();
-                    unreadCountLabel.setText(unreadCount + " New");
-                    tabbedPane.setTitleAt(2, "My Notifications" + (unreadCount > 0 ? " (" + unreadCount + ")" : ""));
+                    showUnreadCount(get());
                 } catch (Exception e) {
                     System.err.println("Error updating notification count: " + e.getMessage());
                 }
@@ -631,6 +654,31 @@ public class AttendeeDashboard extends JFrame {
         };
         worker.execute();
     }
+
+    private void showUnreadCount(int unreadCount) {
+        unreadCountLabel.setText(unreadCount + " New");
+        tabbedPane.setTitleAt(2, "My Notifications" + (unreadCount > 0 ? " (" + unreadCount + ")" : ""));
+    }
+
+    /**
+     * Pushed by NotificationFeed when this user's inbox changes
+     */
+    private void inboxChanged(NotificationFeed.Update update) {
+        if (update.getUnread() != null) {
+            showUnreadCount(update.getUnread());
+        } else if (update.isResync()) {
+            updateNotificationCount();
+        }
+        if (update.getAdded() > 0 || update.isResync()) {
+            loadNotifications();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (inboxSubscription != null) inboxSubscription.close();
+        super.dispose();
+    }
     
     private void styleTable(JTable table, Color headerBg) {
         table.setFont(new Font("Segoe UI", Font.PLAIN, 12));
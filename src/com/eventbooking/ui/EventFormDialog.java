@@ -2,17 +2,15 @@ package com.eventbooking.ui;
 
 import com.eventbooking.database.DatabaseManager;
 import com.eventbooking.models.Event;
-import com.eventbooking.models.Booking;
 import com.eventbooking.services.EmailService;
+import com.eventbooking.services.EventChangeJob;
 import com.eventbooking.services.RefundService;
-import org.bson.Document;
 
 import javax.swing.*;
 import javax.swing.border.*;
 import java.awt.*;
 import java.time.LocalDate;
 import java.util.Date;
-import java.util.List;
 
 public class EventFormDialog extends JDialog {
     private JTextField nameField, typeField, venueField, seatsField, priceField;
@@ -149,7 +147,12 @@ public class EventFormDialog extends JDialog {
                 
                 editingEvent.setName(name); editingEvent.setType(type); editingEvent.setVenue(venue);
                 editingEvent.setDate(newDate); editingEvent.setTotalSeats(seats); editingEvent.setPrice(price);
-                dbManager.updateEvent(editingEvent);
+                if (!dbManager.updateEvent(editingEvent)) {
+                    JOptionPane.showMessageDialog(this,
+                        "Event could not be updated. The number of seats can only change before any are sold or held.",
+                        "Update Failed", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
                 
                 if (dateChanged) {
                     sendPostponementEmails(editingEvent.getId(), name, oldDate, newDate);
@@ -175,8 +178,7 @@ public class EventFormDialog extends JDialog {
             return;
         }
         
-        List<Booking> bookings = dbManager.getBookingsForEvent(editingEvent.getId());
-        long activeBookingsCount = bookings.stream().filter(b -> !b.isCancelled()).count();
+        long activeBookingsCount = dbManager.countBookings(editingEvent.getId(), null);
         
         String confirmMessage = "Are you sure you want to delete this event?\n" +
             "Event: " + editingEvent.getName() + "\n" +
@@ -191,52 +193,55 @@ public class EventFormDialog extends JDialog {
         
         if (confirm == JOptionPane.YES_OPTION) {
             System.out.println("--- ADMIN EVENT DELETION & REFUND PROCESS ---");
-            
-            // Process refunds and send emails for all active bookings
-            for (Booking booking : bookings) {
-                if (!booking.isCancelled()) {
-                    double refundAmount = booking.getTotalPrice();
-                    String reason = "Event has been cancelled by the organizer";
-                    
-                    if (dbManager.cancelBookingForEventCancellation(booking.getId(), refundAmount, reason)) {
-                        Document userDoc = dbManager.getUserDetails(booking.getUsername());
-                        String email = userDoc != null ? userDoc.getString("email") : null;
-                        
-                        if (email != null && !email.isEmpty()) {
-                            emailService.sendEventCancellationNotification(email, booking.getUsername(), editingEvent.getName(), refundAmount, reason);
-                            System.out.println("✓ Email sent to: " + email);
-                        }
-                        dbManager.addUserNotification(booking.getUsername(),
-                            String.format("❌ Event '%s' has been cancelled. Full refund of $%.2f processed.", editingEvent.getName(), refundAmount));
-                    }
-                }
-            }
-            
-            // Finally, delete the event from the database
-            dbManager.deleteEvent(editingEvent.getId());
-            System.out.println("✓ Event deleted successfully.");
-            
-            JOptionPane.showMessageDialog(this, "Event deleted. All attendees have been notified and refunded.", "Success", JOptionPane.INFORMATION_MESSAGE);
-            parentDashboard.refreshTable();
+            // Refunds, notifications and emails run as one resumable bulk job; the event is deleted at the end
+            EventChangeJob job = EventChangeJob.cancellation(editingEvent.getId(), editingEvent.getName(),
+                "Event has been cancelled by the organizer");
+            runJob(job, "Cancelling '" + editingEvent.getName() + "' and refunding attendees...",
+                "Event deleted. All attendees have been notified and refunded.");
             dispose();
         }
     }
 
     private void sendPostponementEmails(int eventId, String eventName, LocalDate oldDate, LocalDate newDate) {
         System.out.println("--- EVENT POSTPONEMENT - SENDING NOTIFICATIONS ---");
-        List<Booking> bookings = dbManager.getBookingsForEvent(eventId);
-        for (Booking booking : bookings) {
-            if (!booking.isCancelled()) {
-                Document userDoc = dbManager.getUserDetails(booking.getUsername());
-                String email = userDoc != null ? userDoc.getString("email") : null;
-                if (email != null && !email.isEmpty()) {
-                    emailService.sendEventPostponementNotification(email, booking.getUsername(), eventName, oldDate.toString(), newDate.toString(), "Schedule change by organizer");
-                    System.out.println("✓ Postponement email sent to: " + email);
+        runJob(EventChangeJob.postponement(eventId, eventName, oldDate, newDate, "Schedule change by organizer"),
+            "Notifying attendees of '" + eventName + "'...", null);
+    }
+
+    /**
+     * Run a bulk event job in the background with a progress monitor on the dashboard
+     */
+    private void runJob(EventChangeJob job, String title, String successMessage) {
+        ProgressMonitor monitor = new ProgressMonitor(parentDashboard, title, "", 0, 100);
+        monitor.setMillisToDecideToPopup(200);
+        SwingWorker<Integer, Void> worker = new SwingWorker<>() {
+            @Override
+            protected Integer doInBackground() {
+                return job.run((processed, total) -> SwingUtilities.invokeLater(() -> {
+                    monitor.setMaximum(Math.max(total, 1));
+                    monitor.setProgress(processed);
+                    monitor.setNote(processed + " of " + total + " bookings processed");
+                }));
+            }
+
+            @Override
+            protected void done() {
+                monitor.close();
+                try {
+                    int processed = get();
+                    System.out.println("✓ " + processed + " attendees notified.");
+                    if (successMessage != null) {
+                        JOptionPane.showMessageDialog(parentDashboard, successMessage, "Success", JOptionPane.INFORMATION_MESSAGE);
+                    }
+                } catch (Exception e) {
+                    JOptionPane.showMessageDialog(parentDashboard,
+                        "The job stopped before finishing and will resume on next start:\n" + e.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE);
                 }
-                dbManager.addUserNotification(booking.getUsername(),
-                    String.format("📅 Event '%s' has been rescheduled from %s to %s.", eventName, oldDate, newDate));
+                parentDashboard.refreshTable();
             }
-        }
+        };
+        worker.execute();
     }
 
     // Helper methods from your file
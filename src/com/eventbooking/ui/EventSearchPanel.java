@@ -7,16 +7,31 @@ import com.eventbooking.models.Event;
 
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 /**
  * A panel that provides search and filter controls for an external JTable.
  * This class is designed to be integrated into another frame (like AttendeeDashboard).
  * UPDATED: Now includes event status in the table AND threading for database operations
+ *
+ * Results follow the search field as the user types. Keystrokes are
+ * debounced, starting a search cancels the one still running, and every
+ * search carries a sequence number so a slow, older result can never
+ * overwrite a newer one. Results are applied to the table as a diff, so
+ * unchanged rows (and their selection) stay put.
  */
 public class EventSearchPanel extends JPanel {
+    private static final int DEBOUNCE_MILLIS = 200;
+    private static final int STATUS_CLEAR_MILLIS = 3000;
 
     // Controls for filtering
     private JTextField searchField;
@@ -31,15 +46,24 @@ public class EventSearchPanel extends JPanel {
     // Loading indicator
     private JLabel statusLabel;
 
+    // Search pipeline, touched only on the EDT
+    private final Timer debounceTimer = new Timer(DEBOUNCE_MILLIS, e -> applyFilters());
+    private final Timer statusClearTimer = new Timer(STATUS_CLEAR_MILLIS, e -> statusLabel.setText(""));
+    private SwingWorker<List<Event>, Void> runningSearch;
+    private long searchSequence = 0;
+    private boolean loadingCategories = false;
+
     /**
      * Constructor for the search panel.
      * @param tableModel The table model to update with search results.
      * @param eventTable The table to get the selected row from.
      */
     public EventSearchPanel(DefaultTableModel tableModel, JTable eventTable) {
-        this.dbManager = new DatabaseManager();
+        this.dbManager = DatabaseManager.getInstance();
         this.tableModel = tableModel;
         this.eventTable = eventTable;
+        debounceTimer.setRepeats(false);
+        statusClearTimer.setRepeats(false);
         
         initializeUI();
         loadInitialData(); // Load categories and initial event list
@@ -56,11 +80,21 @@ public class EventSearchPanel extends JPanel {
         // Search text field
         this.add(new JLabel("Search by Name/Venue:"));
         searchField = new JTextField(20);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) { debounceTimer.restart(); }
+            @Override public void removeUpdate(DocumentEvent e) { debounceTimer.restart(); }
+            @Override public void changedUpdate(DocumentEvent e) { }
+        });
+        // Enter searches straight away
+        searchField.addActionListener(e -> applyFilters());
         this.add(searchField);
 
         // Category filter dropdown
         this.add(new JLabel("Category:"));
         categoryFilter = new JComboBox<>();
+        categoryFilter.addActionListener(e -> {
+            if (!loadingCategories) applyFilters();
+        });
         this.add(categoryFilter);
 
         // Search button
@@ -116,11 +150,18 @@ public class EventSearchPanel extends JPanel {
             @Override
             protected void done() {
                 try {
-                    // Populate category filter on EDT
-                    categoryFilter.removeAllItems();
-                    categoryFilter.addItem("All");
-                    for (String type : types) {
-                        categoryFilter.addItem(type);
+                    // Populate category filter on EDT, keeping the chosen category
+                    Object selected = categoryFilter.getSelectedItem();
+                    loadingCategories = true;
+                    try {
+                        categoryFilter.removeAllItems();
+                        categoryFilter.addItem("All");
+                        for (String type : types) {
+                            categoryFilter.addItem(type);
+                        }
+                        if (selected != null) categoryFilter.setSelectedItem(selected);
+                    } finally {
+                        loadingCategories = false;
                     }
                     
                     // Load all events initially
@@ -130,11 +171,7 @@ public class EventSearchPanel extends JPanel {
                     System.err.println("Error loading initial data: " + e.getMessage());
                     e.printStackTrace();
                     statusLabel.setText("Error loading data");
-                } finally {
-                    // Clear status after a delay
-                    Timer timer = new Timer(2000, evt -> statusLabel.setText(""));
-                    timer.setRepeats(false);
-                    timer.start();
+                    statusClearTimer.restart();
                 }
             }
         };
@@ -144,39 +181,41 @@ public class EventSearchPanel extends JPanel {
 
     /**
      * THREADED: Executes the search based on the current filter settings 
-     * and updates the table model.
+     * and updates the table model. Supersedes any search still running.
      */
     private void applyFilters() {
+        debounceTimer.stop();
         String searchText = searchField.getText();
         String category = (String) categoryFilter.getSelectedItem();
-        
+        long sequence = ++searchSequence;
+
+        // Not cancel(true): interrupting a thread inside the MongoDB driver
+        // closes its pooled connection. The old search may still finish, but
+        // its result is dropped.
+        if (runningSearch != null) runningSearch.cancel(false);
+        statusClearTimer.stop();
+        statusLabel.setText("Searching...");
+
         SwingWorker<List<Event>, Void> worker = new SwingWorker<>() {
             @Override
             protected List<Event> doInBackground() throws Exception {
-                // Update UI to show loading state
-                SwingUtilities.invokeLater(() -> {
-                    statusLabel.setText("Searching...");
-                    eventTable.setEnabled(false);
-                });
-                
-                // Perform search in background
+                if (isCancelled()) return null;
                 return dbManager.searchEvents(searchText, category, null, null);
             }
             
             @Override
             protected void done() {
+                // A newer search owns the table now
+                if (sequence != searchSequence || isCancelled()) return;
+                runningSearch = null;
                 try {
                     List<Event> events = get();
-                    
-                    // Clear the existing table data
-                    tableModel.setRowCount(0);
-                    
-                    // Repopulate the table with the search results
+                    List<Object[]> rows = new ArrayList<>(events.size());
                     for (Event event : events) {
                         // IMPORTANT: Update event status before displaying
                         event.updateStatus();
                         
-                        tableModel.addRow(new Object[]{
+                        rows.add(new Object[]{
                             event.getId(),
                             event.getName(),
                             event.getType(),
@@ -187,27 +226,84 @@ public class EventSearchPanel extends JPanel {
                             event.getStatusWithIcon() // Added status column
                         });
                     }
+                    applyRows(rows);
                     
-                    statusLabel.setText(events.size() + " event(s) found");
-                    
-                    // Clear status after a delay
-                    Timer timer = new Timer(3000, evt -> statusLabel.setText(""));
-                    timer.setRepeats(false);
-                    timer.start();
-                    
-                } catch (Exception e) {
+                    int limit = dbManager.getSearchResultLimit();
+                    statusLabel.setText(events.size() < limit ? events.size() + " event(s) found"
+                        : "Showing the first " + limit + " matching events - refine the search to narrow them");
+                } catch (InterruptedException | ExecutionException | CancellationException e) {
                     System.err.println("Error applying filters: " + e.getMessage());
                     e.printStackTrace();
                     statusLabel.setText("Search failed");
                 } finally {
-                    eventTable.setEnabled(true);
+                    // Clear status after a delay
+                    statusClearTimer.restart();
                 }
             }
         };
-        
+        runningSearch = worker;
         worker.execute();
     }
 
+    /**
+     * Bring the table to the given rows with as few changes as possible.
+     * Rows matching by event ID at the start and end are kept and only
+     * repainted if a cell changed; the rows between are replaced by one
+     * delete and one insert. JTable keeps the selection of kept rows.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private void applyRows(List<Object[]> rows) {
+        Vector<Vector> data = tableModel.getDataVector();
+        int oldSize = data.size();
+        int newSize = rows.size();
+        int head = 0;
+        while (head < oldSize && head < newSize && sameEvent(data.get(head), rows.get(head))) {
+            head++;
+        }
+        int tail = 0;
+        while (tail < oldSize - head && tail < newSize - head
+                && sameEvent(data.get(oldSize - 1 - tail), rows.get(newSize - 1 - tail))) {
+            tail++;
+        }
+
+        if (oldSize - tail > head) {
+            data.subList(head, oldSize - tail).clear();
+            tableModel.fireTableRowsDeleted(head, oldSize - tail - 1);
+        }
+        if (newSize - tail > head) {
+            List<Vector> inserted = new ArrayList<>(newSize - tail - head);
+            for (Object[] row : rows.subList(head, newSize - tail)) {
+                inserted.add(new Vector<>(Arrays.asList(row)));
+            }
+            data.addAll(head, inserted);
+            tableModel.fireTableRowsInserted(head, newSize - tail - 1);
+        }
+
+        int firstChanged = -1;
+        int lastChanged = -1;
+        for (int i = 0; i < newSize; i++) {
+            if (i == head) i = newSize - tail;
+            if (i >= newSize) break;
+            Vector<Object> current = data.get(i);
+            Object[] row = rows.get(i);
+            if (!current.equals(Arrays.asList(row))) {
+                current.setSize(row.length);
+                for (int column = 0; column < row.length; column++) {
+                    current.set(column, row[column]);
+                }
+                if (firstChanged < 0) firstChanged = i;
+                lastChanged = i;
+            }
+        }
+        if (firstChanged >= 0) {
+            tableModel.fireTableRowsUpdated(firstChanged, lastChanged);
+        }
+    }
+
+    private static boolean sameEvent(Vector<?> current, Object[] row) {
+        return !current.isEmpty() && current.get(0).equals(row[0]);
+    }
+
     /**
      * Gets the currently selected Event object from the JTable.
      * @return The selected Event, or null if no row is selected.
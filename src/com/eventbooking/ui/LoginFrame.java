@@ -18,7 +18,7 @@ public class LoginFrame extends JFrame {
     private DatabaseManager dbManager;
 
     public LoginFrame() {
-        dbManager = new DatabaseManager();
+        dbManager = DatabaseManager.getInstance();
         initializeUI();
     }
 
@@ -41,7 +41,7 @@ public class PaymentDialog extends JDialog {
         this.totalAmount = amount;
         this.finalAmount = amount;
         
-        this.dbManager = new DatabaseManager();
+        this.dbManager = DatabaseManager.getInstance();
         this.paymentService = PaymentService.getInstance();
         this.creditService = CreditPointsService.getInstance();
         
@@ -282,18 +282,31 @@ public class PaymentDialog extends JDialog {
             JOptionPane.QUESTION_MESSAGE);
         
         if (confirm == JOptionPane.YES_OPTION) {
+            // Take the points first, so two checkouts cannot both spend the same balance
+            String redemptionKey = null;
+            if (pointsToRedeem > 0) {
+                redemptionKey = creditService.newRedemptionKey(username);
+                if (!creditService.redeemPoints(username, pointsToRedeem, redemptionKey)) {
+                    availablePoints = creditService.getUserPoints(username);
+                    availablePointsLabel.setText(availablePoints + " points");
+                    JOptionPane.showMessageDialog(this,
+                        "Your wallet no longer has " + pointsToRedeem + " points.\n" +
+                        "Available now: " + availablePoints + " points.",
+                        "Insufficient Points",
+                        JOptionPane.WARNING_MESSAGE);
+                    resetPoints();
+                    ((SpinnerNumberModel) pointsSpinner.getModel())
+                        .setMaximum(Math.min(availablePoints, (int) (totalAmount / 0.10)));
+                    applyPointsBtn.setEnabled(availablePoints > 0);
+                    return;
+                }
+            }
+
             // Process payment
             transactionId = paymentService.processPayment(username, finalAmount, paymentMethod);
             
             if (transactionId != null) {
-                // Payment successful - deduct credit points if used
-                if (pointsToRedeem > 0) {
-                    boolean pointsDeducted = creditService.redeemPoints(username, pointsToRedeem);
-                    if (!pointsDeducted) {
-                        System.err.println("Warning: Failed to deduct credit points");
-                    }
-                }
-                
+
                 // Show success message
                 StringBuilder successMsg = new StringBuilder();
                 successMsg.append("Payment Successful!\n\n");
@@ -320,7 +333,10 @@ public class PaymentDialog extends JDialog {
                 
                 dispose();
             } else {
-                // Payment failed
+                // Payment failed - give the points back
+                if (redemptionKey != null && !creditService.refundRedemption(username, pointsToRedeem, redemptionKey)) {
+                    System.err.println("Warning: Failed to return credit points for " + redemptionKey);
+                }
                 JOptionPane.showMessageDialog(this,
                     "Payment Failed or Cancelled!\n\n" +
                     "Your booking has not been processed.\n" +
@@ -36,7 +36,7 @@ public class ProfileFrame extends JDialog {
     public ProfileFrame(Frame owner, String username) {
         super(owner, "My Profile", true);
         this.username = username;
-        this.dbManager = new DatabaseManager();
+        this.dbManager = DatabaseManager.getInstance();
 
         initializeUI();
         loadUserData();
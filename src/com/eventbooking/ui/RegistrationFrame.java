@@ -23,7 +23,7 @@ public class RegistrationFrame extends JFrame {
 
     public RegistrationFrame(LoginFrame loginFrame) {
         this.loginFrame = loginFrame;
-        this.dbManager = new DatabaseManager();
+        this.dbManager = DatabaseManager.getInstance();
         this.otpService = OTPService.getInstance();
         initializeUI();
     }
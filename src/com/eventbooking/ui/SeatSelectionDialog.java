@@ -8,6 +8,7 @@ import com.eventbooking.models.Event;
 import com.eventbooking.models.Seat;
 import com.eventbooking.models.SeatMap;
 import com.eventbooking.services.PaymentService;
+import com.eventbooking.services.RefundService;
 import com.eventbooking.notifications.NotificationSystem;
 
 import javax.swing.*;
@@ -73,8 +74,10 @@ public class SeatSelectionDialog extends JDialog {
         eventLabel.setFont(new Font("Segoe UI", Font.BOLD, 20));
         eventLabel.setForeground(Color.WHITE);
         
+        long holds = viewOnly ? 0 : dbManager.getActiveHoldCount(event.getId());
         JLabel infoLabel = new JLabel(String.format("Price per seat: $%.2f | Available: %d", 
-            event.getPrice(), event.getSeatsAvailable()));
+            event.getPrice(), event.getSeatsAvailable())
+            + (holds > 0 ? " | " + holds + " checkout(s) in progress" : ""));
         infoLabel.setFont(new Font("Segoe UI", Font.PLAIN, 14));
         infoLabel.setForeground(Color.WHITE);
         
@@ -139,6 +142,7 @@ public class SeatSelectionDialog extends JDialog {
                 gbc.gridx = s;
                 String seatId = row + s;
                 Seat seat = seatMap.getSeat(seatId);
+                if (seat == null) break; // short last row
                 
                 JButton seatBtn = createSeatButton(seat, userBookedSeats.contains(seatId));
                 seatButtons.add(seatBtn);
@@ -166,6 +170,7 @@ public class SeatSelectionDialog extends JDialog {
         legendPanel.add(createLegendItem("Available", new Color(46, 204, 113)));
         legendPanel.add(createLegendItem("Selected", new Color(52, 152, 219)));
         legendPanel.add(createLegendItem("Booked", new Color(231, 76, 60)));
+        legendPanel.add(createLegendItem("On Hold", new Color(230, 126, 34)));
         if (viewOnly) {
             legendPanel.add(createLegendItem("Your Seats", new Color(241, 196, 15)));
         }
@@ -194,6 +199,10 @@ public class SeatSelectionDialog extends JDialog {
         buttonPanel.setBackground(Color.WHITE);
         
         if (!viewOnly) {
+            JButton bestBtn = createStyledButton("Best Available", new Color(52, 152, 219));
+            bestBtn.addActionListener(e -> selectBestAvailable());
+            buttonPanel.add(bestBtn);
+
             confirmBtn = createStyledButton("Confirm Booking", new Color(46, 204, 113));
             confirmBtn.setEnabled(false);
             confirmBtn.addActionListener(e -> confirmBooking());
@@ -236,6 +245,13 @@ public class SeatSelectionDialog extends JDialog {
                 btn.setEnabled(false);
                 btn.setToolTipText("Booked");
             }
+        } else if (seat.isHeld()) {
+            // Held for another buyer's checkout; free again if they don't pay in time
+            btn.setBackground(new Color(230, 126, 34));
+            btn.setForeground(Color.WHITE);
+            btn.setBorder(new LineBorder(new Color(230, 126, 34).darker(), 2));
+            btn.setEnabled(false);
+            btn.setToolTipText("On hold - another checkout is in progress");
         } else {
             // Available seats
             btn.setBackground(new Color(46, 204, 113));
@@ -268,6 +284,40 @@ public class SeatSelectionDialog extends JDialog {
         updateSelectionInfo();
     }
 
+    /**
+     * Replace the selection with the best seats for the number of tickets asked for
+     */
+    private void selectBestAvailable() {
+        String countStr = JOptionPane.showInputDialog(this,
+            "How many seats do you need?", "Best Available", JOptionPane.QUESTION_MESSAGE);
+        if (countStr == null || countStr.trim().isEmpty()) return;
+        int count;
+        try {
+            count = Integer.parseInt(countStr.trim());
+        } catch (NumberFormatException ex) {
+            count = 0;
+        }
+        if (count <= 0) {
+            JOptionPane.showMessageDialog(this, "Please enter a valid number of seats.", "Invalid Input", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        List<String> best = dbManager.findBestAvailableSeats(seatMap, count);
+        if (best.isEmpty()) {
+            JOptionPane.showMessageDialog(this,
+                String.format("Sorry, there are not %d seats available.", count),
+                "Not Enough Seats", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        for (String seatId : new ArrayList<>(selectedSeats)) {
+            toggleSeatSelection(seatId, seatButtons.get(seatMap.indexOf(seatId)));
+        }
+        for (String seatId : best) {
+            toggleSeatSelection(seatId, seatButtons.get(seatMap.indexOf(seatId)));
+        }
+        seatPanel.scrollRectToVisible(seatButtons.get(seatMap.indexOf(best.get(0))).getBounds());
+    }
+
     private void updateSelectionInfo() {
         if (selectedSeats.isEmpty()) {
             selectedSeatsLabel.setText("Selected Seats: None");
@@ -310,13 +360,23 @@ public class SeatSelectionDialog extends JDialog {
             return; // User cancelled
         }
         
-        // REPLACE the payment block inside confirmBooking() in SeatSelectionDialog.java
+        // Hold the seats while paying, so they cannot be taken in the meantime
+        String holdId = dbManager.holdSeats(username, event.getId(), selectedSeats);
+        if (holdId == null) {
+            JOptionPane.showMessageDialog(this, 
+                "Some of these seats were just taken. Please choose again.", 
+                "Seats Unavailable", 
+                JOptionPane.WARNING_MESSAGE);
+            refreshSeats();
+            return;
+        }
 
         // Process payment
         String transactionId = paymentService.processPayment(username, totalPrice, paymentMethod);
         
         // Check if payment was successful (transactionId is not null)
         if (transactionId == null) {
+            dbManager.releaseSeatHold(holdId);
             JOptionPane.showMessageDialog(this, 
                 "Payment failed or was cancelled! Please try again.", 
                 "Payment Error", 
@@ -324,12 +384,8 @@ public class SeatSelectionDialog extends JDialog {
             return;
         }
         
-        // Book seats
-        // REPLACE the dbManager.bookSeatsForEvent call in SeatSelectionDialog.java
-
-        // Book seats using the correct consolidated method
-        Booking newBooking = dbManager.createBookingWithSeats(
-            username, event.getId(), selectedSeats, paymentMethod, transactionId);
+        // Book the held seats
+        Booking newBooking = dbManager.createBookingFromHold(holdId, paymentMethod, transactionId);
 
         boolean bookingSuccess = (newBooking != null); // Success if a booking object was returned
         
@@ -338,17 +394,22 @@ public class SeatSelectionDialog extends JDialog {
                 username, event.getName(), selectedSeats.size(), totalPrice);
             dispose();
         } else {
+            // The hold ran out before payment completed
+            RefundService.getInstance().processRefund(username, 0, totalPrice, paymentMethod);
             JOptionPane.showMessageDialog(this, 
-                "Booking failed! Some seats may have been taken.", 
+                String.format("Your seats were held for %d minutes and the hold expired before payment completed.\n"
+                    + "Your payment has been refunded.", dbManager.getSeatHoldMinutes()), 
                 "Booking Error", 
                 JOptionPane.ERROR_MESSAGE);
-            
-            // Refresh seat display
-            dispose();
-            new SeatSelectionDialog((JFrame) getParent(), username, event, dbManager).setVisible(true);
+            refreshSeats();
         }
     }
 
+    private void refreshSeats() {
+        dispose();
+        new SeatSelectionDialog((JFrame) getParent(), username, event, dbManager).setVisible(true);
+    }
+
     private JPanel createLegendItem(String text, Color color) {
         JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
         panel.setBackground(Color.WHITE);